@@ -0,0 +1,292 @@
+// =================== BenchmarksServidor.java ===================
+/**
+ * Microbenchmarks JMH dos caminhos mais usados pelo servidor: serialização do tabuleiro,
+ * validação e execução de jogadas, verificação de vitória, conversão de coordenadas,
+ * decodificação de comandos (CodecComandos) e o despacho de comandos feito pelo ProcessadorComandos (o mesmo usado pelo ClientHandler).
+ *
+ * Os resultados vão sempre para o Blackhole, para o JIT não eliminar o trabalho medido.
+ * As jogadas seguem uma partida fixa, sempre a mesma: cada operação faz o próximo passo
+ * dela, e um Tabuleiro (ou uma Partida) novo começa quando a partida acaba, de modo que
+ * o histórico só cresce, como no servidor.
+ *
+ * Uso: java -jar bench/target/benchmarks.jar -prof gc [filtro]
+ */
+
+package jogo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarksServidor {
+
+    // Conexão falsa: conta os bytes que seriam enviados ao cliente
+    private static final class ConexaoFalsa implements Conexao {
+        private Partida partida;
+        private int capacidades;
+        long bytes;
+
+        @Override
+        public void sendMessage(String message) {
+            bytes += message.length() + 1;
+        }
+
+        @Override
+        public Partida getPartida() {
+            return partida;
+        }
+
+        @Override
+        public void setPartida(Partida partida) {
+            this.partida = partida;
+        }
+
+        @Override
+        public int getCapacidades() {
+            return capacidades;
+        }
+
+        @Override
+        public void setCapacidades(int capacidades) {
+            this.capacidades = capacidades;
+        }
+    }
+
+    // Posição de meio de jogo e jogadas candidatas sobre ela
+    @State(Scope.Thread)
+    public static class Posicao {
+        Tabuleiro meioDeJogo;
+        String estado;
+        String estadoCompacto;
+        int[][] candidatas;
+        int indice;
+        final String[] coordenadas = { "3B", "4a", "6H", "8G", "1A", "5e", "9A", "3Z", "", "12" };
+        // Decodificação direto dos bytes, como fazem os servidores: não deve alocar nada
+        final byte[][] linhas = { ascii("MOVIMENTO 3B 4A"), ascii("movimento 6h 5g\r"), ascii("SYNC"),
+                ascii("CODEC COMPACTO DELTA"), ascii("MOVIMENTO 9Z 4A"), ascii("ESPECTAR 12") };
+        final Comando comando = new Comando();
+
+        @Setup
+        public void preparar() {
+            meioDeJogo = meioDeJogo();
+            estado = meioDeJogo.serializar();
+            estadoCompacto = meioDeJogo.serializarCompacto();
+
+            // Todos os primeiros passos legais e alguns lances inválidos
+            long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+            int n = GeradorMovimentos.gerar(meioDeJogo, lances);
+            candidatas = new int[n + 3][];
+            for (int i = 0; i < n; i++) {
+                int origem = GeradorMovimentos.origem(lances[i]);
+                int passo = GeradorMovimentos.primeiroPasso(lances[i]);
+                candidatas[i] = new int[] { origem / 8, origem % 8, passo / 8, passo % 8 };
+            }
+            candidatas[n] = new int[] { 0, 1, 1, 0 };
+            candidatas[n + 1] = new int[] { 2, 1, 4, 3 };
+            candidatas[n + 2] = new int[] { 5, 0, 4, 1 };
+        }
+    }
+
+    // Passos da partida fixa, jogados um por operação num tabuleiro que é trocado ao fim dela
+    @State(Scope.Thread)
+    public static class Jogo {
+        int[][] passos;
+        Tabuleiro tabuleiro;
+        int proximo;
+
+        @Setup
+        public void preparar() {
+            passos = partidaFixa();
+            tabuleiro = new Tabuleiro();
+        }
+
+        int[] proximoPasso() {
+            if (proximo == passos.length) {
+                tabuleiro = new Tabuleiro();
+                proximo = 0;
+            }
+            return passos[proximo++];
+        }
+    }
+
+    // Partida com duas conexões falsas, no formato de mensagens escolhido
+    @State(Scope.Thread)
+    public static class Despacho {
+        @Param({ "TEXTO", "DELTA" })
+        String formato;
+
+        final GerenciadorPartidas gerenciador = new GerenciadorPartidas();
+        final ConexaoFalsa brancas = new ConexaoFalsa();
+        final ConexaoFalsa pretas = new ConexaoFalsa();
+        final Comando comando = new Comando();
+        final byte[] invalido = ascii("MOVIMENTO 3B 5D");
+        final byte[] sync = ascii("SYNC");
+        byte[][] movimentos;
+        Partida partida;
+        int proximo;
+
+        @Setup
+        public void preparar() {
+            int capacidades = formato.equals("DELTA") ? Conexao.CAP_DELTA : 0;
+            brancas.setCapacidades(capacidades);
+            pretas.setCapacidades(capacidades);
+            int[][] passos = partidaFixa();
+            movimentos = new byte[passos.length][];
+            for (int i = 0; i < passos.length; i++) {
+                int[] p = passos[i];
+                movimentos[i] = ascii("MOVIMENTO " + GeradorMovimentos.coordenada(p[0] * 8 + p[1]) + " "
+                        + GeradorMovimentos.coordenada(p[2] * 8 + p[3]));
+            }
+            novaPartida();
+        }
+
+        void novaPartida() {
+            partida = new Partida(1, brancas, pretas);
+            brancas.setPartida(partida);
+            pretas.setPartida(partida);
+            proximo = 0;
+        }
+
+        // Quem joga o próximo passo da partida fixa
+        Conexao daVez() {
+            return partida.getTabuleiro().isVezBrancas() ? brancas : pretas;
+        }
+    }
+
+    @Benchmark
+    public void tabuleiroSerializar(Posicao p, Blackhole bh) {
+        bh.consume(p.meioDeJogo.serializar());
+    }
+
+    @Benchmark
+    public void tabuleiroDesserializar(Posicao p, Blackhole bh) {
+        bh.consume(Tabuleiro.desserializar(p.estado));
+    }
+
+    @Benchmark
+    public void tabuleiroSerializarCompacto(Posicao p, Blackhole bh) {
+        bh.consume(p.meioDeJogo.serializarCompacto());
+    }
+
+    @Benchmark
+    public void tabuleiroDesserializarCompacto(Posicao p, Blackhole bh) {
+        bh.consume(Tabuleiro.desserializarCompacto(p.estadoCompacto));
+    }
+
+    @Benchmark
+    public void tabuleiroValidarMovimento(Posicao p, Blackhole bh) {
+        int[] c = p.candidatas[p.indice++ % p.candidatas.length];
+        bh.consume(p.meioDeJogo.validarMovimento(c[0], c[1], c[2], c[3]));
+    }
+
+    @Benchmark
+    public void tabuleiroMoverPeca(Jogo jogo, Blackhole bh) {
+        int[] c = jogo.proximoPasso();
+        bh.consume(jogo.tabuleiro.moverPeca(c[0], c[1], c[2], c[3]));
+        bh.consume(jogo.tabuleiro.getHash());
+    }
+
+    @Benchmark
+    public void tabuleiroVerificarVencedor(Posicao p, Blackhole bh) {
+        bh.consume(p.meioDeJogo.verificarVencedor());
+    }
+
+    @Benchmark
+    public void tabuleiroConverterCoordenada(Posicao p, Blackhole bh) {
+        bh.consume(Tabuleiro.converterCoordenada(p.coordenadas[p.indice++ % p.coordenadas.length]));
+    }
+
+    @Benchmark
+    public void codecDecodificar(Posicao p, Blackhole bh) {
+        byte[] linha = p.linhas[p.indice++ % p.linhas.length];
+        CodecComandos.decodificar(linha, 0, linha.length, p.comando);
+        bh.consume(p.comando.getTipo());
+        bh.consume(p.comando.getOrigem());
+    }
+
+    // Despacho completo de um MOVIMENTO válido, incluindo as mensagens aos dois jogadores
+    @Benchmark
+    public void processadorMovimento(Despacho d, Blackhole bh) {
+        if (d.proximo == d.movimentos.length) {
+            d.novaPartida();
+        }
+        byte[] linha = d.movimentos[d.proximo++];
+        CodecComandos.decodificar(linha, 0, linha.length, d.comando);
+        bh.consume(ProcessadorComandos.processar(d.daVez(), d.comando, d.gerenciador));
+        bh.consume(d.brancas.bytes + d.pretas.bytes);
+    }
+
+    @Benchmark
+    public void processadorInvalido(Despacho d, Blackhole bh) {
+        CodecComandos.decodificar(d.invalido, 0, d.invalido.length, d.comando);
+        bh.consume(ProcessadorComandos.processar(d.brancas, d.comando, d.gerenciador));
+        bh.consume(d.brancas.bytes);
+    }
+
+    @Benchmark
+    public void processadorSync(Despacho d, Blackhole bh) {
+        CodecComandos.decodificar(d.sync, 0, d.sync.length, d.comando);
+        bh.consume(ProcessadorComandos.processar(d.brancas, d.comando, d.gerenciador));
+        bh.consume(d.brancas.bytes);
+    }
+
+    // Posição de meio de jogo, sempre a mesma: 12 lances escolhidos de forma determinística
+    static Tabuleiro meioDeJogo() {
+        Tabuleiro tabuleiro = new Tabuleiro();
+        long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+        for (int ply = 0; ply < 12; ply++) {
+            int n = GeradorMovimentos.gerar(tabuleiro, lances);
+            tabuleiro.aplicarLance(lances[(ply * 7) % n]);
+        }
+        return tabuleiro;
+    }
+
+    /*
+     * Passos { xOrigem, yOrigem, xDestino, yDestino } de uma partida determinística, cada
+     * salto de uma captura em cadeia em separado, até 60 passos ou até o passo anterior
+     * ao que daria a vitória (a partida repetida nunca termina no meio da medição).
+     */
+    static int[][] partidaFixa() {
+        Tabuleiro tabuleiro = new Tabuleiro();
+        long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+        int[][] passos = new int[60][];
+        int quantidade = 0;
+        while (quantidade < passos.length) {
+            int n = GeradorMovimentos.gerar(tabuleiro, lances);
+            if (n == 0) {
+                break;
+            }
+            long lance = lances[(quantidade * 7) % n];
+            int origem = GeradorMovimentos.origem(lance);
+            int passo = GeradorMovimentos.primeiroPasso(lance);
+            tabuleiro.moverPeca(origem / 8, origem % 8, passo / 8, passo % 8);
+            if (tabuleiro.verificarVencedor() != 0) {
+                break;
+            }
+            passos[quantidade++] = new int[] { origem / 8, origem % 8, passo / 8, passo % 8 };
+        }
+        return Arrays.copyOf(passos, quantidade);
+    }
+
+    private static byte[] ascii(String texto) {
+        return texto.getBytes(StandardCharsets.US_ASCII);
+    }
+}
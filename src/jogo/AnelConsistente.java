@@ -0,0 +1,91 @@
+// =================== AnelConsistente.java ===================
+/**
+ * Anel de hash consistente que divide as partidas entre os nós de um cluster.
+ *
+ * Cada nó (identificado pelo endereço "host:porta" em que recebe os jogadores) ocupa
+ * PONTOS_POR_NO pontos do anel de 64 bits; a partida pertence ao nó do primeiro ponto
+ * depois do hash do seu id. Quando um nó entra ou sai, só as partidas dos trechos que
+ * ele ganha ou perde mudam de dono (cerca de 1/N delas), e a divisão fica equilibrada
+ * mesmo com poucos nós. O RoteadorDamas e os servidores montam o anel a partir da mesma
+ * lista de nós e chegam sempre ao mesmo dono, sem precisar de uma tabela de partidas.
+ *
+ * É imutável: quem muda a lista de nós publica um anel novo.
+ */
+
+package jogo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+final class AnelConsistente {
+    static final int PONTOS_POR_NO = 128;
+    static final AnelConsistente VAZIO = new AnelConsistente(List.of());
+
+    private final List<String> nos;
+    private final TreeMap<Long, String> pontos = new TreeMap<>();
+
+    AnelConsistente(Collection<String> nos) {
+        this.nos = List.copyOf(nos);
+        for (String no : this.nos) {
+            for (int i = 0; i < PONTOS_POR_NO; i++) {
+                pontos.put(hash(no + "#" + i), no);
+            }
+        }
+    }
+
+    // Lê a lista no formato de toString(), como "localhost:5556,localhost:5557"
+    static AnelConsistente ler(String lista) {
+        String texto = lista.trim();
+        return texto.isEmpty() ? VAZIO : new AnelConsistente(List.of(texto.split(",")));
+    }
+
+    /**
+     * Nó dono da partida.
+     *
+     * @return o endereço do nó, ou null se o anel não tem nós
+     */
+    String dono(long partida) {
+        if (pontos.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> ponto = pontos.ceilingEntry(misturar(partida));
+        return ponto != null ? ponto.getValue() : pontos.firstEntry().getValue();
+    }
+
+    boolean contem(String no) {
+        return nos.contains(no);
+    }
+
+    boolean isVazio() {
+        return nos.isEmpty();
+    }
+
+    List<String> getNos() {
+        return nos;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", nos);
+    }
+
+    // FNV-1a de 64 bits, espalhado pelo misturar; igual em qualquer JVM (String.hashCode tem só 32 bits)
+    private static long hash(String texto) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return misturar(hash);
+    }
+
+    // Finalizador do SplitMix64: ids sequenciais caem em pontos bem distantes do anel
+    private static long misturar(long valor) {
+        long z = valor + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,213 @@
+// =================== BarramentoEventos.java ===================
+/**
+ * Fila de eventos das jogadas, consumida fora da thread do jogo.
+ *
+ * O Tabuleiro publica os eventos de moverPeca (que roda com o lock da partida) num anel
+ * de tamanho fixo com os EventoTabuleiro já alocados: publicar é reservar uma posição com
+ * um compareAndSet, preencher os campos e marcar a posição como pronta. Uma única thread
+ * consumidora repassa cada evento, na ordem, à fila de cada observador do tabuleiro: uma
+ * fila pequena, também de eventos já alocados, esvaziada por uma thread virtual própria
+ * do observador, que só existe enquanto há eventos nela. Assim um observador lento (log,
+ * diário, estatísticas) não atrasa as jogadas nem os demais observadores.
+ *
+ * Várias partidas publicam ao mesmo tempo no mesmo anel. Se o consumidor não acompanhar
+ * e o anel encher, o evento é descartado e contado, em vez de bloquear o jogo; o mesmo
+ * vale para a fila de um observador que não acompanha os seus eventos.
+ */
+
+package jogo;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+final class BarramentoEventos {
+    private static final int CAPACIDADE_PADRAO = 1 << 16;
+    // Eventos que cada observador pode ter esperando a sua thread
+    private static final int CAPACIDADE_OBSERVADOR = 1024;
+
+    private static volatile BarramentoEventos padrao;
+
+    private final EventoTabuleiro[] eventos;
+    // Sequência publicada em cada posição; a posição está pronta quando ela é a esperada
+    private final AtomicLongArray publicados;
+    private final int mascara;
+    // Próxima sequência a reservar (produtores) e próxima a entregar (consumidor)
+    private final AtomicLong proxima = new AtomicLong();
+    private volatile long consumida;
+    private final LongAdder descartados = new LongAdder();
+    private final AtomicBoolean dormindo = new AtomicBoolean();
+    private final Thread consumidor;
+    // Fila de cada observador; só a thread consumidora usa o mapa. As chaves são fracas para
+    // a fila sumir com o observador (a fila não guarda referência a ele)
+    private final Map<TabuleiroObserver, FilaObservador> filas = new WeakHashMap<>();
+
+    BarramentoEventos(int capacidade) {
+        int tamanho = Integer.highestOneBit(Math.max(2, capacidade - 1)) << 1;
+        eventos = new EventoTabuleiro[tamanho];
+        publicados = new AtomicLongArray(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            eventos[i] = new EventoTabuleiro();
+            publicados.set(i, -1);
+        }
+        mascara = tamanho - 1;
+        consumidor = Thread.ofPlatform().name("eventos-tabuleiro").daemon(true).start(this::consumir);
+    }
+
+    // Barramento compartilhado por todos os tabuleiros, criado no primeiro observador
+    static BarramentoEventos padrao() {
+        BarramentoEventos barramento = padrao;
+        if (barramento == null) {
+            synchronized (BarramentoEventos.class) {
+                barramento = padrao;
+                if (barramento == null) {
+                    barramento = new BarramentoEventos(CAPACIDADE_PADRAO);
+                    padrao = barramento;
+                }
+            }
+        }
+        return barramento;
+    }
+
+    // Descartes do barramento padrão, sem criá-lo
+    static long getDescartadosPadrao() {
+        BarramentoEventos barramento = padrao;
+        return barramento == null ? 0 : barramento.getDescartados();
+    }
+
+    long getDescartados() {
+        return descartados.sum();
+    }
+
+    /**
+     * Publica um evento sem bloquear; se o anel estiver cheio, o evento é descartado.
+     *
+     * @return false se o evento foi descartado
+     */
+    boolean publicar(EventoTabuleiro.Tipo tipo, Tabuleiro tabuleiro, int origem, int destino, int capturada,
+            boolean vezBrancas) {
+        long sequencia;
+        do {
+            sequencia = proxima.get();
+            if (sequencia - consumida > mascara) {
+                descartados.increment();
+                return false;
+            }
+        } while (!proxima.compareAndSet(sequencia, sequencia + 1));
+
+        int posicao = (int) sequencia & mascara;
+        eventos[posicao].preencher(tipo, tabuleiro, origem, destino, capturada, vezBrancas);
+        // Escrita e leitura voláteis, na ordem inversa da do consumidor em esperar(): ou ele
+        // vê o evento antes de dormir, ou este produtor o vê dormindo e o acorda
+        publicados.set(posicao, sequencia);
+        if (dormindo.get() && dormindo.compareAndSet(true, false)) {
+            LockSupport.unpark(consumidor);
+        }
+        return true;
+    }
+
+    private void consumir() {
+        long sequencia = 0;
+        while (true) {
+            int posicao = (int) sequencia & mascara;
+            if (publicados.get(posicao) != sequencia) {
+                esperar(posicao, sequencia);
+                continue;
+            }
+            EventoTabuleiro evento = eventos[posicao];
+            entregar(evento);
+            evento.tabuleiro = null;
+            sequencia++;
+            // Só agora a posição pode ser reaproveitada pelos produtores
+            consumida = sequencia;
+        }
+    }
+
+    private void esperar(int posicao, long sequencia) {
+        dormindo.set(true);
+        // Confere de novo: um produtor pode ter publicado antes de ver o aviso. Um unpark
+        // que sobrar só faz o próximo park voltar na hora, e consumir() confere outra vez
+        if (publicados.get(posicao) != sequencia) {
+            LockSupport.park(this);
+        }
+        dormindo.set(false);
+    }
+
+    private void entregar(EventoTabuleiro evento) {
+        for (TabuleiroObserver observer : evento.tabuleiro.getObservers()) {
+            FilaObservador fila = filas.get(observer);
+            if (fila == null) {
+                fila = new FilaObservador(CAPACIDADE_OBSERVADOR);
+                filas.put(observer, fila);
+            }
+            if (!fila.oferecer(evento, observer)) {
+                descartados.increment();
+            }
+        }
+    }
+
+    /*
+     * Anel de um observador, com um só produtor (a thread consumidora do barramento) e uma
+     * thread virtual que o esvazia, iniciada quando chega um evento e encerrada quando ele
+     * fica vazio. Como só uma dessas threads existe por vez, o observador nunca é chamado
+     * por duas threads ao mesmo tempo.
+     */
+    private static final class FilaObservador {
+        private final EventoTabuleiro[] eventos;
+        private final int mascara;
+        // Próxima posição a preencher (produtor) e a entregar (thread do observador)
+        private final AtomicLong cauda = new AtomicLong();
+        private final AtomicLong cabeca = new AtomicLong();
+        private final AtomicBoolean entregando = new AtomicBoolean();
+
+        FilaObservador(int capacidade) {
+            eventos = new EventoTabuleiro[capacidade];
+            for (int i = 0; i < capacidade; i++) {
+                eventos[i] = new EventoTabuleiro();
+            }
+            mascara = capacidade - 1;
+        }
+
+        // Copia o evento para a fila; false se ela está cheia
+        boolean oferecer(EventoTabuleiro evento, TabuleiroObserver observer) {
+            long posicao = cauda.get();
+            if (posicao - cabeca.get() > mascara) {
+                return false;
+            }
+            eventos[(int) posicao & mascara].copiar(evento);
+            // Escrita volátil antes de ler "entregando", como em publicar()
+            cauda.set(posicao + 1);
+            if (entregando.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("observador-tabuleiro").start(() -> esvaziar(observer));
+            }
+            return true;
+        }
+
+        private void esvaziar(TabuleiroObserver observer) {
+            while (true) {
+                long posicao = cabeca.get();
+                long fim = cauda.get();
+                for (; posicao < fim; posicao++) {
+                    EventoTabuleiro evento = eventos[(int) posicao & mascara];
+                    try {
+                        observer.aoEvento(evento);
+                    } catch (RuntimeException e) {
+                        System.out.println("Erro num observador do tabuleiro: " + e);
+                    }
+                    evento.tabuleiro = null;
+                    // Só agora a posição pode ser reaproveitada pelo produtor
+                    cabeca.lazySet(posicao + 1);
+                }
+                entregando.set(false);
+                // Confere de novo: um evento pode ter chegado depois da última leitura da cauda
+                if (cauda.get() == posicao || !entregando.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+}
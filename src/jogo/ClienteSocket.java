@@ -6,7 +6,8 @@
  * para envio e recebimento de dados do servidor de forma simplificada.
  * 
  * Esta classe é usada pela interface do cliente (como DamasUI) para trocar informações
- * com o servidor sem precisar lidar diretamente com os detalhes do socket.
+ * com o servidor sem precisar lidar diretamente com os detalhes do socket. Depois de uma
+ * queda, reconectar() abre uma nova conexão com o mesmo servidor.
  */
 
 package jogo;
@@ -18,9 +19,11 @@ import java.io.PrintWriter;
 import java.net.Socket;
 
 public class ClienteSocket {
-    private Socket socket; // Socket TCP para comunicação com o servidor
-    private PrintWriter out; // Canal de saída para enviar mensagens ao servidor
-    private BufferedReader in; // Canal de entrada para receber mensagens do servidor
+    private final String endereco;
+    private final int porta;
+    private volatile Socket socket; // Socket TCP para comunicação com o servidor
+    private volatile PrintWriter out; // Canal de saída para enviar mensagens ao servidor
+    private volatile BufferedReader in; // Canal de entrada para receber mensagens do servidor
 
     /**
      * Construtor: estabelece a conexão com o servidor e inicializa os canais de entrada e saída.
@@ -30,11 +33,31 @@ public class ClienteSocket {
      * @throws IOException Se não for possível conectar ou abrir os streams
      */
     public ClienteSocket(String endereco, int porta) throws IOException {
+        this.endereco = endereco;
+        this.porta = porta;
+        conectar();
+    }
+
+    private synchronized void conectar() throws IOException {
         socket = new Socket(endereco, porta); // Cria conexão com o servidor
         out = new PrintWriter(socket.getOutputStream(), true); // Inicializa o canal de envio
         in = new BufferedReader(new InputStreamReader(socket.getInputStream())); // Inicializa o canal de leitura
     }
 
+    /**
+     * Fecha a conexão atual (se ainda estiver aberta) e abre outra com o mesmo servidor.
+     *
+     * @throws IOException Se não for possível conectar
+     */
+    public void reconectar() throws IOException {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // A conexão antiga já estava perdida
+        }
+        conectar();
+    }
+
     /**
      * Envia uma mensagem de texto para o servidor.
      *
@@ -0,0 +1,260 @@
+// =================== CodecComandos.java ===================
+/**
+ * Interpreta as linhas de comando do protocolo direto dos bytes recebidos.
+ *
+ * A linha é lida no próprio buffer de leitura (byte[] do ServidorNio ou do ClientHandler)
+ * e os argumentos vão para um Comando reaproveitado: palavras-chave comparadas byte a byte,
+ * sem diferenciar maiúsculas, coordenadas e números convertidos sem substring, parseInt
+ * ou exceções. Uma linha inválida não gera exceção: o Comando volta com o Erro correspondente.
+ *
+ * Os clientes usam o mesmo codec para conferir uma jogada digitada antes de enviá-la.
+ */
+
+package jogo;
+
+import java.nio.charset.StandardCharsets;
+
+public final class CodecComandos {
+    private static final Comando.Tipo[] TIPOS = Comando.Tipo.values();
+    // Palavra-chave de cada tipo, na ordem de Comando.Tipo (DESCONHECIDO não tem)
+    private static final byte[][] PALAVRAS = new byte[TIPOS.length - 1][];
+    private static final byte[] COMPACTO = ascii("COMPACTO");
+    private static final byte[] DELTA = ascii("DELTA");
+    // Números com mais dígitos que isso não cabem com folga num long
+    private static final int MAXIMO_DIGITOS = 18;
+
+    static {
+        for (int i = 0; i < PALAVRAS.length; i++) {
+            PALAVRAS[i] = ascii(TIPOS[i].name());
+        }
+    }
+
+    private CodecComandos() {
+    }
+
+    /**
+     * Interpreta a linha em dados[inicio, fim), sem o '\n' (um '\r' final é ignorado).
+     *
+     * @return true se o comando é válido; senão comando.getErro() diz o motivo
+     */
+    public static boolean decodificar(byte[] dados, int inicio, int fim, Comando comando) {
+        comando.limpar();
+        while (fim > inicio && (dados[fim - 1] == '\r' || dados[fim - 1] == ' ')) {
+            fim--;
+        }
+        inicio = pularEspacos(dados, inicio, fim);
+        if (inicio == fim) {
+            return falhar(comando, Comando.Erro.LINHA_VAZIA);
+        }
+        int fimPalavra = fimDoToken(dados, inicio, fim);
+        comando.tipo = tipo(dados, inicio, fimPalavra);
+        int p = pularEspacos(dados, fimPalavra, fim);
+
+        switch (comando.tipo) {
+            case MOVIMENTO:
+                return decodificarMovimento(dados, p, fim, comando);
+            case MAQUINA:
+                if (p < fim) {
+                    comando.numero = numero(dados, p, fim);
+                    if (comando.numero < 0) {
+                        return falhar(comando, Comando.Erro.FORMATO_MAQUINA);
+                    }
+                }
+                return true;
+            case ESPECTAR:
+                comando.numero = numero(dados, p, fim);
+                return comando.numero >= 0 || falhar(comando, Comando.Erro.FORMATO_ESPECTAR);
+            case HIST:
+                return decodificarHist(dados, p, fim, comando);
+            case RETOMAR:
+                return decodificarRetomar(dados, p, fim, comando);
+            case CODEC:
+                while (p < fim) {
+                    int fimToken = fimDoToken(dados, p, fim);
+                    if (igual(dados, p, fimToken, COMPACTO)) {
+                        comando.capacidades |= Conexao.CAP_COMPACTO;
+                    } else if (igual(dados, p, fimToken, DELTA)) {
+                        comando.capacidades |= Conexao.CAP_DELTA;
+                    }
+                    p = pularEspacos(dados, fimToken, fim);
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Mesma interpretação a partir de um texto. Converte a linha para bytes, então é para
+     * quem não está no caminho de cada mensagem (clientes, a máquina, testes).
+     */
+    public static boolean decodificar(String linha, Comando comando) {
+        byte[] dados = linha.getBytes(StandardCharsets.UTF_8);
+        return decodificar(dados, 0, dados.length, comando);
+    }
+
+    // "MOVIMENTO 3B 4A": exatamente duas coordenadas
+    private static boolean decodificarMovimento(byte[] dados, int p, int fim, Comando comando) {
+        int fimOrigem = fimDoToken(dados, p, fim);
+        int q = pularEspacos(dados, fimOrigem, fim);
+        int fimDestino = fimDoToken(dados, q, fim);
+        if (p == fimOrigem || q == fimDestino || fimDestino != fim) {
+            return falhar(comando, Comando.Erro.FORMATO_MOVIMENTO);
+        }
+        comando.origem = fimOrigem - p == 2 ? casa(dados[p], dados[p + 1]) : -1;
+        comando.destino = fimDestino - q == 2 ? casa(dados[q], dados[q + 1]) : -1;
+        if (comando.origem < 0 || comando.destino < 0) {
+            return falhar(comando, Comando.Erro.COORDENADA_INVALIDA);
+        }
+        return true;
+    }
+
+    // "HIST", "HIST <de>" ou "HIST <de> <quantidade>", com as jogadas numeradas a partir de 1
+    private static boolean decodificarHist(byte[] dados, int p, int fim, Comando comando) {
+        if (p == fim) {
+            return true;
+        }
+        int fimDe = fimDoToken(dados, p, fim);
+        comando.numero = numero(dados, p, fimDe);
+        int q = pularEspacos(dados, fimDe, fim);
+        long quantidade = q < fim ? numero(dados, q, fim) : 0;
+        if (comando.numero < 1 || quantidade < 0 || quantidade > Integer.MAX_VALUE) {
+            return falhar(comando, Comando.Erro.FORMATO_HIST);
+        }
+        comando.quantidade = (int) quantidade;
+        return true;
+    }
+
+    // "RETOMAR <id>-<B|P>-<32 dígitos hex> [seq]": o token dado pelo SESSAO e a última sequência recebida
+    private static boolean decodificarRetomar(byte[] dados, int p, int fim, Comando comando) {
+        int fimToken = fimDoToken(dados, p, fim);
+        int hifen = p;
+        while (hifen < fimToken && dados[hifen] != '-') {
+            hifen++;
+        }
+        comando.numero = numero(dados, p, hifen);
+        int cor = hifen + 1 < fimToken ? dados[hifen + 1] | 0x20 : 0;
+        int inicioHex = hifen + 3;
+        int q = pularEspacos(dados, fimToken, fim);
+        comando.sequencia = q < fim ? numero(dados, q, fim) : 0;
+        if (comando.numero < 0 || (cor != 'b' && cor != 'p') || inicioHex + 32 != fimToken
+                || dados[hifen + 2] != '-' || comando.sequencia < 0) {
+            return falhar(comando, Comando.Erro.FORMATO_RETOMAR);
+        }
+        comando.brancas = cor == 'b';
+        long sessao = 0;
+        long assinatura = 0;
+        for (int i = 0; i < 32; i++) {
+            int digito = Character.digit(dados[inicioHex + i], 16);
+            if (digito < 0) {
+                return falhar(comando, Comando.Erro.FORMATO_RETOMAR);
+            }
+            if (i < 16) {
+                sessao = sessao << 4 | digito;
+            } else {
+                assinatura = assinatura << 4 | digito;
+            }
+        }
+        comando.sessao = sessao;
+        comando.assinatura = assinatura;
+        return true;
+    }
+
+    /**
+     * Converte uma coordenada como "3B" (linha 1 a 8, coluna A a H) na casa x * 8 + y.
+     *
+     * @return a casa, ou -1 se a coordenada não é válida
+     */
+    public static int casa(CharSequence coordenada) {
+        if (coordenada == null || coordenada.length() != 2) {
+            return -1;
+        }
+        return casa(coordenada.charAt(0), coordenada.charAt(1));
+    }
+
+    /**
+     * Converte uma jogada do histórico, como "3B 4A", em origem | destino << 6. Aceita o que
+     * vier antes separado por espaço ("Brancas: 3B 4A", "HIST Brancas: 3B 4A").
+     *
+     * @return a jogada, ou -1 se o texto não termina com duas coordenadas válidas
+     */
+    public static int jogada(CharSequence texto) {
+        int n = texto == null ? 0 : texto.length();
+        if (n < 5 || texto.charAt(n - 3) != ' ' || (n > 5 && texto.charAt(n - 6) != ' ')) {
+            return -1;
+        }
+        int origem = casa(texto.charAt(n - 5), texto.charAt(n - 4));
+        int destino = casa(texto.charAt(n - 2), texto.charAt(n - 1));
+        return origem < 0 || destino < 0 ? -1 : origem | destino << 6;
+    }
+
+    private static int casa(int linha, int coluna) {
+        int x = linha - '1';
+        int y = (coluna | 0x20) - 'a';
+        if (x < 0 || x >= Tabuleiro.TAMANHO || y < 0 || y >= Tabuleiro.TAMANHO) {
+            return -1;
+        }
+        return x * Tabuleiro.TAMANHO + y;
+    }
+
+    private static Comando.Tipo tipo(byte[] dados, int inicio, int fim) {
+        for (int i = 0; i < PALAVRAS.length; i++) {
+            if (igual(dados, inicio, fim, PALAVRAS[i])) {
+                return TIPOS[i];
+            }
+        }
+        return Comando.Tipo.DESCONHECIDO;
+    }
+
+    // Compara com uma palavra em maiúsculas, aceitando também minúsculas (só letras ASCII)
+    private static boolean igual(byte[] dados, int inicio, int fim, byte[] palavra) {
+        if (fim - inicio != palavra.length) {
+            return false;
+        }
+        for (int i = 0; i < palavra.length; i++) {
+            if ((dados[inicio + i] | 0x20) != (palavra[i] | 0x20)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Número decimal não negativo ocupando todo o trecho; -1 se não for
+    private static long numero(byte[] dados, int inicio, int fim) {
+        if (inicio == fim || fim - inicio > MAXIMO_DIGITOS) {
+            return -1;
+        }
+        long valor = 0;
+        for (int i = inicio; i < fim; i++) {
+            int digito = dados[i] - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+
+    private static int pularEspacos(byte[] dados, int p, int fim) {
+        while (p < fim && dados[p] == ' ') {
+            p++;
+        }
+        return p;
+    }
+
+    private static int fimDoToken(byte[] dados, int p, int fim) {
+        while (p < fim && dados[p] != ' ') {
+            p++;
+        }
+        return p;
+    }
+
+    private static boolean falhar(Comando comando, Comando.Erro erro) {
+        comando.erro = erro;
+        return false;
+    }
+
+    private static byte[] ascii(String texto) {
+        return texto.getBytes(StandardCharsets.US_ASCII);
+    }
+}
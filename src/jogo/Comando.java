@@ -0,0 +1,144 @@
+// =================== Comando.java ===================
+/**
+ * Comando do protocolo já interpretado, com os argumentos em campos primitivos.
+ *
+ * Um mesmo objeto é reaproveitado para todas as linhas de uma conexão: o CodecComandos
+ * preenche os campos a cada linha, sem criar Strings nem arrays. Quem precisar guardar
+ * um comando deve copiar os campos que usar.
+ */
+
+package jogo;
+
+public final class Comando {
+    public enum Tipo {
+        MOVIMENTO,
+        SYNC,
+        HIST,
+        CODEC,
+        MAQUINA,
+        ESPECTAR,
+        STATS,
+        RETOMAR,
+        // Linha que não começa com um comando conhecido
+        DESCONHECIDO
+    }
+
+    /**
+     * Motivo de uma linha não ter sido aceita. O código numérico é estável e a mensagem é
+     * a que o servidor envia depois de "ERRO ".
+     */
+    public enum Erro {
+        NENHUM(0, ""),
+        LINHA_VAZIA(1, "Comando vazio"),
+        FORMATO_MOVIMENTO(2, "Formato inválido! Use: '3A 4B'"),
+        COORDENADA_INVALIDA(3, "Coordenada inválida! Use linha de 1 a 8 e coluna de A a H, como '3A'"),
+        FORMATO_MAQUINA(4, "Formato inválido! Use: 'MAQUINA 1000'"),
+        FORMATO_ESPECTAR(5, "Formato inválido! Use: 'ESPECTAR 12'"),
+        FORMATO_HIST(6, "Formato inválido! Use: 'HIST' ou 'HIST 1 50'"),
+        FORMATO_RETOMAR(7, "Formato inválido! Use: 'RETOMAR <token> <seq>'");
+
+        private final int codigo;
+        private final String mensagem;
+
+        Erro(int codigo, String mensagem) {
+            this.codigo = codigo;
+            this.mensagem = mensagem;
+        }
+
+        public int getCodigo() {
+            return codigo;
+        }
+
+        public String getMensagem() {
+            return mensagem;
+        }
+    }
+
+    Tipo tipo = Tipo.DESCONHECIDO;
+    Erro erro = Erro.NENHUM;
+    // MOVIMENTO: casas no formato x * 8 + y
+    int origem = -1;
+    int destino = -1;
+    // MAQUINA: tempo em ms (0 se omitido); ESPECTAR e RETOMAR: id da partida; HIST: primeira jogada (0 = todas)
+    long numero;
+    // HIST: máximo de jogadas pedidas (0 se omitido)
+    int quantidade;
+    // RETOMAR: cadeira, sessão e assinatura do token (ver Sessoes) e última sequência recebida
+    boolean brancas;
+    long sessao;
+    long assinatura;
+    long sequencia;
+    // CODEC: Conexao.CAP_* pedidas
+    int capacidades;
+
+    void limpar() {
+        tipo = Tipo.DESCONHECIDO;
+        erro = Erro.NENHUM;
+        origem = -1;
+        destino = -1;
+        numero = 0;
+        quantidade = 0;
+        brancas = false;
+        sessao = 0;
+        assinatura = 0;
+        sequencia = 0;
+        capacidades = 0;
+    }
+
+    // Preenche um MOVIMENTO direto, sem passar pelo texto (usado pela máquina)
+    public Comando movimento(int origem, int destino) {
+        limpar();
+        this.tipo = Tipo.MOVIMENTO;
+        this.origem = origem;
+        this.destino = destino;
+        return this;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public Erro getErro() {
+        return erro;
+    }
+
+    public boolean isValido() {
+        return erro == Erro.NENHUM;
+    }
+
+    public int getOrigem() {
+        return origem;
+    }
+
+    public int getDestino() {
+        return destino;
+    }
+
+    public long getNumero() {
+        return numero;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    public boolean isBrancas() {
+        return brancas;
+    }
+
+    public long getSessao() {
+        return sessao;
+    }
+
+    public long getAssinatura() {
+        return assinatura;
+    }
+
+    public long getSequencia() {
+        return sequencia;
+    }
+
+    public int getCapacidades() {
+        return capacidades;
+    }
+}
@@ -0,0 +1,52 @@
+package jogo;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conexão de um jogador com o servidor, independente do modelo de E/S usado.
+ *
+ * É implementada tanto pelo ClientHandler (socket bloqueante, uma thread por cliente)
+ * quanto pela ConexaoNio (canal não bloqueante atendido por um laço de eventos),
+ * permitindo que Partida e GerenciadorPartidas tratem os dois casos da mesma forma.
+ */
+interface Conexao {
+    // Capacidades negociadas pelo cliente com o comando CODEC
+    int CAP_COMPACTO = 1;
+    int CAP_DELTA = 2;
+
+    // Envia uma linha de texto para o cliente
+    void sendMessage(String message);
+
+    /**
+     * Envia um quadro da Transmissao (uma ou mais linhas já codificadas, terminadas em '\n').
+     * Nunca bloqueia quem chama: se um quadro anterior ainda não foi enviado, ele é
+     * substituído por este, já que cada quadro traz o estado completo. A implementação
+     * padrão só repassa as linhas a sendMessage, o que basta para conexões que não bloqueiam.
+     */
+    default void enviarQuadro(byte[] quadro) {
+        String texto = new String(quadro, StandardCharsets.UTF_8);
+        for (String linha : texto.split("\n")) {
+            sendMessage(linha);
+        }
+    }
+
+    /**
+     * Encerra a conexão depois de enviadas as mensagens já enfileiradas, sem esperar o
+     * cliente sair. A implementação padrão não faz nada (a máquina e as cadeiras vazias).
+     */
+    default void desconectar() {
+    }
+
+    // Verdadeiro se o cliente está na própria máquina do servidor (conexão de localhost)
+    default boolean isLocal() {
+        return false;
+    }
+
+    Partida getPartida();
+
+    void setPartida(Partida partida);
+
+    int getCapacidades();
+
+    void setCapacidades(int capacidades);
+}
@@ -0,0 +1,242 @@
+package jogo;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Conexão de um cliente atendida por um laço de eventos do ServidorNio.
+ *
+ * A leitura e a escrita no canal acontecem sempre na thread do laço dono da conexão.
+ * Outras threads (por exemplo, o laço do adversário) apenas enfileiram mensagens e
+ * pedem ao laço que as escreva; assim nenhuma thread fica bloqueada num cliente lento.
+ */
+final class ConexaoNio implements Conexao {
+    // Acima disso o cliente não está lendo o que recebe e a conexão é derrubada
+    private static final int LIMITE_SAIDA_BYTES = 1024 * 1024;
+
+    private final SocketChannel canal;
+    private final ServidorNio.LacoEventos laco;
+    private final GerenciadorPartidas gerenciador;
+    private SelectionKey chave;
+
+    // Mensagens aguardando escrita no canal
+    private final Queue<ByteBuffer> saida = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytesNaSaida = new AtomicLong();
+    private final AtomicBoolean escritaAgendada = new AtomicBoolean();
+    private final AtomicBoolean fechada = new AtomicBoolean();
+    // Último quadro de transmissão ainda não enfileirado; um quadro novo substitui o anterior
+    private final AtomicReference<byte[]> quadroPendente = new AtomicReference<>();
+    private volatile boolean fecharAposEnvio;
+    // Passou do LIMITE_SAIDA_BYTES: o laço fecha a conexão sem enviar o resto
+    private volatile boolean transbordou;
+
+    // Início de linha recebido sem o '\n'; só é alocado quando uma linha chega fragmentada
+    private byte[] parcial;
+    private int tamanhoParcial;
+
+    private volatile Partida partida;
+    private volatile int capacidades;
+
+    ConexaoNio(SocketChannel canal, ServidorNio.LacoEventos laco, GerenciadorPartidas gerenciador) {
+        this.canal = canal;
+        this.laco = laco;
+        this.gerenciador = gerenciador;
+    }
+
+    SocketChannel getCanal() {
+        return canal;
+    }
+
+    void setChave(SelectionKey chave) {
+        this.chave = chave;
+    }
+
+    @Override
+    public boolean isLocal() {
+        try {
+            return canal.getRemoteAddress() instanceof InetSocketAddress endereco
+                    && endereco.getAddress().isLoopbackAddress();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Partida getPartida() {
+        return partida;
+    }
+
+    @Override
+    public void setPartida(Partida partida) {
+        this.partida = partida;
+    }
+
+    @Override
+    public int getCapacidades() {
+        return capacidades;
+    }
+
+    @Override
+    public void setCapacidades(int capacidades) {
+        this.capacidades = capacidades;
+    }
+
+    /*
+     * Enfileira a mensagem e agenda a escrita no laço da conexão. Quem chama costuma estar
+     * com o lock da partida, então a conexão de um cliente que não lê é fechada pelo laço,
+     * e não aqui (fechar() avisa o gerenciador, que tem o seu próprio lock).
+     */
+    @Override
+    public void sendMessage(String message) {
+        if (fechada.get() || transbordou) {
+            return;
+        }
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        if (bytesNaSaida.addAndGet(bytes.length) > LIMITE_SAIDA_BYTES) {
+            transbordou = true;
+            System.out.println("Cliente não está lendo as mensagens, desconectando: " + canal);
+        } else {
+            saida.add(ByteBuffer.wrap(bytes));
+        }
+        if (escritaAgendada.compareAndSet(false, true)) {
+            laco.agendarEscrita(this);
+        }
+    }
+
+    @Override
+    public void enviarQuadro(byte[] quadro) {
+        if (fechada.get()) {
+            return;
+        }
+        quadroPendente.set(quadro);
+        if (escritaAgendada.compareAndSet(false, true)) {
+            laco.agendarEscrita(this);
+        }
+    }
+
+    // Fecha no laço da conexão, depois de escrever o que já estava na fila e o quadro pendente
+    @Override
+    public void desconectar() {
+        fecharAposEnvio = true;
+        if (escritaAgendada.compareAndSet(false, true)) {
+            laco.agendarEscrita(this);
+        }
+    }
+
+    /*
+     * Escreve o quanto o canal aceitar; o restante aguarda OP_WRITE (thread do laço).
+     * O quadro pendente só entra na fila quando ela esvazia: enquanto o espectador não
+     * consome, os quadros novos vão apenas substituindo o pendente.
+     */
+    void escrever() {
+        escritaAgendada.set(false);
+        if (fechada.get() || chave == null) {
+            return;
+        }
+        if (transbordou) {
+            fechar();
+            return;
+        }
+        try {
+            ByteBuffer buffer;
+            while ((buffer = proximoBuffer()) != null) {
+                canal.write(buffer);
+                if (buffer.hasRemaining()) {
+                    chave.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                bytesNaSaida.addAndGet(-saida.poll().capacity());
+            }
+            chave.interestOps(SelectionKey.OP_READ);
+            if (fecharAposEnvio) {
+                fechar();
+            }
+        } catch (IOException e) {
+            fechar();
+        }
+    }
+
+    private ByteBuffer proximoBuffer() {
+        ByteBuffer buffer = saida.peek();
+        if (buffer == null) {
+            byte[] quadro = quadroPendente.getAndSet(null);
+            if (quadro != null) {
+                buffer = ByteBuffer.wrap(quadro);
+                bytesNaSaida.addAndGet(quadro.length);
+                saida.add(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Junta o trecho [inicio, fim) ao início de linha guardado, se houver, e decodifica a
+     * linha completa no comando.
+     *
+     * @return false se a linha ultrapassou o tamanho máximo
+     */
+    boolean completarLinha(byte[] dados, int inicio, int fim, Comando comando) {
+        if (tamanhoParcial == 0) {
+            CodecComandos.decodificar(dados, inicio, fim, comando);
+            return true;
+        }
+        if (!guardarParcial(dados, inicio, fim)) {
+            return false;
+        }
+        CodecComandos.decodificar(parcial, 0, tamanhoParcial, comando);
+        tamanhoParcial = 0;
+        return true;
+    }
+
+    // Guarda um trecho de linha ainda sem terminador; false se a linha ficou grande demais
+    boolean guardarParcial(byte[] dados, int inicio, int fim) {
+        int tamanho = fim - inicio;
+        if (tamanhoParcial + tamanho > ServidorNio.TAMANHO_MAXIMO_LINHA) {
+            return false;
+        }
+        if (parcial == null) {
+            parcial = new byte[Math.max(128, tamanho)];
+        } else if (parcial.length < tamanhoParcial + tamanho) {
+            parcial = Arrays.copyOf(parcial, Math.max(parcial.length * 2, tamanhoParcial + tamanho));
+        }
+        System.arraycopy(dados, inicio, parcial, tamanhoParcial, tamanho);
+        tamanhoParcial += tamanho;
+        return true;
+    }
+
+    // Encerra a conexão assim que as mensagens pendentes (como VITORIA) forem enviadas
+    void fecharAposEnvio() {
+        fecharAposEnvio = true;
+        if (saida.isEmpty()) {
+            fechar();
+        }
+    }
+
+    void fechar() {
+        if (!fechada.compareAndSet(false, true)) {
+            return;
+        }
+        if (chave != null) {
+            chave.cancel();
+        }
+        // O que não foi escrito não tem mais para onde ir; a partida ainda pode referenciar a conexão
+        saida.clear();
+        quadroPendente.set(null);
+        try {
+            canal.close();
+        } catch (IOException e) {
+            System.out.println("Erro ao fechar canal: " + e.getMessage());
+        }
+        gerenciador.sair(this);
+    }
+}
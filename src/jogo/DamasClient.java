@@ -39,6 +39,10 @@ public class DamasClient {
             Scanner scanner = new Scanner(System.in)
         ) {
             System.out.println("Conectado ao servidor de Damas");
+            // Pede o tabuleiro compacto e só as jogadas a cada lance; servidores antigos seguem enviando TABULEIRO
+            out.println("CODEC COMPACTO DELTA");
+            // Cópia local do tabuleiro, atualizada pelas mensagens do servidor
+            TabuleiroLocal local = new TabuleiroLocal();
 
             // Cria uma thread para escutar mensagens do servidor em tempo real
             new Thread(() -> {
@@ -51,11 +55,9 @@ public class DamasClient {
                             meuTime = serverMessage.split(" ")[1];
                             System.out.println("Você está jogando com as peças " + meuTime);
                         }
-                        // Atualiza o tabuleiro com o novo estado vindo do servidor
-                        else if (serverMessage.startsWith("TABULEIRO")) {
-                            String estado = serverMessage.substring(9); // Remove prefixo "TABULEIRO"
-                            Tabuleiro tabuleiro = Tabuleiro.desserializar(estado);
-                            tabuleiro.imprimirTabuleiro(); // Mostra o tabuleiro atualizado no terminal
+                        // Atualiza o tabuleiro (DELTA, SNAP, TABC ou TABULEIRO) e mostra no terminal
+                        else if (local.processar(serverMessage, out::println)) {
+                            local.getTabuleiro().imprimirTabuleiro();
                         }
                         // Indica de quem é a vez de jogar
                         else if (serverMessage.startsWith("TURNO")) {
@@ -73,13 +75,20 @@ public class DamasClient {
             }).start();
 
             // Loop principal para o jogador digitar e enviar comandos
+            Comando conferido = new Comando();
             while (true) {
                 String comando = scanner.nextLine();
                 if (comando.equalsIgnoreCase("SAIR")) {
                     break; // Encerra o jogo se o jogador digitar "SAIR"
                 }
-                // Envia o comando para o servidor, no formato "MOVIMENTO origem destino"
-                out.println("MOVIMENTO " + comando);
+                // Envia o comando para o servidor, no formato "MOVIMENTO origem destino", se o
+                // codec do protocolo aceitá-lo
+                String mensagem = "MOVIMENTO " + comando;
+                if (!CodecComandos.decodificar(mensagem, conferido)) {
+                    System.out.println(conferido.getErro().getMensagem());
+                    continue;
+                }
+                out.println(mensagem);
             }
 
         } catch (IOException e) {
@@ -2,170 +2,464 @@
 /**
  * Classe principal do servidor do jogo de Damas.
  * 
- * Este servidor aguarda conexões de dois clientes e gerencia a lógica do jogo de damas,
+ * Este servidor aguarda conexões de clientes, emparelha-os dois a dois em partidas
+ * independentes (ver GerenciadorPartidas) e gerencia a lógica do jogo de damas,
  * incluindo o controle de turnos, o envio do estado do tabuleiro e a verificação de vitória.
  * Cada cliente conectado é tratado em uma thread separada através da classe interna ClientHandler,
- * que processa os comandos enviados pelos jogadores (como MOVIMENTO e HIST).
+ * que processa os comandos enviados pelos jogadores (como MOVIMENTO e HIST). Por padrão são
+ * usadas threads de plataforma; com a opção "--virtual" cada conexão roda numa thread virtual,
+ * o que permite manter muito mais conexões abertas com o mesmo consumo de memória.
+ * Com a opção "--nio" o servidor passa a usar o ServidorNio, baseado em Selector, com
+ * um pequeno número fixo de threads de E/S (ajustável com "--lacos=N").
+ * Quem estiver aguardando adversário pode enviar MAQUINA para jogar contra o MotorDamas;
+ * "--tempo-maquina=ms" limita o tempo de busca por lance e "--threads-maquina=N" as threads usadas;
+ * com "--finais=pasta" a máquina joga os finais com as tabelas do GeradorFinais e com
+ * "--livro=arquivo" as aberturas com o livro do GeradorLivro.
+ * As partidas são registradas no DiarioPartidas (pasta "diario", ou "--diario=pasta"; desligado
+ * com "--sem-diario") e as que estavam em andamento são retomadas quando o servidor reinicia.
+ * Cada jogador recebe um token de sessão com o INICIO: se a conexão cair, a cadeira fica
+ * guardada por "--reconexao=segundos" (30 por padrão; 0 encerra a partida na hora) e ele
+ * volta com RETOMAR, recebendo só as jogadas que perdeu.
+ * Com "--roteador=host:porta" o servidor é um nó de um cluster atrás do RoteadorDamas
+ * ("--porta=N" muda a porta, "--endereco=host:porta" o endereço anunciado e "--sessoes=pasta"
+ * a pasta da chave dos tokens, que deve ser a mesma em todos os nós); ver MembroCluster.
+ * As mensagens a cada cliente passam por uma fila própria, escrita por uma thread virtual;
+ * o lock da partida só cobre a mudança de estado e o enfileiramento, nunca a escrita no socket.
+ * Contadores e histogramas de latência ficam nas Metricas, publicadas no JMX e no comando STATS;
+ * o STATS só é respondido a conexões de localhost (nunca num nó de cluster, onde todos chegam
+ * pelo roteador), a não ser com "--stats", que o libera para qualquer conexão.
  * A comunicação com os clientes é feita por sockets, utilizando mensagens de texto.
  */
 
 package jogo;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DamasServer {
     // Porta padrão onde o servidor vai escutar
     private static final int PORT = 5555;
+    // Tempo que um nó espera as suas partidas serem transferidas ao sair do cluster
+    private static final Duration PRAZO_SAIDA_CLUSTER = Duration.ofSeconds(10);
+    // Espera depois de um accept que falhou, antes de tentar de novo
+    private static final Duration PAUSA_ERRO_ACEITE = Duration.ofMillis(100);
 
-    // Lista de todos os clientes conectados
-    private static List<ClientHandler> clients = new ArrayList<>();
-
-    // Instância do tabuleiro compartilhado entre os jogadores
-    private static Tabuleiro tabuleiro = new Tabuleiro();
+    // Registro das partidas em andamento e da fila de emparelhamento
+    private static final GerenciadorPartidas gerenciador = new GerenciadorPartidas();
 
     public static void main(String[] args) {
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("Servidor de Damas iniciado na porta " + PORT);
+        // Modo de execução das conexões: threads de plataforma (padrão) ou virtuais
+        boolean threadsVirtuais = false;
+        boolean nio = false;
+        int lacos = Runtime.getRuntime().availableProcessors();
+        int threadsMaquina = Runtime.getRuntime().availableProcessors();
+        long tempoMaquina = 1000;
+        String diretorioDiario = "diario";
+        long intervaloDiario = 10;
+        String diretorioFinais = null;
+        String arquivoLivro = null;
+        long prazoReconexao = 30;
+        int porta = PORT;
+        String roteador = null;
+        String endereco = null;
+        String diretorioSessoes = null;
+        boolean statsParaTodos = false;
+        for (String arg : args) {
+            if (arg.equals("--virtual")) {
+                threadsVirtuais = true;
+            } else if (arg.equals("--nio")) {
+                nio = true;
+            } else if (arg.startsWith("--lacos=")) {
+                lacos = Integer.parseInt(arg.substring("--lacos=".length()));
+            } else if (arg.startsWith("--tempo-maquina=")) {
+                tempoMaquina = Long.parseLong(arg.substring("--tempo-maquina=".length()));
+            } else if (arg.startsWith("--threads-maquina=")) {
+                threadsMaquina = Integer.parseInt(arg.substring("--threads-maquina=".length()));
+            } else if (arg.startsWith("--diario=")) {
+                diretorioDiario = arg.substring("--diario=".length());
+            } else if (arg.equals("--sem-diario")) {
+                diretorioDiario = null;
+            } else if (arg.startsWith("--intervalo-diario=")) {
+                intervaloDiario = Long.parseLong(arg.substring("--intervalo-diario=".length()));
+            } else if (arg.startsWith("--finais=")) {
+                diretorioFinais = arg.substring("--finais=".length());
+            } else if (arg.startsWith("--reconexao=")) {
+                prazoReconexao = Long.parseLong(arg.substring("--reconexao=".length()));
+            } else if (arg.startsWith("--livro=")) {
+                arquivoLivro = arg.substring("--livro=".length());
+            } else if (arg.startsWith("--porta=")) {
+                porta = Integer.parseInt(arg.substring("--porta=".length()));
+            } else if (arg.startsWith("--roteador=")) {
+                roteador = arg.substring("--roteador=".length());
+            } else if (arg.startsWith("--endereco=")) {
+                endereco = arg.substring("--endereco=".length());
+            } else if (arg.startsWith("--sessoes=")) {
+                diretorioSessoes = arg.substring("--sessoes=".length());
+            } else if (arg.equals("--stats")) {
+                statsParaTodos = true;
+            }
+        }
+        gerenciador.configurarMaquina(threadsMaquina, tempoMaquina);
+        gerenciador.liberarStats(statsParaTodos);
+        if (diretorioFinais != null) {
+            try {
+                TabelaFinais finais = TabelaFinais.abrir(Path.of(diretorioFinais));
+                gerenciador.usarFinais(finais);
+                System.out.println("Tabelas de finais com até " + finais.getMaxPecas() + " peças");
+            } catch (IOException e) {
+                System.out.println("Erro ao abrir as tabelas de finais: " + e.getMessage());
+            }
+        }
+        if (arquivoLivro != null) {
+            try {
+                LivroAberturas livro = LivroAberturas.abrir(Path.of(arquivoLivro));
+                gerenciador.usarLivro(livro);
+                System.out.println("Livro de aberturas com " + livro.getQuantidadeNos() + " posições");
+            } catch (IOException e) {
+                System.out.println("Erro ao abrir o livro de aberturas: " + e.getMessage());
+            }
+        }
+        Metricas.SERVIDOR.registrarJmx();
+
+        // A chave dos tokens fica com o diário, para valerem também depois de um reinício
+        if (diretorioSessoes == null) {
+            diretorioSessoes = diretorioDiario;
+        }
+        if (prazoReconexao > 0) {
+            try {
+                Sessoes sessoes = diretorioSessoes != null ? Sessoes.carregar(Path.of(diretorioSessoes))
+                        : Sessoes.temporarias();
+                gerenciador.usarSessoes(sessoes, prazoReconexao * 1000);
+            } catch (IOException e) {
+                System.out.println("Erro ao abrir a chave das sessões: " + e.getMessage());
+                return;
+            }
+        }
+
+        DiarioPartidas diario = null;
+        if (diretorioDiario != null) {
+            diario = new DiarioPartidas(Path.of(diretorioDiario), intervaloDiario);
+            try {
+                gerenciador.usarDiario(diario);
+            } catch (IOException e) {
+                System.out.println("Erro ao abrir o diário de partidas: " + e.getMessage());
+                return;
+            }
+        }
+
+        MembroCluster cluster = null;
+        if (roteador != null) {
+            cluster = new MembroCluster(roteador, endereco != null ? endereco : "localhost:" + porta, gerenciador);
+            gerenciador.usarCluster(cluster);
+        }
+        // Ao parar, um nó primeiro repassa as suas partidas aos outros e só então fecha o diário
+        MembroCluster membro = cluster;
+        DiarioPartidas diarioAberto = diario;
+        if (membro != null || diarioAberto != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (membro != null && !membro.sair(PRAZO_SAIDA_CLUSTER)) {
+                    System.out.println("Saída do cluster não confirmada pelo roteador");
+                }
+                if (diarioAberto != null) {
+                    diarioAberto.fechar();
+                }
+            }));
+        }
+
+        if (nio) {
+            try {
+                ServidorNio servidor = new ServidorNio(porta, lacos, gerenciador);
+                // O bind é a primeira coisa do executar(), bem antes de o anúncio chegar ao roteador
+                if (cluster != null) {
+                    cluster.iniciar();
+                }
+                servidor.executar();
+            } catch (IOException e) {
+                System.out.println("Erro no servidor: " + e.getMessage());
+            }
+            return;
+        }
+
+        Thread.Builder construtorThreads = threadsVirtuais
+                ? Thread.ofVirtual().name("cliente-", 0)
+                : Thread.ofPlatform().name("cliente-", 0);
+
+        try (ServerSocket serverSocket = new ServerSocket(porta)) {
+            System.out.println("Servidor de Damas iniciado na porta " + porta
+                    + (threadsVirtuais ? " (threads virtuais)" : " (threads de plataforma)"));
+            // Só entra no anel quando já aceita conexões
+            if (cluster != null) {
+                cluster.iniciar();
+            }
 
             // Loop infinito esperando conexões de clientes
-            while (true) {
-                Socket socket = serverSocket.accept();
+            while (!serverSocket.isClosed()) {
+                Socket socket = null;
+                try {
+                    socket = serverSocket.accept();
+                    // As mensagens já saem agrupadas num único flush; não há por que o TCP segurá-las
+                    socket.setTcpNoDelay(true);
+                } catch (IOException e) {
+                    // Uma conexão que falha (ou descritores esgotados) não derruba o servidor
+                    System.out.println("Erro ao aceitar conexão: " + e.getMessage());
+                    fecharSilenciosamente(socket);
+                    pausarAposErro();
+                    continue;
+                }
                 System.out.println("Novo cliente conectado: " + socket);
 
                 // Cria e inicia uma nova thread para lidar com o cliente
-                ClientHandler clientThread = new ClientHandler(socket, tabuleiro);
-                clients.add(clientThread);
-                clientThread.start();
+                ClientHandler handler = new ClientHandler(socket, gerenciador);
+                construtorThreads.start(handler);
 
-                // Quando os dois jogadores se conectarem, inicia o jogo
-                if (clients.size() == 2) {
-                    notifyGameStart();
-                }
+                // Emparelha o cliente; a partida começa quando houver dois jogadores
+                gerenciador.entrar(handler);
             }
         } catch (IOException e) {
             System.out.println("Erro no servidor: " + e.getMessage());
         }
     }
 
-    // Informa os clientes sobre o início do jogo
-    private static void notifyGameStart() {
-        clients.get(0).sendMessage("INICIO BRANCAS");
-        clients.get(1).sendMessage("INICIO PRETAS");
-        broadcastTabuleiro();
-        broadcastMessage("TURNO BRANCAS");
-    }
-
-    // Envia o estado atual do tabuleiro para todos os clientes
-    public static void broadcastTabuleiro() {
-        String estado = tabuleiro.serializar();
-        for (ClientHandler client : clients) {
-            client.sendMessage("TABULEIRO " + estado);
+    // Com os descritores esgotados o accept falharia de novo na hora; espera alguns fecharem
+    private static void pausarAposErro() {
+        try {
+            Thread.sleep(PAUSA_ERRO_ACEITE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    // Envia uma mensagem genérica para todos os clientes
-    public static void broadcastMessage(String message) {
-        for (ClientHandler client : clients) {
-            client.sendMessage(message);
+    private static void fecharSilenciosamente(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Já estava inutilizável
         }
     }
 }
 
-// Classe que representa uma thread para cada cliente
+// Tarefa executada numa thread (de plataforma ou virtual) para cada cliente
 //Responsavel por: recepção de comandos, validação de jogadas e verificação de vitória
-class ClientHandler extends Thread {
+//As mensagens ao cliente vão para uma fila própria, escrita por uma thread virtual fora do lock da partida
+class ClientHandler implements Runnable, Conexao {
+    // Acima disso o cliente não está lendo o que recebe e a conexão é derrubada
+    private static final int LIMITE_SAIDA_BYTES = 1024 * 1024;
+    private static final int TAMANHO_BUFFER_SAIDA = 8 * 1024;
+
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
-    private Tabuleiro tabuleiro;
+    private OutputStream saida;
+    private InputStream entrada;
+    // Mensagens já codificadas aguardando escrita, o total de bytes delas e se há uma thread escrevendo
+    private final Queue<byte[]> fila = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytesNaFila = new AtomicLong();
+    private final AtomicBoolean escrevendo = new AtomicBoolean();
+    // Último quadro de transmissão ainda não enviado; um quadro novo substitui o anterior
+    private final AtomicReference<byte[]> quadroPendente = new AtomicReference<>();
+    // A leitura terminou: a thread de escrita envia o que falta e fecha o socket
+    private volatile boolean fechando;
+    private final GerenciadorPartidas gerenciador;
+    private volatile Partida partida;
+    private volatile int capacidades;
 
-    public ClientHandler(Socket socket, Tabuleiro tabuleiro) {
+    public ClientHandler(Socket socket, GerenciadorPartidas gerenciador) {
         this.socket = socket;
-        this.tabuleiro = tabuleiro;
+        this.gerenciador = gerenciador;
         try {
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            saida = new BufferedOutputStream(socket.getOutputStream(), TAMANHO_BUFFER_SAIDA);
+            entrada = socket.getInputStream();
         } catch (IOException e) {
             System.out.println("Erro ao criar handler: " + e.getMessage());
         }
     }
 
-    // Envia mensagem para o cliente conectado
+    // Enfileira a mensagem para o cliente; não bloqueia, mesmo que o cliente não esteja lendo
+    @Override
     public void sendMessage(String message) {
-        out.println(message);
+        if (socket.isClosed()) {
+            return;
+        }
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        if (bytesNaFila.addAndGet(bytes.length) > LIMITE_SAIDA_BYTES) {
+            bytesNaFila.addAndGet(-bytes.length);
+            System.out.println("Cliente não está lendo as mensagens, desconectando: " + socket);
+            descartarPendentes();
+            fecharSocket();
+            return;
+        }
+        fila.add(bytes);
+        agendarEscrita();
     }
 
+    // Quadros de transmissão não entram na fila: só o mais recente é enviado
     @Override
-    public void run() {
-        try {
-            String inputLine;
-            // Lê comandos do cliente em loop
-            while ((inputLine = in.readLine()) != null) {
-                System.out.println("Comando recebido: " + inputLine);
-
-                synchronized (tabuleiro) {
-                    // Verifica se o jogo já terminou antes de processar
-                    int vencedor = tabuleiro.verificarVencedor();
-                    if (vencedor != 0) {
-                        String ganhador = (vencedor == 1) ? "BRANCAS" : "PRETAS";
-                        DamasServer.broadcastMessage("VITORIA " + ganhador);
-                        break;
-                    }
-
-                    // Comando de movimento de peça
-                    if (inputLine.startsWith("MOVIMENTO")) {
-                        String[] partes = inputLine.split(" ");
-                        if (partes.length < 3) {
-                            sendMessage("ERRO Formato inválido! Use: '3A 4B'");
-                            continue;
-                        }
-                        int[] origem = Tabuleiro.converterCoordenada(partes[1]);
-                        int[] destino = Tabuleiro.converterCoordenada(partes[2]);
-
-                        // Valida e executa o movimento
-                        if (tabuleiro.validarMovimento(origem[0], origem[1], destino[0], destino[1])) {
-                            tabuleiro.moverPeca(origem[0], origem[1], destino[0], destino[1]);
-                            tabuleiro.registrarJogada(partes[1] + " " + partes[2]);
-
-                            DamasServer.broadcastTabuleiro();
-
-                            // Verifica novamente se alguém venceu
-                            vencedor = tabuleiro.verificarVencedor();
-                            if (vencedor != 0) {
-                                String ganhador = (vencedor == 1) ? "BRANCAS" : "PRETAS";
-                                DamasServer.broadcastMessage("VITORIA " + ganhador);
-                                break;
-                            } else {
-                                DamasServer.broadcastMessage("TURNO " + (tabuleiro.isVezBrancas() ? "BRANCAS" : "PRETAS"));
-                            }
-                        } else {
-                            sendMessage("ERRO Movimento inválido");
-                        }
-                    }
-                    // Comando para recuperar o histórico de jogadas
-                    else if (inputLine.equalsIgnoreCase("HIST")) {
-                        List<String> historico = tabuleiro.getHistorico();
-                        for (String jogada : historico) {
-                            sendMessage("HIST " + jogada);
-                        }
-                    }
+    public void enviarQuadro(byte[] quadro) {
+        quadroPendente.set(quadro);
+        agendarEscrita();
+    }
+
+    private void agendarEscrita() {
+        if (escrevendo.compareAndSet(false, true)) {
+            Thread.ofVirtual().start(this::escreverPendentes);
+        }
+    }
+
+    /*
+     * Escreve tudo o que estiver na fila (e o quadro pendente) com um único flush, de modo
+     * que TABULEIRO + TURNO ou todas as linhas do HIST saem juntos. Repete enquanto
+     * chegarem mensagens novas; com "fechando", envia o que falta e fecha o socket.
+     */
+    private void escreverPendentes() {
+        while (true) {
+            try {
+                byte[] mensagem;
+                while ((mensagem = fila.poll()) != null) {
+                    bytesNaFila.addAndGet(-mensagem.length);
+                    saida.write(mensagem);
+                }
+                byte[] quadro = quadroPendente.getAndSet(null);
+                if (quadro != null) {
+                    saida.write(quadro);
                 }
+                saida.flush();
+            } catch (IOException e) {
+                descartarPendentes();
+                fecharSocket();
+                return;
+            }
+            if (fechando) {
+                fecharSocket();
+                return;
+            }
+            escrevendo.set(false);
+            if ((fila.isEmpty() && quadroPendente.get() == null && !fechando)
+                    || !escrevendo.compareAndSet(false, true)) {
+                return;
             }
+        }
+    }
+
+    // A conexão vai ser fechada: o que ainda não foi escrito não tem mais para onde ir. Cada
+    // mensagem retirada é descontada, porque a thread de escrita pode estar descontando as suas
+    private void descartarPendentes() {
+        byte[] mensagem;
+        while ((mensagem = fila.poll()) != null) {
+            bytesNaFila.addAndGet(-mensagem.length);
+        }
+        quadroPendente.set(null);
+    }
+
+    private void fecharSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.out.println("Erro ao fechar socket: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isLocal() {
+        return socket.getInetAddress().isLoopbackAddress();
+    }
+
+    // A leitura termina como se o cliente tivesse saído; o run() envia o que falta e fecha
+    @Override
+    public void desconectar() {
+        try {
+            socket.shutdownInput();
+        } catch (IOException e) {
+            fecharSocket();
+        }
+    }
+
+    @Override
+    public Partida getPartida() {
+        return partida;
+    }
+
+    @Override
+    public void setPartida(Partida partida) {
+        this.partida = partida;
+    }
+
+    @Override
+    public int getCapacidades() {
+        return capacidades;
+    }
+
+    @Override
+    public void setCapacidades(int capacidades) {
+        this.capacidades = capacidades;
+    }
+
+    @Override
+    public void run() {
+        try {
+            lerComandos();
         } catch (IOException e) {
             System.out.println("Erro no handler: " + e.getMessage());
         } finally {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                System.out.println("Erro ao fechar socket: " + e.getMessage());
+            gerenciador.sair(this);
+            // O socket só é fechado depois de enviadas as últimas mensagens (como VITORIA)
+            fechando = true;
+            if (escrevendo.compareAndSet(false, true)) {
+                escreverPendentes();
+            }
+        }
+    }
+
+    /*
+     * Lê comandos do cliente em loop. As linhas são separadas no próprio buffer de leitura e
+     * decodificadas direto dos bytes num único Comando; uma linha maior que o buffer (o
+     * mesmo limite do ServidorNio) encerra a conexão.
+     */
+    private void lerComandos() throws IOException {
+        byte[] buffer = new byte[ServidorNio.TAMANHO_MAXIMO_LINHA];
+        Comando comando = new Comando();
+        int inicio = 0;
+        int fim = 0;
+        int varrido = 0;
+        while (true) {
+            while (varrido < fim) {
+                if (buffer[varrido++] != '\n') {
+                    continue;
+                }
+                CodecComandos.decodificar(buffer, inicio, varrido - 1, comando);
+                inicio = varrido;
+                if (!ProcessadorComandos.processar(this, comando, gerenciador)) {
+                    return;
+                }
+            }
+            // Move o início de linha pendente para o começo do buffer antes de ler mais
+            if (inicio > 0) {
+                System.arraycopy(buffer, inicio, buffer, 0, fim - inicio);
+                fim -= inicio;
+                varrido = fim;
+                inicio = 0;
+            }
+            if (fim == buffer.length) {
+                System.out.println("Linha longa demais, desconectando: " + socket);
+                return;
+            }
+            int lidos = entrada.read(buffer, fim, buffer.length - fim);
+            if (lidos < 0) {
+                return;
             }
+            fim += lidos;
         }
     }
 }
@@ -6,6 +6,11 @@ import java.util.Scanner;
 public class DamasUI {
     private ClienteSocket cliente;
     private Scanner scanner;
+    // Reaproveitado para conferir cada jogada digitada
+    private final Comando comando = new Comando();
+    // Token recebido com o INICIO, para voltar à partida se a conexão cair
+    private volatile String sessao;
+    private static final int TENTATIVAS_RECONEXAO = 10;
 
     public static void main(String[] args) {
         try {
@@ -26,32 +31,17 @@ public class DamasUI {
         System.out.println("Bem-vindo ao Jogo de Damas!");
         System.out.println("Instruções:");
         System.out.println("- Digite as jogadas no formato 'origem destino' (ex: '3A 4B')");
-        System.out.println("- Comandos especiais: 'SAIR', 'HIST'");
+        System.out.println("- Comandos especiais: 'SAIR', 'HIST' (ou uma página, como 'HIST 1 20')");
+
+        // Pede o tabuleiro compacto e só as jogadas a cada lance; servidores antigos seguem enviando TABULEIRO
+        cliente.enviarMensagem("CODEC COMPACTO DELTA");
+        TabuleiroLocal local = new TabuleiroLocal();
 
         new Thread(() -> {
-            try {
-                String msg;
-                while ((msg = cliente.receberMensagem()) != null) {
-                    if (msg.startsWith("INICIO")) {
-                        System.out.println("Você está jogando com as peças " + msg.split(" ")[1]);
-                    } else if (msg.startsWith("TABULEIRO")) {
-                        Tabuleiro tabuleiro = Tabuleiro.desserializar(msg.substring(9));
-                        tabuleiro.imprimirTabuleiro();
-                        tabuleiro.mostrarContagem();
-                    } else if (msg.startsWith("TURNO")) {
-                        System.out.println("Vez das: " + msg.substring(5));
-                    } else if (msg.startsWith("ERRO")) {
-                        System.out.println("Erro: " + msg.substring(5));
-                    } else if (msg.startsWith("HIST")) {
-                        System.out.println("Histórico: " + msg.substring(5));
-                    } else if (msg.startsWith("VITORIA")) {
-                        System.out.println("Fim de jogo! Vencedor: " + msg.split(" ")[1]);
-                        System.exit(0);
-                    }
-                }
-            } catch (IOException e) {
+            do {
+                receberMensagens(local);
                 System.out.println("Conexão com o servidor perdida.");
-            }
+            } while (sessao != null && retomar(local));
         }).start();
 
         while (true) {
@@ -59,6 +49,57 @@ public class DamasUI {
         }
     }
 
+    // Lê e exibe as mensagens do servidor até a conexão cair
+    private void receberMensagens(TabuleiroLocal local) {
+        try {
+            String msg;
+            while ((msg = cliente.receberMensagem()) != null) {
+                if (msg.startsWith("INICIO")) {
+                    System.out.println("Você está jogando com as peças " + msg.split(" ")[1]);
+                } else if (msg.startsWith("SESSAO ")) {
+                    sessao = msg.substring(7);
+                } else if (local.processar(msg, cliente::enviarMensagem)) {
+                    local.getTabuleiro().imprimirTabuleiro();
+                    local.getTabuleiro().mostrarContagem();
+                } else if (msg.startsWith("TURNO")) {
+                    System.out.println("Vez das: " + msg.substring(5));
+                } else if (msg.startsWith("ERRO")) {
+                    System.out.println("Erro: " + msg.substring(5));
+                } else if (msg.startsWith("HIST")) {
+                    System.out.println("Histórico: " + msg.substring(5));
+                } else if (msg.startsWith("VITORIA")) {
+                    System.out.println("Fim de jogo! Vencedor: " + msg.split(" ")[1]);
+                    System.exit(0);
+                }
+            }
+        } catch (IOException e) {
+            // Tratado por quem chamou, como o fim da conexão
+        }
+    }
+
+    /*
+     * Abre outra conexão e pede a cadeira de volta, com a última jogada recebida: o
+     * servidor responde com as que faltam. Os dois comandos vão juntos, sem esperar resposta.
+     */
+    private boolean retomar(TabuleiroLocal local) {
+        for (int tentativa = 1; tentativa <= TENTATIVAS_RECONEXAO; tentativa++) {
+            try {
+                Thread.sleep(1000);
+                cliente.reconectar();
+                cliente.enviarMensagem("CODEC COMPACTO DELTA");
+                cliente.enviarMensagem("RETOMAR " + sessao + " " + Math.max(0, local.getSequencia()));
+                System.out.println("Reconectado; retomando a partida...");
+                return true;
+            } catch (IOException e) {
+                System.out.println("Tentativa " + tentativa + " de reconexão falhou: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
     private void processarTurno() {
         System.out.print("Sua jogada: ");
         String jogada = scanner.nextLine().trim();
@@ -66,15 +107,17 @@ public class DamasUI {
         if (jogada.equalsIgnoreCase("SAIR")) {
             System.out.println("Jogo encerrado.");
             System.exit(0);
-        } else if (jogada.equalsIgnoreCase("HIST")) {
-            cliente.enviarMensagem("HIST");
+        } else if (jogada.regionMatches(true, 0, "HIST", 0, 4)) {
+            // "HIST" inteiro ou uma página, como "HIST 1 20"
+            cliente.enviarMensagem(jogada.toUpperCase());
         } else {
-            String[] partes = jogada.split(" ");
-            if (partes.length != 2) {
-                System.out.println("Formato inválido! Use: '3A 4B'");
+            // Confere a jogada com o mesmo codec do servidor antes de enviá-la
+            String mensagem = "MOVIMENTO " + jogada;
+            if (!CodecComandos.decodificar(mensagem, comando)) {
+                System.out.println(comando.getErro().getMensagem());
                 return;
             }
-            cliente.enviarMensagem("MOVIMENTO " + jogada);
+            cliente.enviarMensagem(mensagem);
         }
     }
 }
\ No newline at end of file
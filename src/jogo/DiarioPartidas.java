@@ -0,0 +1,383 @@
+// =================== DiarioPartidas.java ===================
+/**
+ * Diário (write-ahead log) das partidas em andamento, usado para recuperá-las quando o
+ * servidor é reiniciado.
+ *
+ * Cada evento (início de partida, jogada aceita, fim) vira um registro binário de 16 bytes
+ * acrescentado ao fim do segmento atual, um arquivo de tamanho fixo mapeado em memória.
+ * Escrever um registro é só copiar 16 bytes para o mapeamento: se o processo cair, o
+ * sistema operacional ainda grava o que já estava lá. Para sobreviver também a uma queda
+ * da máquina, uma thread de gravação força (fsync) de tempos em tempos tudo o que foi
+ * escrito desde a última vez, de uma só vez para todas as partidas (group commit).
+ *
+ * Formato do registro:
+ *   byte 0      tipo (INICIO, LANCE, FIM ou MAIOR_ID); 0 marca o fim dos dados do segmento
+ *   byte 1      INICIO: opções da partida; LANCE: casa de origem (x * 8 + y)
+ *   byte 2      LANCE: casa de destino
+ *   byte 3      reservado
+ *   bytes 4-7   soma de verificação dos demais bytes, para descartar um registro gravado pela metade
+ *   bytes 8-15  id da partida (MAIOR_ID: o maior id já registrado)
+ *
+ * Segmentos que só contêm partidas já encerradas são apagados pela thread de gravação
+ * depois que um novo segmento é aberto. Cada segmento novo começa com um registro
+ * MAIOR_ID, para que o maior id já usado sobreviva aos segmentos apagados e um id nunca
+ * seja repetido depois de reiniciar (os tokens de sessão levam o id da partida).
+ */
+
+package jogo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+final class DiarioPartidas {
+    static final byte INICIO = 1;
+    static final byte LANCE = 2;
+    static final byte FIM = 3;
+    static final byte MAIOR_ID = 4;
+
+    // Opções gravadas no registro INICIO
+    static final int OPCAO_CONTRA_MAQUINA = 1;
+
+    static final int TAMANHO_REGISTRO = 16;
+    private static final int TAMANHO_SEGMENTO_PADRAO = 16 * 1024 * 1024;
+
+    private final Path diretorio;
+    private final int tamanhoSegmento;
+    private final long intervaloGravacaoMs;
+
+    // Estado do segmento atual (protegido por "this")
+    private int numeroSegmento;
+    private MappedByteBuffer segmento;
+    private int posicao;
+    private int gravadoAte;
+    private final List<MappedByteBuffer> aGravar = new ArrayList<>();
+    // Primeiro segmento com registros de cada partida ativa, e quantas partidas ativas
+    // começam em cada segmento: o menor deles decide o que pode ser apagado
+    private final Map<Long, Integer> primeiroSegmento = new HashMap<>();
+    private final TreeMap<Integer, Integer> ativasPorSegmento = new TreeMap<>();
+    // Maior id registrado desde sempre, inclusive de partidas em segmentos já apagados
+    private long maiorId;
+    // Um segmento novo foi aberto e os antigos ainda não foram conferidos pela thread de gravação
+    private boolean apagarPendente;
+    private boolean fechado;
+
+    private Thread gravador;
+
+    /**
+     * Jogadas de uma partida que estava ativa quando o servidor parou, na ordem em que
+     * foram aceitas.
+     */
+    static final class PartidaRecuperada {
+        final long id;
+        final int opcoes;
+        // Segmento onde está o registro INICIO
+        final int segmento;
+        private int[] lances = new int[16];
+        private int quantidade;
+
+        PartidaRecuperada(long id, int opcoes, int segmento) {
+            this.id = id;
+            this.opcoes = opcoes;
+            this.segmento = segmento;
+        }
+
+        void adicionar(int origem, int destino) {
+            if (quantidade == lances.length) {
+                lances = Arrays.copyOf(lances, quantidade * 2);
+            }
+            lances[quantidade++] = origem << 8 | destino;
+        }
+
+        int getQuantidade() {
+            return quantidade;
+        }
+
+        int origem(int i) {
+            return lances[i] >>> 8;
+        }
+
+        int destino(int i) {
+            return lances[i] & 0xFF;
+        }
+    }
+
+    DiarioPartidas(Path diretorio, long intervaloGravacaoMs) {
+        this(diretorio, intervaloGravacaoMs, TAMANHO_SEGMENTO_PADRAO);
+    }
+
+    DiarioPartidas(Path diretorio, long intervaloGravacaoMs, int tamanhoSegmento) {
+        this.diretorio = diretorio;
+        this.intervaloGravacaoMs = intervaloGravacaoMs;
+        this.tamanhoSegmento = tamanhoSegmento - tamanhoSegmento % TAMANHO_REGISTRO;
+    }
+
+    /**
+     * Lê todos os segmentos, devolve as partidas que não chegaram ao fim e deixa o diário
+     * pronto para novos registros logo após o último registro válido.
+     * Deve ser chamado uma vez, antes de qualquer registro.
+     */
+    synchronized List<PartidaRecuperada> abrir() throws IOException {
+        Files.createDirectories(diretorio);
+        List<Integer> numeros = listarSegmentos();
+        Map<Long, PartidaRecuperada> ativas = new LinkedHashMap<>(1 << 16);
+
+        int ultimo = numeros.isEmpty() ? 1 : numeros.get(numeros.size() - 1);
+        for (int numero : numeros) {
+            MappedByteBuffer dados = mapear(numero);
+            int fim = lerSegmento(dados, numero, ativas);
+            if (numero == ultimo) {
+                segmento = dados;
+                posicao = fim;
+                // Apaga um eventual registro incompleto para não confundir a próxima leitura
+                for (int i = fim; i < Math.min(fim + TAMANHO_REGISTRO, tamanhoSegmento); i++) {
+                    dados.put(i, (byte) 0);
+                }
+            }
+        }
+        if (segmento == null) {
+            segmento = mapear(ultimo);
+            posicao = 0;
+        }
+        numeroSegmento = ultimo;
+        gravadoAte = posicao;
+        for (PartidaRecuperada partida : ativas.values()) {
+            marcarInicio(partida.id, partida.segmento);
+        }
+        apagarSegmentosAntigos(limiteApagar());
+
+        gravador = Thread.ofPlatform().name("diario-gravacao").daemon(true).start(this::gravarPeriodicamente);
+        return new ArrayList<>(ativas.values());
+    }
+
+    // Lê os registros de um segmento; devolve a posição logo após o último registro válido
+    private int lerSegmento(MappedByteBuffer dados, int numero, Map<Long, PartidaRecuperada> ativas) {
+        int p = 0;
+        while (p + TAMANHO_REGISTRO <= dados.capacity()) {
+            byte tipo = dados.get(p);
+            if (tipo == 0 || dados.getInt(p + 4) != checksum(dados, p)) {
+                break;
+            }
+            long id = dados.getLong(p + 8);
+            if (tipo == INICIO || tipo == MAIOR_ID) {
+                maiorId = Math.max(maiorId, id);
+            }
+            if (tipo == INICIO) {
+                ativas.put(id, new PartidaRecuperada(id, dados.get(p + 1) & 0xFF, numero));
+            } else if (tipo == LANCE) {
+                PartidaRecuperada partida = ativas.get(id);
+                if (partida != null) {
+                    partida.adicionar(dados.get(p + 1) & 0xFF, dados.get(p + 2) & 0xFF);
+                }
+            } else if (tipo == FIM) {
+                ativas.remove(id);
+            }
+            p += TAMANHO_REGISTRO;
+        }
+        return p;
+    }
+
+    /**
+     * Maior id de partida já registrado neste diário, inclusive de partidas encerradas há
+     * muito tempo; 0 se nenhum. Depois de abrir, os ids novos devem ficar acima dele.
+     */
+    synchronized long getMaiorId() {
+        return maiorId;
+    }
+
+    void registrarInicio(long partida, int opcoes) {
+        acrescentar(INICIO, opcoes, 0, partida);
+    }
+
+    void registrarLance(long partida, int origem, int destino) {
+        acrescentar(LANCE, origem, destino, partida);
+    }
+
+    void registrarFim(long partida) {
+        acrescentar(FIM, 0, 0, partida);
+    }
+
+    private synchronized void acrescentar(byte tipo, int a, int b, long partida) {
+        if (fechado) {
+            return;
+        }
+        if (posicao + TAMANHO_REGISTRO > tamanhoSegmento) {
+            trocarSegmento();
+        }
+        if (tipo == INICIO) {
+            marcarInicio(partida, numeroSegmento);
+            maiorId = Math.max(maiorId, partida);
+        } else if (tipo == FIM) {
+            Integer numero = primeiroSegmento.remove(partida);
+            if (numero != null && ativasPorSegmento.merge(numero, -1, Integer::sum) == 0) {
+                ativasPorSegmento.remove(numero);
+            }
+        }
+        escrever(tipo, a, b, partida);
+    }
+
+    private void marcarInicio(long partida, int numero) {
+        // Um INICIO repetido não muda o segmento onde a partida começou
+        if (primeiroSegmento.putIfAbsent(partida, numero) == null) {
+            ativasPorSegmento.merge(numero, 1, Integer::sum);
+        }
+    }
+
+    // Deve ser chamado com o lock de "this" e com espaço para o registro no segmento atual
+    private void escrever(byte tipo, int a, int b, long partida) {
+        segmento.put(posicao, tipo);
+        segmento.put(posicao + 1, (byte) a);
+        segmento.put(posicao + 2, (byte) b);
+        segmento.put(posicao + 3, (byte) 0);
+        segmento.putLong(posicao + 8, partida);
+        segmento.putInt(posicao + 4, checksum(segmento, posicao));
+        posicao += TAMANHO_REGISTRO;
+    }
+
+    // Mistura os 12 bytes úteis do registro (os 4 da soma ficam de fora) num int
+    private static int checksum(MappedByteBuffer dados, int p) {
+        long h = (dados.getLong(p) & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L ^ dados.getLong(p + 8);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (h ^ (h >>> 31));
+    }
+
+    // Passa a escrever num segmento novo; o anterior ainda será forçado pela thread de gravação
+    private void trocarSegmento() {
+        aGravar.add(segmento);
+        numeroSegmento++;
+        try {
+            segmento = mapear(numeroSegmento);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível criar o segmento " + numeroSegmento, e);
+        }
+        posicao = 0;
+        gravadoAte = 0;
+        escrever(MAIOR_ID, 0, 0, maiorId);
+        apagarPendente = true;
+    }
+
+    // Segmento mais antigo que ainda tem registros de partidas ativas; deve ser chamado com o lock
+    private int limiteApagar() {
+        return ativasPorSegmento.isEmpty() ? numeroSegmento : Math.min(numeroSegmento, ativasPorSegmento.firstKey());
+    }
+
+    // Apaga os segmentos anteriores ao limite; fora do lock, pela thread de gravação
+    private void apagarSegmentosAntigos(int limite) {
+        try {
+            for (int numero : listarSegmentos()) {
+                if (numero < limite) {
+                    Files.deleteIfExists(arquivo(numero));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Erro ao apagar segmentos antigos do diário: " + e.getMessage());
+        }
+    }
+
+    private void gravarPeriodicamente() {
+        while (true) {
+            try {
+                Thread.sleep(intervaloGravacaoMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!gravar()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Força para o disco tudo o que foi escrito até agora. O fsync é feito fora do lock,
+     * para que as partidas continuem registrando jogadas enquanto ele acontece.
+     *
+     * @return false se o diário foi fechado
+     */
+    boolean gravar() {
+        List<MappedByteBuffer> anteriores;
+        MappedByteBuffer atual;
+        int de;
+        int ate;
+        int limite = 0;
+        synchronized (this) {
+            if (fechado) {
+                return false;
+            }
+            if (apagarPendente) {
+                apagarPendente = false;
+                limite = limiteApagar();
+            }
+            anteriores = aGravar.isEmpty() ? Collections.emptyList() : new ArrayList<>(aGravar);
+            aGravar.clear();
+            atual = segmento;
+            de = gravadoAte;
+            ate = posicao;
+            gravadoAte = posicao;
+        }
+        for (MappedByteBuffer anterior : anteriores) {
+            anterior.force();
+        }
+        if (ate > de) {
+            atual.force(de, ate - de);
+        }
+        if (limite > 0) {
+            apagarSegmentosAntigos(limite);
+        }
+        return true;
+    }
+
+    // Grava o que estiver pendente e para a thread de gravação
+    void fechar() {
+        gravar();
+        synchronized (this) {
+            fechado = true;
+        }
+        if (gravador != null) {
+            gravador.interrupt();
+        }
+    }
+
+    private List<Integer> listarSegmentos() throws IOException {
+        List<Integer> numeros = new ArrayList<>();
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, "diario-*.log")) {
+            for (Path arquivo : arquivos) {
+                String nome = arquivo.getFileName().toString();
+                try {
+                    numeros.add(Integer.parseInt(nome.substring(7, nome.length() - 4)));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignorando arquivo desconhecido no diário: " + nome);
+                }
+            }
+        }
+        Collections.sort(numeros);
+        return numeros;
+    }
+
+    private Path arquivo(int numero) {
+        return diretorio.resolve(String.format("diario-%06d.log", numero));
+    }
+
+    private MappedByteBuffer mapear(int numero) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo(numero), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer dados = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoSegmento);
+            dados.order(ByteOrder.LITTLE_ENDIAN);
+            return dados;
+        }
+    }
+}
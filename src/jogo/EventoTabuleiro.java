@@ -0,0 +1,92 @@
+// =================== EventoTabuleiro.java ===================
+/**
+ * Evento de uma jogada, entregue aos TabuleiroObserver pelo BarramentoEventos.
+ *
+ * Os eventos são pré-alocados no anel do barramento e reaproveitados: o objeto recebido
+ * por um observador só é válido durante a chamada. Quem precisar guardar os dados deve
+ * copiar os campos. O Tabuleiro de origem serve para identificar a partida; como o jogo
+ * continua enquanto o evento espera na fila, o estado atual do tabuleiro pode já ser outro.
+ */
+
+package jogo;
+
+public final class EventoTabuleiro {
+    public enum Tipo {
+        // Peça movida de origem para destino e turno encerrado
+        MOVIMENTO,
+        // Peça em "capturada" removida pelo lance de origem para destino
+        CAPTURA,
+        // Peão em destino virou dama
+        COROACAO,
+        // Captura múltipla: a peça em destino deve continuar capturando
+        CONTINUACAO,
+        // Vez passou para a cor indicada por isVezBrancas
+        TURNO
+    }
+
+    Tipo tipo;
+    Tabuleiro tabuleiro;
+    int origem;
+    int destino;
+    int capturada;
+    boolean vezBrancas;
+
+    EventoTabuleiro() {
+    }
+
+    void preencher(Tipo tipo, Tabuleiro tabuleiro, int origem, int destino, int capturada, boolean vezBrancas) {
+        this.tipo = tipo;
+        this.tabuleiro = tabuleiro;
+        this.origem = origem;
+        this.destino = destino;
+        this.capturada = capturada;
+        this.vezBrancas = vezBrancas;
+    }
+
+    void copiar(EventoTabuleiro outro) {
+        preencher(outro.tipo, outro.tabuleiro, outro.origem, outro.destino, outro.capturada, outro.vezBrancas);
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public Tabuleiro getTabuleiro() {
+        return tabuleiro;
+    }
+
+    // Casas no formato x * 8 + y; -1 quando não se aplicam ao tipo do evento
+    public int getOrigem() {
+        return origem;
+    }
+
+    public int getDestino() {
+        return destino;
+    }
+
+    public int getCapturada() {
+        return capturada;
+    }
+
+    public boolean isVezBrancas() {
+        return vezBrancas;
+    }
+
+    // Texto do evento, como era enviado aos observadores antes dos eventos tipados
+    public String getMensagem() {
+        switch (tipo) {
+            case CAPTURA:
+                return "Peça capturada!";
+            case COROACAO:
+                return "Peça coroada a Dama!";
+            case CONTINUACAO:
+                return Tabuleiro.DESTAQUE + "Continue capturando com a peça em "
+                        + (char) ('A' + destino % Tabuleiro.TAMANHO) + (destino / Tabuleiro.TAMANHO + 1)
+                        + Tabuleiro.RESET;
+            case MOVIMENTO:
+                return "Movimento realizado";
+            default:
+                return "Turno alternado para " + (vezBrancas ? "brancas" : "pretas");
+        }
+    }
+}
@@ -0,0 +1,304 @@
+// =================== GeradorCarga.java ===================
+/**
+ * Cliente sem interface para testes de carga e de longa duração do servidor.
+ *
+ * Abre N conexões simultâneas (em pares, que o servidor emparelha em partidas), e cada
+ * uma joga partidas aleatórias: escolhe um lance legal com o GeradorMovimentos sobre a
+ * sua cópia local do tabuleiro (TabuleiroLocal) e mede o tempo entre o envio do
+ * MOVIMENTO e a chegada do TURNO seguinte, que o servidor só envia depois da atualização
+ * do tabuleiro. Ao terminar uma partida a conexão é refeita e uma nova partida começa.
+ *
+ * No fim são informados a vazão (jogadas por segundo) e os percentis da latência.
+ * Cada conexão usa uma thread virtual, então milhares de conexões cabem num só processo
+ * (o limite passa a ser o de arquivos abertos: ver "ulimit -n").
+ *
+ * Uso: java jogo.GeradorCarga [--conexoes=N] [--segundos=S] [--host=h] [--porta=p]
+ *                             [--codec=DELTA|COMPACTO|TEXTO] [--semente=n]
+ */
+
+package jogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GeradorCarga {
+    // Partidas aleatórias podem não terminar (damas andando em círculo); acima disso a partida é abandonada
+    private static final int MAX_JOGADAS_POR_PARTIDA = 400;
+    // Depois do fim do tempo, quanto esperar antes de fechar as conexões que ainda aguardam algo
+    private static final long ESPERA_FINAL_MS = 2000;
+
+    private final String host;
+    private final int porta;
+    private final String codec;
+    private final long fimNs;
+
+    private final LongAdder jogadas = new LongAdder();
+    private final LongAdder partidasTerminadas = new LongAdder();
+    private final LongAdder partidasAbandonadas = new LongAdder();
+    private final LongAdder erros = new LongAdder();
+    private final AtomicLong proximaSemente;
+    private final List<long[]> amostras = new ArrayList<>();
+    private final Set<Socket> abertos = ConcurrentHashMap.newKeySet();
+
+    GeradorCarga(String host, int porta, String codec, long segundos, long semente) {
+        this.host = host;
+        this.porta = porta;
+        this.codec = codec;
+        this.fimNs = System.nanoTime() + segundos * 1_000_000_000L;
+        this.proximaSemente = new AtomicLong(semente);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int conexoes = 100;
+        long segundos = 30;
+        String host = "localhost";
+        int porta = 5555;
+        String codec = "DELTA";
+        long semente = 1;
+        for (String arg : args) {
+            String valor = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--conexoes=")) {
+                conexoes = Integer.parseInt(valor);
+            } else if (arg.startsWith("--segundos=")) {
+                segundos = Long.parseLong(valor);
+            } else if (arg.startsWith("--host=")) {
+                host = valor;
+            } else if (arg.startsWith("--porta=")) {
+                porta = Integer.parseInt(valor);
+            } else if (arg.startsWith("--codec=")) {
+                codec = valor.toUpperCase();
+            } else if (arg.startsWith("--semente=")) {
+                semente = Long.parseLong(valor);
+            }
+        }
+        conexoes += conexoes % 2;
+
+        GeradorCarga gerador = new GeradorCarga(host, porta, codec, segundos, semente);
+        System.out.printf("%d conexões, %d s, codec %s, servidor %s:%d%n", conexoes, segundos, codec, host, porta);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < conexoes; i++) {
+            threads.add(Thread.ofVirtual().name("jogador-" + i).start(gerador::jogar));
+        }
+        Thread relatorio = Thread.ofPlatform().daemon(true).start(gerador::relatarPeriodicamente);
+        Thread.sleep(segundos * 1000 + ESPERA_FINAL_MS);
+        // Quem ficou esperando adversário é liberado fechando o socket
+        gerador.fecharAbertos();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        relatorio.interrupt();
+        gerador.relatarFinal(segundos);
+    }
+
+    // Laço de uma conexão jogadora: uma partida atrás da outra até acabar o tempo
+    private void jogar() {
+        SplittableRandom aleatorio = new SplittableRandom(proximaSemente.getAndIncrement());
+        Latencias latencias = new Latencias();
+        while (System.nanoTime() < fimNs) {
+            try {
+                jogarPartida(aleatorio, latencias);
+            } catch (IOException | RuntimeException e) {
+                if (System.nanoTime() < fimNs) {
+                    erros.increment();
+                    dormir(100);
+                }
+            }
+        }
+        synchronized (amostras) {
+            amostras.add(latencias.copiar());
+        }
+    }
+
+    private void jogarPartida(SplittableRandom aleatorio, Latencias latencias) throws IOException {
+        Socket socket = abrir();
+        try (socket;
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+            if (!codec.equals("TEXTO")) {
+                out.println("CODEC " + codec);
+            }
+            TabuleiroLocal local = new TabuleiroLocal();
+            long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+            String minhaCor = null;
+            long enviadoEm = 0;
+            int casaEmCaptura = -1;
+            int jogadasNaPartida = 0;
+            // A vez chegou antes do SNAP pedido pelo TabuleiroLocal; joga quando ele chegar
+            boolean vezPendente = false;
+
+            String linha;
+            while ((linha = in.readLine()) != null) {
+                if (linha.startsWith("INICIO ")) {
+                    minhaCor = linha.substring(7);
+                    continue;
+                } else if (local.processar(linha, out::println)) {
+                    if (!vezPendente || local.isAguardandoSnapshot()) {
+                        continue;
+                    }
+                    vezPendente = false;
+                } else if (linha.startsWith("TURNO ")) {
+                    if (enviadoEm != 0) {
+                        latencias.registrar(System.nanoTime() - enviadoEm);
+                        jogadas.increment();
+                        enviadoEm = 0;
+                    }
+                    if (!linha.substring(6).equals(minhaCor)) {
+                        casaEmCaptura = -1;
+                        continue;
+                    }
+                    if (local.isAguardandoSnapshot()) {
+                        vezPendente = true;
+                        continue;
+                    }
+                } else if (linha.startsWith("VITORIA")) {
+                    // Os dois lados recebem o resultado; só as brancas contam a partida
+                    if ("BRANCAS".equals(minhaCor)) {
+                        partidasTerminadas.increment();
+                    }
+                    return;
+                } else if (linha.startsWith("ERRO Adversário desconectado")) {
+                    return;
+                } else if (linha.startsWith("ERRO") && !linha.startsWith("ERRO Aguardando")) {
+                    erros.increment();
+                    return;
+                } else {
+                    continue;
+                }
+
+                if (System.nanoTime() >= fimNs || ++jogadasNaPartida > MAX_JOGADAS_POR_PARTIDA) {
+                    partidasAbandonadas.increment();
+                    return;
+                }
+                long lance = escolher(local.getTabuleiro(), lances, casaEmCaptura, aleatorio);
+                if (lance == 0) {
+                    erros.increment();
+                    return;
+                }
+                int origem = GeradorMovimentos.origem(lance);
+                int passo = GeradorMovimentos.primeiroPasso(lance);
+                // Se o passo captura, a vez pode continuar com a mesma peça
+                casaEmCaptura = GeradorMovimentos.isCaptura(lance) ? passo : -1;
+                enviadoEm = System.nanoTime();
+                out.println("MOVIMENTO " + GeradorMovimentos.coordenada(origem) + " "
+                        + GeradorMovimentos.coordenada(passo));
+            }
+        } finally {
+            abertos.remove(socket);
+        }
+    }
+
+    // Lance aleatório da posição; no meio de uma captura, só as continuações da peça que captura
+    private static long escolher(Tabuleiro tabuleiro, long[] lances, int casaEmCaptura, SplittableRandom aleatorio) {
+        int n = GeradorMovimentos.gerar(tabuleiro, lances);
+        if (casaEmCaptura >= 0) {
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (GeradorMovimentos.origem(lances[i]) == casaEmCaptura && GeradorMovimentos.isCaptura(lances[i])) {
+                    lances[m++] = lances[i];
+                }
+            }
+            n = m;
+        }
+        return n == 0 ? 0 : lances[aleatorio.nextInt(n)];
+    }
+
+    private Socket abrir() throws IOException {
+        Socket socket = new Socket(host, porta);
+        socket.setTcpNoDelay(true);
+        abertos.add(socket);
+        return socket;
+    }
+
+    private void fecharAbertos() {
+        for (Socket socket : abertos) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Já estava fechado
+            }
+        }
+    }
+
+    private void relatarPeriodicamente() {
+        long anteriores = 0;
+        while (true) {
+            if (!dormir(1000)) {
+                return;
+            }
+            long total = jogadas.sum();
+            System.out.printf("%d jogadas/s, %d partidas terminadas, %d erros%n", total - anteriores,
+                    partidasTerminadas.sum(), erros.sum());
+            anteriores = total;
+        }
+    }
+
+    private void relatarFinal(long segundos) {
+        long[] todas;
+        synchronized (amostras) {
+            int total = 0;
+            for (long[] a : amostras) {
+                total += a.length;
+            }
+            todas = new long[total];
+            int p = 0;
+            for (long[] a : amostras) {
+                System.arraycopy(a, 0, todas, p, a.length);
+                p += a.length;
+            }
+        }
+        Arrays.sort(todas);
+        System.out.println();
+        System.out.printf("Jogadas: %d (%.0f/s)%n", jogadas.sum(), (double) jogadas.sum() / segundos);
+        System.out.printf("Partidas: %d terminadas, %d abandonadas; erros: %d%n", partidasTerminadas.sum(),
+                partidasAbandonadas.sum(), erros.sum());
+        if (todas.length > 0) {
+            System.out.printf("Latência MOVIMENTO→TURNO (µs): p50 %d | p90 %d | p99 %d | p99.9 %d | máx %d%n",
+                    percentil(todas, 0.50), percentil(todas, 0.90), percentil(todas, 0.99), percentil(todas, 0.999),
+                    todas[todas.length - 1] / 1000);
+        }
+    }
+
+    private static long percentil(long[] ordenadas, double p) {
+        int indice = (int) Math.min(ordenadas.length - 1, Math.ceil(p * ordenadas.length) - 1);
+        return ordenadas[Math.max(0, indice)] / 1000;
+    }
+
+    private static boolean dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Amostras de latência de uma conexão, em nanossegundos
+    private static final class Latencias {
+        private long[] valores = new long[1024];
+        private int quantidade;
+
+        void registrar(long ns) {
+            if (quantidade == valores.length) {
+                valores = Arrays.copyOf(valores, quantidade * 2);
+            }
+            valores[quantidade++] = ns;
+        }
+
+        long[] copiar() {
+            return Arrays.copyOf(valores, quantidade);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+// =================== GeradorFinais.java ===================
+/**
+ * Gera as tabelas de finais consultadas pela TabelaFinais: para cada material com até N
+ * peças, o resultado (vitória, derrota ou empate) e a distância até o fim do jogo de todas
+ * as posições, com o melhor jogo dos dois lados.
+ *
+ * Análise retrógrada por iterações: a passada 0 marca as posições em que o jogo já
+ * terminou (verificarVencedor); a passada k marca como vitória em k as posições com algum
+ * lance para uma derrota em k - 1, e como derrota em k aquelas em que todos os lances
+ * levam a vitórias do adversário em no máximo k - 1. O que sobra no fim é empate.
+ *
+ * Capturas e coroações mudam o material, então os materiais são gerados do menor para o
+ * maior número de peças e, com o mesmo número, do menor para o maior número de peões:
+ * quando um lance sai do material em geração, a tabela de destino já está pronta e é
+ * consultada pelo próprio arquivo mapeado. Cada passada divide os índices em blocos entre
+ * as threads de um ForkJoinPool.
+ *
+ * Uso: java jogo.GeradorFinais [--pecas=N] [--pasta=finais] [--threads=N]
+ *      java jogo.GeradorFinais [--pasta=finais] --consultar="B B4C P7D"
+ */
+
+package jogo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class GeradorFinais {
+    private static final int TAMANHO_BLOCO = 1 << 15;
+
+    private final Path pasta;
+    private final ForkJoinPool pool;
+    private final TabelaFinais prontas = new TabelaFinais();
+    // Distâncias que aparecem nas tabelas já geradas
+    private final boolean[] distancias = new boolean[TabelaFinais.DISTANCIA_MAXIMA + 1];
+
+    public GeradorFinais(Path pasta, int threads) {
+        this.pasta = pasta;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Gera as tabelas de todos os materiais com até "pecas" peças (pelo menos uma de cada
+     * cor) e grava-as na pasta.
+     */
+    public void gerar(int pecas) throws IOException {
+        if (pecas < 2 || pecas > TabelaFinais.MAX_PECAS) {
+            throw new IllegalArgumentException("Quantidade de peças deve ser de 2 a " + TabelaFinais.MAX_PECAS);
+        }
+        Files.createDirectories(pasta);
+        for (int total = 2; total <= pecas; total++) {
+            for (int peoes = 0; peoes <= total; peoes++) {
+                for (int material : materiais(total, peoes)) {
+                    gerarMaterial(material);
+                }
+            }
+        }
+    }
+
+    // Materiais com "total" peças, das quais "peoes" são peões, com pelo menos uma peça de cada cor
+    private static List<Integer> materiais(int total, int peoes) {
+        List<Integer> materiais = new ArrayList<>();
+        int damas = total - peoes;
+        for (int peoesBrancos = 0; peoesBrancos <= peoes; peoesBrancos++) {
+            for (int damasBrancas = 0; damasBrancas <= damas; damasBrancas++) {
+                int brancas = peoesBrancos + damasBrancas;
+                if (brancas > 0 && brancas < total) {
+                    materiais.add(TabelaFinais.material(peoesBrancos, damasBrancas, peoes - peoesBrancos,
+                            damas - damasBrancas));
+                }
+            }
+        }
+        return materiais;
+    }
+
+    private void gerarMaterial(int material) throws IOException {
+        long inicio = System.nanoTime();
+        byte[] valores = new byte[TabelaFinais.tamanho(material)];
+        executarPassada(material, valores, 0);
+
+        int passada = 1;
+        int executadas = 1;
+        while (true) {
+            if (passada > TabelaFinais.DISTANCIA_MAXIMA) {
+                throw new IllegalStateException("Distância maior que " + TabelaFinais.DISTANCIA_MAXIMA
+                        + " lances no material " + nome(material));
+            }
+            int resolvidas = executarPassada(material, valores, passada);
+            executadas++;
+            if (resolvidas > 0) {
+                passada++;
+                continue;
+            }
+            /*
+             * Sem novidades na passada k, a passada k + 1 só resolve algo através de um lance para
+             * outra tabela com distância k. Pula direto para a próxima distância que existe nas
+             * tabelas prontas; se não há nenhuma, o resto é empate.
+             */
+            int distancia = proximaDistancia(passada);
+            if (distancia < 0) {
+                break;
+            }
+            passada = distancia + 1;
+        }
+
+        long vitorias = 0;
+        long derrotas = 0;
+        long empates = 0;
+        for (byte valor : valores) {
+            if (TabelaFinais.isVitoria(valor)) {
+                vitorias++;
+            } else if (TabelaFinais.isDerrota(valor)) {
+                derrotas++;
+            } else if (valor == TabelaFinais.EMPATE) {
+                empates++;
+            }
+            if (valor != TabelaFinais.FORA_DA_TABELA && valor != TabelaFinais.EMPATE) {
+                distancias[TabelaFinais.distancia(valor)] = true;
+            }
+        }
+
+        Path arquivo = gravar(material, valores);
+        prontas.carregar(arquivo);
+        System.out.printf("%s: %d posições, %d vitórias, %d derrotas, %d empates, %d passadas, %d ms%n",
+                nome(material), vitorias + derrotas + empates, vitorias, derrotas, empates, executadas,
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private int proximaDistancia(int minima) {
+        for (int d = minima; d < distancias.length; d++) {
+            if (distancias[d]) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    // Passada sobre todos os índices, em blocos paralelos; devolve quantas posições foram resolvidas
+    private int executarPassada(int material, byte[] valores, int passada) {
+        List<Callable<Integer>> blocos = new ArrayList<>();
+        for (int de = 0; de < valores.length; de += TAMANHO_BLOCO) {
+            int inicio = de;
+            int fim = Math.min(valores.length, de + TAMANHO_BLOCO);
+            blocos.add(() -> new Bloco(material, valores).executar(inicio, fim, passada));
+        }
+        int resolvidas = 0;
+        try {
+            for (Future<Integer> parcial : pool.invokeAll(blocos)) {
+                resolvidas += parcial.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Geração interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erro na geração de " + nome(material), e.getCause());
+        }
+        return resolvidas;
+    }
+
+    /*
+     * Trabalho de uma thread sobre um trecho da tabela. Posições ainda não resolvidas valem 0
+     * durante a geração; como só são consultados valores de passadas anteriores (distância
+     * menor que a da passada atual), o que outras threads escrevem na mesma passada não
+     * altera o resultado.
+     */
+    private final class Bloco {
+        private final int material;
+        private final byte[] valores;
+        private final Tabuleiro tabuleiro = new Tabuleiro();
+        private final long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+        private final long[] pecas = new long[3];
+
+        Bloco(int material, byte[] valores) {
+            this.material = material;
+            this.valores = valores;
+        }
+
+        int executar(int inicio, int fim, int passada) {
+            int resolvidas = 0;
+            for (int indice = inicio; indice < fim; indice++) {
+                if (passada == 0) {
+                    valores[indice] = inicial(indice);
+                } else if (valores[indice] == 0 && TabelaFinais.posicao(material, indice, pecas)) {
+                    byte valor = avaliar(pecas[0], pecas[1], pecas[2], (indice & 1) == 0, passada);
+                    if (valor != 0) {
+                        valores[indice] = valor;
+                        resolvidas++;
+                    }
+                }
+            }
+            return resolvidas;
+        }
+
+        // Passada 0: índices que não são posições e posições em que o jogo já terminou
+        private byte inicial(int indice) {
+            if (!TabelaFinais.posicao(material, indice, pecas)) {
+                return (byte) TabelaFinais.FORA_DA_TABELA;
+            }
+            boolean vezBrancas = (indice & 1) == 0;
+            tabuleiro.carregarPosicao(pecas[0], pecas[1], pecas[2], vezBrancas);
+            int vencedor = tabuleiro.verificarVencedor();
+            if (vencedor == 0) {
+                return 0;
+            }
+            return (vencedor == 1) == vezBrancas ? TabelaFinais.vitoria(0) : TabelaFinais.derrota(0);
+        }
+
+        private byte avaliar(long brancas, long pretas, long damas, boolean vezBrancas, int passada) {
+            tabuleiro.carregarPosicao(brancas, pretas, damas, vezBrancas);
+            long hash = tabuleiro.getHash();
+            int n = GeradorMovimentos.gerar(tabuleiro, lances);
+            boolean todasPerdidas = true;
+            for (int i = 0; i < n; i++) {
+                tabuleiro.aplicarLance(lances[i]);
+                int valor = valorSucessor();
+                tabuleiro.restaurar(brancas, pretas, damas, vezBrancas, hash);
+                // O valor é do ponto de vista do adversário, que joga em seguida
+                if (TabelaFinais.isDerrota(valor) && TabelaFinais.distancia(valor) == passada - 1) {
+                    return TabelaFinais.vitoria(passada);
+                }
+                if (!TabelaFinais.isVitoria(valor) || TabelaFinais.distancia(valor) > passada - 1) {
+                    todasPerdidas = false;
+                }
+            }
+            return todasPerdidas ? TabelaFinais.derrota(passada) : 0;
+        }
+
+        private int valorSucessor() {
+            long brancas = tabuleiro.getBrancas();
+            long pretas = tabuleiro.getPretas();
+            long damas = tabuleiro.getDamas();
+            if (brancas != 0 && pretas != 0 && TabelaFinais.material(brancas, pretas, damas) == material) {
+                return valores[TabelaFinais.indice(brancas, pretas, damas, tabuleiro.isVezBrancas())];
+            }
+            return prontas.consultar(brancas, pretas, damas, tabuleiro.isVezBrancas());
+        }
+    }
+
+    // Grava num arquivo temporário e renomeia, para nunca deixar uma tabela pela metade
+    private Path gravar(int material, byte[] valores) throws IOException {
+        Path arquivo = TabelaFinais.arquivo(pasta, material);
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        ByteBuffer cabecalho = ByteBuffer.allocate(TabelaFinais.TAMANHO_CABECALHO);
+        cabecalho.putInt(TabelaFinais.MAGICO).putInt(TabelaFinais.VERSAO).putInt(material).putInt(valores.length);
+        cabecalho.flip();
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer dados = ByteBuffer.wrap(valores);
+            while (cabecalho.hasRemaining() || dados.hasRemaining()) {
+                canal.write(new ByteBuffer[] { cabecalho, dados });
+            }
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        return arquivo;
+    }
+
+    // Nome do material com as letras de Perft.posicao, por exemplo "1b 2B x 0p 1P"
+    private static String nome(int material) {
+        return String.format("%db %dB x %dp %dP", TabelaFinais.peoesBrancos(material),
+                TabelaFinais.damasBrancas(material), TabelaFinais.peoesPretos(material),
+                TabelaFinais.damasPretas(material));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int pecas = 4;
+        Path pasta = Path.of("finais");
+        int threads = Runtime.getRuntime().availableProcessors();
+        String consulta = null;
+        for (String arg : args) {
+            if (arg.startsWith("--pecas=")) {
+                pecas = Integer.parseInt(arg.substring("--pecas=".length()));
+            } else if (arg.startsWith("--pasta=")) {
+                pasta = Path.of(arg.substring("--pasta=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--consultar=")) {
+                consulta = arg.substring("--consultar=".length());
+            }
+        }
+
+        if (consulta != null) {
+            int valor = TabelaFinais.abrir(pasta).consultar(Perft.posicao(consulta));
+            if (valor == TabelaFinais.FORA_DA_TABELA) {
+                System.out.println("Posição fora das tabelas");
+            } else if (valor == TabelaFinais.EMPATE) {
+                System.out.println("Empate");
+            } else {
+                System.out.println((TabelaFinais.isVitoria(valor) ? "Vitória" : "Derrota") + " de quem joga em "
+                        + TabelaFinais.distancia(valor) + " lances");
+            }
+            return;
+        }
+
+        System.out.println("Gerando finais com até " + pecas + " peças em " + pasta + " (" + threads + " threads)");
+        long inicio = System.nanoTime();
+        new GeradorFinais(pasta, threads).gerar(pecas);
+        System.out.println("Concluído em " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+    }
+}
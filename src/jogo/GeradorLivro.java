@@ -0,0 +1,342 @@
+// =================== GeradorLivro.java ===================
+/**
+ * Gera o LivroAberturas a partir de partidas gravadas em texto.
+ *
+ * Formato de entrada: uma jogada por linha, no formato do histórico ("3B 4A", aceitando
+ * também "Brancas: 3B 4A" e a saída do comando HIST); uma linha "VITORIA BRANCAS" ou
+ * "VITORIA PRETAS" dá o resultado da partida e uma linha em branco a encerra. Outras
+ * linhas são ignoradas.
+ *
+ * As partidas são divididas em lotes entre as threads de um ForkJoinPool. Cada lote
+ * confere as jogadas num Tabuleiro (uma partida com jogada ilegal é descartada inteira)
+ * e monta a sua própria trie; as tries dos lotes são somadas no fim e compactadas em
+ * largura, com os filhos de cada nó em sequência, no formato lido pelo LivroAberturas.
+ *
+ * Uso: java jogo.GeradorLivro [--saida=livro.bin] [--profundidade=24] [--minimo=2] [--threads=N]
+ *                             arquivo-ou-pasta...
+ *      java jogo.GeradorLivro [--saida=livro.bin] --consultar="3B 4A, 6C 5D"
+ */
+
+package jogo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class GeradorLivro {
+    // Partidas por lote de trabalho
+    private static final int PARTIDAS_POR_LOTE = 1000;
+
+    private final int profundidade;
+    private final ForkJoinPool pool;
+    private int descartadas;
+
+    public GeradorLivro(int profundidade, int threads) {
+        this.profundidade = profundidade;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Lê as partidas dos arquivos (ou de todos os arquivos das pastas) e grava o livro,
+     * sem os nós com menos de "minimo" partidas.
+     */
+    public void gerar(List<Path> entradas, Path saida, int minimo) throws IOException {
+        List<Callable<Trie>> lotes = new ArrayList<>();
+        for (Path arquivo : arquivos(entradas)) {
+            List<String> linhas = Files.readAllLines(arquivo, StandardCharsets.UTF_8);
+            int inicio = 0;
+            int partidas = 0;
+            for (int i = 0; i < linhas.size(); i++) {
+                if (linhas.get(i).isBlank() && ++partidas == PARTIDAS_POR_LOTE) {
+                    int de = inicio;
+                    int ate = i + 1;
+                    lotes.add(() -> lerLote(linhas, de, ate));
+                    inicio = ate;
+                    partidas = 0;
+                }
+            }
+            int de = inicio;
+            lotes.add(() -> lerLote(linhas, de, linhas.size()));
+        }
+
+        Trie total = new Trie();
+        try {
+            for (Future<Trie> lote : pool.invokeAll(lotes)) {
+                total.somar(lote.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Geração interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erro na leitura das partidas", e.getCause());
+        }
+
+        int[] registros = total.compactar(minimo);
+        gravar(saida, registros);
+        System.out.printf("%d partidas, %d descartadas, %d nós (%d bytes)%n", total.partidas[0], descartadas,
+                registros.length / LivroAberturas.INTS_POR_NO,
+                LivroAberturas.TAMANHO_CABECALHO + registros.length * Integer.BYTES);
+    }
+
+    private static List<Path> arquivos(List<Path> entradas) throws IOException {
+        List<Path> arquivos = new ArrayList<>();
+        for (Path entrada : entradas) {
+            if (Files.isDirectory(entrada)) {
+                try (DirectoryStream<Path> conteudo = Files.newDirectoryStream(entrada)) {
+                    for (Path arquivo : conteudo) {
+                        if (Files.isRegularFile(arquivo)) {
+                            arquivos.add(arquivo);
+                        }
+                    }
+                }
+            } else {
+                arquivos.add(entrada);
+            }
+        }
+        return arquivos;
+    }
+
+    // Confere e acrescenta à trie do lote as partidas das linhas [de, ate)
+    private Trie lerLote(List<String> linhas, int de, int ate) {
+        Trie trie = new Trie();
+        int[] jogadas = new int[profundidade];
+        int quantidade = 0;
+        int resultado = 0;
+        boolean valida = true;
+        int descartadasLote = 0;
+        Tabuleiro tabuleiro = new Tabuleiro();
+        for (int i = de; i <= ate; i++) {
+            String linha = i < ate ? linhas.get(i).trim() : "";
+            if (linha.isEmpty()) {
+                if (quantidade > 0 && valida) {
+                    trie.adicionar(jogadas, Math.min(quantidade, profundidade), resultado);
+                } else if (quantidade > 0) {
+                    descartadasLote++;
+                }
+                quantidade = 0;
+                resultado = 0;
+                valida = true;
+                tabuleiro = new Tabuleiro();
+                continue;
+            }
+            if (linha.equalsIgnoreCase("VITORIA BRANCAS")) {
+                resultado = 1;
+                continue;
+            }
+            if (linha.equalsIgnoreCase("VITORIA PRETAS")) {
+                resultado = 2;
+                continue;
+            }
+            int jogada = CodecComandos.jogada(linha);
+            // Só interessam as jogadas dentro da profundidade do livro
+            if (jogada < 0 || !valida || quantidade >= profundidade) {
+                continue;
+            }
+            int origem = jogada & 63;
+            int destino = jogada >>> 6;
+            int xo = origem / Tabuleiro.TAMANHO;
+            int yo = origem % Tabuleiro.TAMANHO;
+            int xd = destino / Tabuleiro.TAMANHO;
+            int yd = destino % Tabuleiro.TAMANHO;
+            if (!tabuleiro.validarMovimento(xo, yo, xd, yd)) {
+                valida = false;
+                continue;
+            }
+            tabuleiro.moverPeca(xo, yo, xd, yd);
+            jogadas[quantidade++] = jogada;
+        }
+        synchronized (this) {
+            descartadas += descartadasLote;
+        }
+        return trie;
+    }
+
+    private void gravar(Path saida, int[] registros) throws IOException {
+        Path temporario = saida.resolveSibling(saida.getFileName() + ".tmp");
+        ByteBuffer dados = ByteBuffer.allocate(LivroAberturas.TAMANHO_CABECALHO + registros.length * Integer.BYTES);
+        dados.putInt(LivroAberturas.MAGICO).putInt(LivroAberturas.VERSAO)
+                .putInt(registros.length / LivroAberturas.INTS_POR_NO).putInt(profundidade);
+        dados.asIntBuffer().put(registros);
+        dados.rewind();
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (dados.hasRemaining()) {
+                canal.write(dados);
+            }
+        }
+        Files.move(temporario, saida, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /*
+     * Trie em montagem: vetores paralelos que crescem conforme a necessidade, com os filhos
+     * de cada nó numa lista ligada (primeiroFilho / proximoIrmao). O nó 0 é a raiz.
+     */
+    private static final class Trie {
+        int[] primeiroFilho = new int[1024];
+        int[] proximoIrmao = new int[1024];
+        int[] jogada = new int[1024];
+        int[] partidas = new int[1024];
+        int[] vitoriasBrancas = new int[1024];
+        int[] vitoriasPretas = new int[1024];
+        int tamanho = 1;
+
+        // Filho do nó pela jogada, criado se ainda não existe (0 nunca é filho, por isso marca o fim da lista)
+        int filho(int no, int jogadaFilho) {
+            for (int f = primeiroFilho[no]; f != 0; f = proximoIrmao[f]) {
+                if (jogada[f] == jogadaFilho) {
+                    return f;
+                }
+            }
+            if (tamanho == jogada.length) {
+                crescer();
+            }
+            int novo = tamanho++;
+            jogada[novo] = jogadaFilho;
+            proximoIrmao[novo] = primeiroFilho[no];
+            primeiroFilho[no] = novo;
+            return novo;
+        }
+
+        private void crescer() {
+            int capacidade = jogada.length * 2;
+            primeiroFilho = Arrays.copyOf(primeiroFilho, capacidade);
+            proximoIrmao = Arrays.copyOf(proximoIrmao, capacidade);
+            jogada = Arrays.copyOf(jogada, capacidade);
+            partidas = Arrays.copyOf(partidas, capacidade);
+            vitoriasBrancas = Arrays.copyOf(vitoriasBrancas, capacidade);
+            vitoriasPretas = Arrays.copyOf(vitoriasPretas, capacidade);
+        }
+
+        void adicionar(int[] jogadas, int quantidade, int resultado) {
+            int no = 0;
+            contar(no, 1, resultado == 1 ? 1 : 0, resultado == 2 ? 1 : 0);
+            for (int i = 0; i < quantidade; i++) {
+                no = filho(no, jogadas[i]);
+                contar(no, 1, resultado == 1 ? 1 : 0, resultado == 2 ? 1 : 0);
+            }
+        }
+
+        private void contar(int no, int n, int brancas, int pretas) {
+            partidas[no] += n;
+            vitoriasBrancas[no] += brancas;
+            vitoriasPretas[no] += pretas;
+        }
+
+        // Soma outra trie a esta, nó a nó
+        void somar(Trie outra) {
+            somar(0, outra, 0);
+        }
+
+        private void somar(int no, Trie outra, int noOutra) {
+            contar(no, outra.partidas[noOutra], outra.vitoriasBrancas[noOutra], outra.vitoriasPretas[noOutra]);
+            for (int f = outra.primeiroFilho[noOutra]; f != 0; f = outra.proximoIrmao[f]) {
+                somar(filho(no, outra.jogada[f]), outra, f);
+            }
+        }
+
+        /*
+         * Renumera os nós em largura, de modo que os filhos de cada nó fiquem em sequência, e
+         * devolve os registros do LivroAberturas. Nós com menos de "minimo" partidas (e tudo
+         * abaixo deles) ficam de fora.
+         */
+        int[] compactar(int minimo) {
+            int[] ordem = new int[tamanho];
+            int[] registros = new int[tamanho * LivroAberturas.INTS_POR_NO];
+            int quantidade = 1;
+            for (int atual = 0; atual < quantidade; atual++) {
+                int no = ordem[atual];
+                int primeiro = quantidade;
+                for (int f = primeiroFilho[no]; f != 0; f = proximoIrmao[f]) {
+                    if (partidas[f] >= minimo) {
+                        ordem[quantidade++] = f;
+                    }
+                }
+                int base = atual * LivroAberturas.INTS_POR_NO;
+                registros[base] = primeiro;
+                registros[base + 1] = jogada[no] | (quantidade - primeiro) << 12;
+                registros[base + 2] = partidas[no];
+                registros[base + 3] = vitoriasBrancas[no];
+                registros[base + 4] = vitoriasPretas[no];
+            }
+            return Arrays.copyOf(registros, quantidade * LivroAberturas.INTS_POR_NO);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path saida = Path.of("livro.bin");
+        int profundidade = 24;
+        int minimo = 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String consulta = null;
+        List<Path> entradas = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--saida=")) {
+                saida = Path.of(arg.substring("--saida=".length()));
+            } else if (arg.startsWith("--profundidade=")) {
+                profundidade = Integer.parseInt(arg.substring("--profundidade=".length()));
+            } else if (arg.startsWith("--minimo=")) {
+                minimo = Integer.parseInt(arg.substring("--minimo=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--consultar=")) {
+                consulta = arg.substring("--consultar=".length());
+            } else {
+                entradas.add(Path.of(arg));
+            }
+        }
+
+        if (consulta != null) {
+            consultar(LivroAberturas.abrir(saida), consulta);
+            return;
+        }
+        if (entradas.isEmpty()) {
+            System.out.println("Informe os arquivos ou pastas com as partidas");
+            return;
+        }
+        long inicio = System.nanoTime();
+        new GeradorLivro(profundidade, threads).gerar(entradas, saida, minimo);
+        System.out.println("Livro gravado em " + saida + " em " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+    }
+
+    // Mostra as jogadas do livro depois da sequência dada ("3B 4A, 6C 5D"; vazia para a posição inicial)
+    private static void consultar(LivroAberturas livro, String sequencia) {
+        String[] textos = sequencia.split(",");
+        int[] jogadas = new int[textos.length];
+        int quantidade = 0;
+        for (String texto : textos) {
+            if (!texto.isBlank()) {
+                jogadas[quantidade] = CodecComandos.jogada(texto.trim());
+                if (jogadas[quantidade++] < 0) {
+                    System.out.println("Jogada inválida: " + texto.trim());
+                    return;
+                }
+            }
+        }
+        int no = livro.buscar(jogadas, quantidade);
+        if (no < 0) {
+            System.out.println("Posição fora do livro");
+            return;
+        }
+        System.out.println(livro.getPartidas(no) + " partidas passaram por esta posição");
+        int primeiro = livro.getPrimeiroFilho(no);
+        for (int filho = primeiro; filho < primeiro + livro.getQuantidadeFilhos(no); filho++) {
+            int jogada = livro.getJogada(filho);
+            System.out.printf("  %s %s: %d partidas, %d vitórias das brancas, %d das pretas%n",
+                    GeradorMovimentos.coordenada(jogada & 63), GeradorMovimentos.coordenada(jogada >>> 6),
+                    livro.getPartidas(filho), livro.getVitoriasBrancas(filho), livro.getVitoriasPretas(filho));
+        }
+    }
+}
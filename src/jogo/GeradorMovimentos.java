@@ -0,0 +1,206 @@
+// =================== GeradorMovimentos.java ===================
+/**
+ * Gerador de todos os lances legais do jogador da vez.
+ *
+ * Trabalha diretamente sobre os bitboards do Tabuleiro e preenche um vetor de long
+ * fornecido por quem chama, sem alocar nada por lance: pode ser usado na validação,
+ * na busca da IA e na detecção de fim de jogo. Cada lance é uma jogada completa,
+ * inclusive toda a sequência de uma captura múltipla.
+ *
+ * Regras seguidas (as mesmas de Tabuleiro.validarMovimento/moverPeca):
+ * peões andam e capturam só para frente; damas andam e capturam à distância em
+ * qualquer diagonal; a captura é obrigatória; a peça capturada sai do tabuleiro
+ * imediatamente; um peão que chega à última linha no meio de uma captura vira dama
+ * e continua capturando como dama. Durante uma captura múltipla em andamento
+ * (getUltimoMovimentoX() >= 0) só são geradas as continuações daquela peça.
+ *
+ * Formato do lance (long):
+ *   bits 0-5   casa de origem (x * 8 + y)
+ *   bits 6-11  casa de destino final
+ *   bits 12-17 destino do primeiro passo (igual ao destino final num lance simples)
+ *   bit 18     captura
+ *   bit 19     coroação
+ *   bits 32-63 peças capturadas, uma por casa escura (índice = casa / 2)
+ */
+
+package jogo;
+
+public final class GeradorMovimentos {
+    // Capacidade recomendada para o vetor de lances
+    public static final int MAX_LANCES = 256;
+
+    private static final long CAPTURA = 1L << 18;
+    private static final long COROACAO = 1L << 19;
+
+    private GeradorMovimentos() {
+    }
+
+    /**
+     * Preenche o vetor com todos os lances legais do jogador da vez.
+     *
+     * @param tabuleiro Posição atual
+     * @param lances Vetor a preencher (ver MAX_LANCES)
+     * @return Quantidade de lances gerados; 0 se o jogador da vez não tem lances
+     */
+    public static int gerar(Tabuleiro tabuleiro, long[] lances) {
+        boolean corBranca = tabuleiro.isVezBrancas();
+        long proprias = corBranca ? tabuleiro.getBrancas() : tabuleiro.getPretas();
+        long adversarias = corBranca ? tabuleiro.getPretas() : tabuleiro.getBrancas();
+        long damas = tabuleiro.getDamas();
+
+        if (tabuleiro.getUltimoMovimentoX() >= 0) {
+            int casa = tabuleiro.getUltimoMovimentoX() * Tabuleiro.TAMANHO + tabuleiro.getUltimoMovimentoY();
+            return gerarCapturasDaPeca(lances, 0, casa, proprias, adversarias, damas, corBranca);
+        }
+
+        int n = 0;
+        for (long pecas = proprias; pecas != 0; pecas &= pecas - 1) {
+            n = gerarCapturasDaPeca(lances, n, Long.numberOfTrailingZeros(pecas), proprias, adversarias, damas,
+                    corBranca);
+        }
+        if (n > 0) {
+            return n;
+        }
+
+        long vazias = Tabuleiro.CASAS_ESCURAS & ~(proprias | adversarias);
+        for (long pecas = proprias; pecas != 0; pecas &= pecas - 1) {
+            int origem = Long.numberOfTrailingZeros(pecas);
+            boolean dama = (damas & (1L << origem)) != 0;
+            for (int direcao = 0; direcao < 4; direcao++) {
+                if (!dama && !paraFrente(corBranca, direcao)) {
+                    continue;
+                }
+                long alvo = Tabuleiro.deslocar(1L << origem, direcao) & vazias;
+                while (alvo != 0) {
+                    int destino = Long.numberOfTrailingZeros(alvo);
+                    boolean coroa = !dama && chegouUltimaLinha(destino, corBranca);
+                    n = adicionar(lances, n, codificar(origem, destino, destino, false, coroa, 0));
+                    alvo = dama ? Tabuleiro.deslocar(alvo, direcao) & vazias : 0;
+                }
+            }
+        }
+        return n;
+    }
+
+    // Gera todas as sequências de captura que começam com a peça na casa indicada
+    private static int gerarCapturasDaPeca(long[] lances, int n, int origem, long proprias, long adversarias,
+            long damas, boolean corBranca) {
+        boolean dama = (damas & (1L << origem)) != 0;
+        // A peça que se move deixa a casa de origem livre durante a sequência
+        long ocupadas = (proprias | adversarias) & ~(1L << origem);
+        return continuarCaptura(lances, n, origem, -1, origem, ocupadas, adversarias, dama, false, 0, corBranca);
+    }
+
+    // Busca em profundidade das capturas a partir de "atual"; emite o lance quando não há continuação
+    private static int continuarCaptura(long[] lances, int n, int origem, int primeiroPasso, int atual,
+            long ocupadas, long adversarias, boolean dama, boolean coroou, long capturadas, boolean corBranca) {
+        boolean continuou = false;
+        for (int direcao = 0; direcao < 4; direcao++) {
+            if (!dama && !paraFrente(corBranca, direcao)) {
+                continue;
+            }
+
+            // Avança até a primeira peça na diagonal (peões só olham a casa vizinha)
+            long casa = Tabuleiro.deslocar(1L << atual, direcao);
+            if (dama) {
+                while (casa != 0 && (casa & ocupadas) == 0) {
+                    casa = Tabuleiro.deslocar(casa, direcao);
+                }
+            }
+            if ((casa & adversarias) == 0) {
+                continue;
+            }
+
+            long pouso = Tabuleiro.deslocar(casa, direcao);
+            while (pouso != 0 && (pouso & ocupadas) == 0) {
+                continuou = true;
+                int destino = Long.numberOfTrailingZeros(pouso);
+                boolean virouDama = !dama && chegouUltimaLinha(destino, corBranca);
+                n = continuarCaptura(lances, n, origem, primeiroPasso < 0 ? destino : primeiroPasso, destino,
+                        ocupadas & ~casa, adversarias & ~casa, dama || virouDama, coroou || virouDama,
+                        capturadas | casa, corBranca);
+                pouso = dama ? Tabuleiro.deslocar(pouso, direcao) : 0;
+            }
+        }
+
+        if (!continuou && capturadas != 0) {
+            n = adicionar(lances, n, codificar(origem, atual, primeiroPasso, true, coroou, capturadas));
+        }
+        return n;
+    }
+
+    private static boolean paraFrente(boolean corBranca, int direcao) {
+        return corBranca ? Tabuleiro.DIRECAO_X[direcao] > 0 : Tabuleiro.DIRECAO_X[direcao] < 0;
+    }
+
+    private static boolean chegouUltimaLinha(int casa, boolean corBranca) {
+        return corBranca ? casa >= 56 : casa < 8;
+    }
+
+    private static int adicionar(long[] lances, int n, long lance) {
+        // Caminhos diferentes podem levar à mesma captura; o lance é guardado uma vez só
+        if ((lance & CAPTURA) != 0) {
+            for (int i = 0; i < n; i++) {
+                if (lances[i] == lance) {
+                    return n;
+                }
+            }
+        }
+        if (n == lances.length) {
+            throw new IllegalStateException("Vetor de lances cheio");
+        }
+        lances[n] = lance;
+        return n + 1;
+    }
+
+    static long codificar(int origem, int destino, int primeiroPasso, boolean captura, boolean coroa,
+            long capturadas) {
+        long compactas = 0;
+        for (long m = capturadas; m != 0; m &= m - 1) {
+            compactas |= 1L << (Long.numberOfTrailingZeros(m) >>> 1);
+        }
+        return origem | (destino << 6) | ((long) primeiroPasso << 12)
+                | (captura ? CAPTURA : 0) | (coroa ? COROACAO : 0) | (compactas << 32);
+    }
+
+    public static int origem(long lance) {
+        return (int) (lance & 63);
+    }
+
+    public static int destino(long lance) {
+        return (int) ((lance >>> 6) & 63);
+    }
+
+    public static int primeiroPasso(long lance) {
+        return (int) ((lance >>> 12) & 63);
+    }
+
+    public static boolean isCaptura(long lance) {
+        return (lance & CAPTURA) != 0;
+    }
+
+    public static boolean isCoroacao(long lance) {
+        return (lance & COROACAO) != 0;
+    }
+
+    // Peças capturadas como máscara de casas do tabuleiro (bit x * 8 + y)
+    public static long capturadas(long lance) {
+        long resultado = 0;
+        for (long m = lance >>> 32; m != 0; m &= m - 1) {
+            resultado |= 1L << casaEscura(Long.numberOfTrailingZeros(m));
+        }
+        return resultado;
+    }
+
+    // Converte o índice de uma casa escura (0-31) na casa correspondente (x * 8 + y)
+    static int casaEscura(int indice) {
+        int x = indice >>> 2;
+        int y = 2 * (indice & 3) + (1 - (x & 1));
+        return x * Tabuleiro.TAMANHO + y;
+    }
+
+    // Coordenada no formato do protocolo, como "3A"
+    public static String coordenada(int casa) {
+        return "" + (casa / Tabuleiro.TAMANHO + 1) + (char) ('A' + casa % Tabuleiro.TAMANHO);
+    }
+}
@@ -0,0 +1,708 @@
+// =================== GerenciadorPartidas.java ===================
+/**
+ * Registro concorrente das partidas em andamento no servidor.
+ *
+ * Os clientes que chegam são emparelhados dois a dois: o primeiro fica aguardando
+ * e, quando o segundo se conecta, é criada uma nova Partida com tabuleiro próprio.
+ * As partidas ficam num ConcurrentHashMap indexado pelo id, de modo que consultas e
+ * remoções não disputam um lock global e o servidor suporta dezenas de milhares
+ * de partidas simultâneas.
+ *
+ * Com um DiarioPartidas, o início, as jogadas e o fim de cada partida são registrados em
+ * disco; ao reiniciar o servidor, as partidas que estavam em andamento são refeitas a
+ * partir do diário e as suas cadeiras são oferecidas aos próximos jogadores que chegarem.
+ *
+ * Com Sessoes, quem cai não perde a cadeira: ela fica reservada pelo prazo de reconexão
+ * e o jogador volta com RETOMAR e o token recebido no início. As cadeiras das partidas
+ * recuperadas também ficam reservadas por esse prazo antes de irem para quem chegar.
+ *
+ * Num cluster (MembroCluster), o servidor só guarda as partidas que o AnelConsistente
+ * lhe atribui: os ids novos são sorteados entre os do seu trecho do anel e, quando o anel
+ * muda, as partidas que passaram a ser de outro nó são congeladas aqui e refeitas lá
+ * (adotar). Só quando o dono novo confirma a adoção a partida sai deste nó: os jogadores
+ * são desconectados e voltam com RETOMAR pelo roteador, que já os leva ao dono novo; por
+ * isso os nós precisam usar a mesma chave de sessões. Sem confirmação a partida continua
+ * aqui, congelada, e o envio é repetido.
+ */
+
+package jogo;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+class GerenciadorPartidas {
+    private final Map<Long, Partida> partidas = new ConcurrentHashMap<>();
+    private final AtomicLong proximoId = new AtomicLong(1);
+
+    // Jogador conectado que ainda espera um adversário (protegido por "this")
+    private Conexao aguardando;
+    // Partidas recuperadas do diário que ainda têm cadeira vazia (protegido por "this")
+    private final Deque<Partida> incompletas = new ArrayDeque<>();
+
+    private volatile DiarioPartidas diario;
+    // Tokens de sessão e prazo para retomar a cadeira; sem eles, quem cai encerra a partida
+    private volatile Sessoes sessoes;
+    private volatile long prazoReconexaoNanos;
+
+    // STATS liberado para qualquer conexão, não só as de localhost (ver podeVerStats)
+    private volatile boolean statsParaTodos;
+
+    // Cluster de que o servidor é nó e o anel mais recente recebido dele; null fora de um cluster
+    private volatile MembroCluster cluster;
+    private volatile AnelConsistente anel;
+    // Ids sorteados num cluster ficam abaixo disso, para serem legíveis no log e no ESPECTAR
+    private static final long LIMITE_ID_CLUSTER = 1L << 40;
+    // Espera pela resposta do dono novo antes de repetir o envio de uma partida
+    private static final Duration PRAZO_CONFIRMACAO = Duration.ofSeconds(2);
+    // Partidas enviadas a outro nó, com a resposta esperada (true = adotada, false = recusada)
+    private final Map<Long, CompletableFuture<Boolean>> transferencias = new ConcurrentHashMap<>();
+
+    // Partida assistida por cada espectador conectado
+    private final Map<Conexao, Partida> espectadores = new ConcurrentHashMap<>();
+
+    // Motor das partidas contra a máquina, criado no primeiro pedido (protegido por "this")
+    private MotorDamas motor;
+    private TabelaFinais finais;
+    private LivroAberturas livro;
+    private volatile int threadsMaquina = Runtime.getRuntime().availableProcessors();
+    private volatile long tempoMaximoMaquinaMs = 1000;
+
+    /**
+     * Coloca o cliente na fila de emparelhamento. Se já houver alguém aguardando,
+     * cria a partida entre os dois e a inicia.
+     *
+     * @param jogador Cliente recém-conectado
+     * @return A partida criada, ou null se o jogador ficou aguardando
+     */
+    public Partida entrar(Conexao jogador) {
+        Metricas.SERVIDOR.conexaoAberta();
+        return emparelhar(jogador);
+    }
+
+    private Partida emparelhar(Conexao jogador) {
+        Partida partida;
+        synchronized (this) {
+            // Partidas interrompidas por um reinício do servidor têm prioridade
+            while (!incompletas.isEmpty()) {
+                Partida recuperada = incompletas.peek();
+                if (recuperada.ocuparCadeira(jogador)) {
+                    if (recuperada.isCompleta()) {
+                        incompletas.poll();
+                    }
+                    return recuperada;
+                }
+                incompletas.poll();
+            }
+            if (aguardando == null) {
+                aguardando = jogador;
+                return null;
+            }
+            partida = new Partida(novoId(), aguardando, jogador, diario, sessoes);
+            registrarInicio(partida, 0);
+            aguardando.setPartida(partida);
+            jogador.setPartida(partida);
+            aguardando = null;
+        }
+        partidas.put(partida.getId(), partida);
+        Metricas.SERVIDOR.partidaIniciada();
+        System.out.println("Partida " + partida.getId() + " iniciada");
+        partida.iniciar();
+        return partida;
+    }
+
+    /**
+     * Tira da fila de espera o jogador que pediu para jogar contra a máquina e inicia a
+     * partida, com o jogador de brancas.
+     *
+     * @param jogador Cliente que enviou MAQUINA
+     * @param tempoMs Tempo de busca por lance pedido; limitado ao máximo do servidor
+     * @return A partida criada, ou null se o jogador não estava aguardando
+     */
+    public Partida jogarContraMaquina(Conexao jogador, long tempoMs) {
+        JogadorMaquina maquina;
+        synchronized (this) {
+            if (aguardando != jogador) {
+                return null;
+            }
+            aguardando = null;
+            maquina = criarMaquina(tempoMs);
+        }
+        Partida partida = new Partida(novoId(), jogador, maquina, diario, sessoes);
+        registrarInicio(partida, DiarioPartidas.OPCAO_CONTRA_MAQUINA);
+        jogador.setPartida(partida);
+        maquina.setPartida(partida);
+        partidas.put(partida.getId(), partida);
+        Metricas.SERVIDOR.partidaIniciada();
+        System.out.println("Partida " + partida.getId() + " iniciada");
+        partida.iniciar();
+        return partida;
+    }
+
+    // Deve ser chamado com o lock de "this"
+    private JogadorMaquina criarMaquina(long tempoMs) {
+        if (motor == null) {
+            motor = new MotorDamas(threadsMaquina, 64);
+            if (finais != null) {
+                motor.usarFinais(finais);
+            }
+        }
+        long tempo = tempoMs > 0 ? Math.min(tempoMs, tempoMaximoMaquinaMs) : tempoMaximoMaquinaMs;
+        return new JogadorMaquina(motor, this, tempo, livro);
+    }
+
+    /**
+     * Passa a registrar as partidas no diário e recria as que estavam em andamento quando
+     * o servidor parou. Deve ser chamado na inicialização, antes de aceitar conexões.
+     */
+    public void usarDiario(DiarioPartidas diario) throws IOException {
+        long inicio = System.nanoTime();
+        List<DiarioPartidas.PartidaRecuperada> recuperadas = diario.abrir();
+        long leitura = System.nanoTime();
+
+        // As partidas são independentes: cada uma é refeita em paralelo com as demais
+        Sessoes sessoes = this.sessoes;
+        List<Partida> reconstruidas = recuperadas.parallelStream().map(dados -> reconstruir(dados, diario, sessoes))
+                .toList();
+
+        long lances = 0;
+        int emAndamento = 0;
+        List<Partida> reservadas = new ArrayList<>();
+        long prazo = System.nanoTime() + prazoReconexaoNanos;
+        synchronized (this) {
+            this.diario = diario;
+            // Ids de partidas já encerradas também não voltam: os tokens antigos citam o id
+            proximoId.accumulateAndGet(diario.getMaiorId() + 1, Math::max);
+            for (int i = 0; i < reconstruidas.size(); i++) {
+                Partida partida = reconstruidas.get(i);
+                lances += partida.getSequencia();
+                if (partida.getPosicao().verificarVencedor() != 0) {
+                    diario.registrarFim(partida.getId());
+                    continue;
+                }
+                if ((recuperadas.get(i).opcoes & DiarioPartidas.OPCAO_CONTRA_MAQUINA) != 0) {
+                    partida.ocuparCadeira(criarMaquina(0), false);
+                }
+                partidas.put(partida.getId(), partida);
+                Metricas.SERVIDOR.partidaIniciada();
+                // Quem tem o token volta primeiro; depois do prazo a cadeira vai para quem chegar
+                if (sessoes != null && prazoReconexaoNanos > 0) {
+                    partida.reservarCadeiras(prazo);
+                    reservadas.add(partida);
+                } else {
+                    incompletas.add(partida);
+                }
+                emAndamento++;
+            }
+        }
+        if (!reservadas.isEmpty()) {
+            Thread.ofVirtual().name("reservas-diario").start(() -> {
+                if (esperarAte(prazo)) {
+                    liberarReservas(reservadas);
+                }
+            });
+        }
+        long fim = System.nanoTime();
+        System.out.printf("Diário: %d partidas em andamento recuperadas (%d jogadas) em %d ms"
+                + " (leitura %d ms, reprodução %d ms)%n", emAndamento, lances, (fim - inicio) / 1_000_000,
+                (leitura - inicio) / 1_000_000, (fim - leitura) / 1_000_000);
+    }
+
+    // Refaz as jogadas registradas até o fim ou até a primeira que não for válida
+    private static Partida reconstruir(DiarioPartidas.PartidaRecuperada dados, DiarioPartidas diario,
+            Sessoes sessoes) {
+        Partida partida = new Partida(dados.id, Partida.VAZIA, Partida.VAZIA, diario, sessoes);
+        for (int i = 0; i < dados.getQuantidade(); i++) {
+            if (!partida.reproduzir(dados.origem(i), dados.destino(i))) {
+                System.out.println("Partida " + dados.id + ": jogada inválida no diário, recuperada até a "
+                        + i + "ª jogada");
+                break;
+            }
+        }
+        return partida;
+    }
+
+    // Cadeiras de partidas recuperadas que ninguém retomou no prazo passam a valer para quem chegar
+    private void liberarReservas(List<Partida> reservadas) {
+        long agora = System.nanoTime();
+        synchronized (this) {
+            for (Partida partida : reservadas) {
+                if (partida.liberarReservas(agora)) {
+                    incompletas.add(partida);
+                }
+            }
+        }
+    }
+
+    private void registrarInicio(Partida partida, int opcoes) {
+        if (diario != null) {
+            diario.registrarInicio(partida.getId(), opcoes);
+        }
+    }
+
+    // Configuração da máquina; deve ser feita antes da primeira partida contra ela
+    public void configurarMaquina(int threads, long tempoMaximoMs) {
+        this.threadsMaquina = threads;
+        this.tempoMaximoMaquinaMs = tempoMaximoMs;
+    }
+
+    // Tabelas de finais usadas pela máquina; também deve ser configurado antes da primeira partida
+    public void usarFinais(TabelaFinais finais) {
+        this.finais = finais;
+    }
+
+    // Livro de aberturas consultado pela máquina antes de buscar; idem
+    public void usarLivro(LivroAberturas livro) {
+        this.livro = livro;
+    }
+
+    /**
+     * Passa a entregar tokens de sessão e a guardar por "prazoMs" a cadeira de quem cai.
+     * Deve ser chamado antes de usarDiario, para valer também para as partidas recuperadas.
+     */
+    public void usarSessoes(Sessoes sessoes, long prazoMs) {
+        this.prazoReconexaoNanos = prazoMs * 1_000_000L;
+        this.sessoes = sessoes;
+    }
+
+    // Passa a ser um nó do cluster; as partidas se ajustam ao anel a cada atualizarAnel
+    public void usarCluster(MembroCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    // Id para uma partida nova; num cluster, sorteado entre os que o anel atribui a este nó
+    private long novoId() {
+        MembroCluster membro = cluster;
+        AnelConsistente atual = anel;
+        if (membro == null) {
+            return proximoId.getAndIncrement();
+        }
+        // Fora do anel (ainda entrando ou já saindo) qualquer id serve: a partida será transferida
+        boolean noDoAnel = atual != null && atual.contem(membro.getEndereco());
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong(1, LIMITE_ID_CLUSTER);
+        } while (partidas.containsKey(id) || (noDoAnel && !membro.getEndereco().equals(atual.dono(id))));
+        return id;
+    }
+
+    // Com "todos", STATS vale para qualquer conexão; senão só para as de localhost fora de um cluster
+    public void liberarStats(boolean todos) {
+        this.statsParaTodos = todos;
+    }
+
+    /**
+     * Verdadeiro se a conexão pode pedir as métricas do servidor. Num cluster todos os
+     * clientes chegam pelo roteador, de localhost, então lá só vale com liberarStats.
+     */
+    public boolean podeVerStats(Conexao conexao) {
+        return statsParaTodos || (cluster == null && conexao.isLocal());
+    }
+
+    // Verdadeiro se o último anel recebido ainda inclui este nó
+    public boolean isNoDoAnel() {
+        MembroCluster membro = cluster;
+        AnelConsistente atual = anel;
+        return membro != null && atual != null && atual.contem(membro.getEndereco());
+    }
+
+    // Verdadeiro enquanto alguma partida espera a confirmação do seu nó novo
+    public boolean isTransferindo() {
+        return !transferencias.isEmpty();
+    }
+
+    /**
+     * Adota o anel novo do cluster e transfere ao dono atual cada partida que deixou de ser
+     * deste nó (um nó entrou no trecho dela, ou este nó está saindo do anel).
+     */
+    public void atualizarAnel(AnelConsistente novo) {
+        MembroCluster membro = cluster;
+        this.anel = novo;
+        if (membro == null || novo.isVazio()) {
+            return;
+        }
+        int transferidas = 0;
+        for (Partida partida : partidas.values()) {
+            if (iniciarTransferencia(partida, novo, membro)) {
+                transferidas++;
+            }
+        }
+        if (transferidas > 0) {
+            System.out.println(transferidas + " partidas sendo transferidas para outros nós");
+        }
+    }
+
+    // Quem já está sendo transferida segue o anel novo no próximo envio
+    private boolean iniciarTransferencia(Partida partida, AnelConsistente atual, MembroCluster membro) {
+        String dono = atual.dono(partida.getId());
+        if (dono == null || dono.equals(membro.getEndereco())
+                || transferencias.putIfAbsent(partida.getId(), new CompletableFuture<>()) != null) {
+            return false;
+        }
+        Thread.ofVirtual().name("transferencia-" + partida.getId()).start(() -> transferir(partida, membro));
+        return true;
+    }
+
+    /*
+     * Congela a partida e a envia ao dono do anel atual como "<id> <opções> <jogadas>", com
+     * cada jogada em 3 dígitos hexadecimais (origem | destino << 6) ou "-" se não houve
+     * nenhuma. Os jogadores só são desconectados depois que o dono novo confirma a adoção,
+     * então o RETOMAR deles já encontra a partida lá. Sem resposta no prazo o envio é
+     * repetido (o dono novo aceita de novo uma partida que já adotou); se ele recusar, ou o
+     * anel devolver a partida a este nó, ela volta a aceitar jogadas aqui.
+     */
+    private void transferir(Partida partida, MembroCluster membro) {
+        long id = partida.getId();
+        boolean devolvida = false;
+        try {
+            boolean contraMaquina = partida.isContraMaquina();
+            HistoricoJogadas historico = partida.congelar();
+            if (historico == null) {
+                return;
+            }
+            String dados = formatarTransferencia(id, contraMaquina, historico);
+            while (true) {
+                AnelConsistente atual = anel;
+                String dono = atual.dono(id);
+                if (dono == null || dono.equals(membro.getEndereco())) {
+                    partida.descongelar();
+                    devolvida = true;
+                    return;
+                }
+                CompletableFuture<Boolean> resposta = new CompletableFuture<>();
+                transferencias.put(id, resposta);
+                Boolean adotada = null;
+                if (membro.transferir(dono, dados)) {
+                    try {
+                        adotada = resposta.get(PRAZO_CONFIRMACAO.toMillis(), TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException | ExecutionException e) {
+                        // Sem resposta: a partida continua congelada aqui e é enviada de novo
+                    }
+                } else if (!esperarAte(System.nanoTime() + PRAZO_CONFIRMACAO.toNanos())) {
+                    partida.descongelar();
+                    return;
+                }
+                if (adotada == null) {
+                    System.out.println("Partida " + id + ": " + dono + " não confirmou a transferência, repetindo");
+                } else if (adotada) {
+                    concluirTransferencia(partida, dono);
+                    return;
+                } else {
+                    System.out.println("Partida " + id + ": " + dono + " recusou a transferência, ela continua aqui");
+                    partida.descongelar();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            partida.descongelar();
+        } finally {
+            transferencias.remove(id);
+            // Um anel que chegou depois de a partida voltar a este nó não a iniciou de novo
+            if (devolvida && partidas.get(id) == partida && !partida.isEncerrada()) {
+                iniciarTransferencia(partida, anel, membro);
+            }
+            // Quem espera em MembroCluster.sair confere se ainda há partidas a transferir
+            synchronized (membro) {
+                membro.notifyAll();
+            }
+        }
+    }
+
+    private static String formatarTransferencia(long id, boolean contraMaquina, HistoricoJogadas historico) {
+        StringBuilder dados = new StringBuilder(32 + historico.getQuantidade() * 3);
+        dados.append(id).append(' ').append(contraMaquina ? DiarioPartidas.OPCAO_CONTRA_MAQUINA : 0).append(' ');
+        if (historico.getQuantidade() == 0) {
+            dados.append('-');
+        }
+        for (int i = 0; i < historico.getQuantidade(); i++) {
+            int jogada = historico.getJogada(i) & 0xFFF;
+            dados.append(Character.forDigit(jogada >>> 8, 16)).append(Character.forDigit(jogada >>> 4 & 15, 16))
+                    .append(Character.forDigit(jogada & 15, 16));
+        }
+        return dados.toString();
+    }
+
+    // O dono novo já tem a partida: ela sai deste nó e os jogadores reconectam pelo roteador
+    private void concluirTransferencia(Partida partida, String destino) {
+        String aviso = "ERRO Partida transferida para outro servidor, reconecte com RETOMAR";
+        if (partida.transferir(aviso) == null) {
+            return;
+        }
+        List<Conexao> assistindo = List.copyOf(partida.getTransmissao().getEspectadores());
+        remover(partida, aviso);
+        // Espectadores também reconectam pelo roteador, que os leva ao dono novo
+        for (Conexao espectador : assistindo) {
+            espectador.desconectar();
+        }
+        System.out.println("Partida " + partida.getId() + " transferida para " + destino);
+    }
+
+    /**
+     * Resposta do nó de destino a uma partida enviada por transferir ("ADOTADA" ou "RECUSADA").
+     */
+    public void responderTransferencia(long id, boolean adotada) {
+        CompletableFuture<Boolean> resposta = transferencias.get(id);
+        if (resposta != null) {
+            resposta.complete(adotada);
+        }
+    }
+
+    /**
+     * Refaz uma partida transferida por outro nó (formato de transferir). Ela entra no diário
+     * e fica com as cadeiras reservadas pelo prazo de reconexão, como uma partida recuperada.
+     * Uma partida que já foi adotada antes (o nó de origem não recebeu a confirmação e
+     * repetiu o envio) é aceita de novo sem mudar nada.
+     *
+     * @return false se os dados não são válidos
+     */
+    public boolean adotar(String dados) {
+        String[] campos = dados.trim().split(" ");
+        if (campos.length != 3 || (!campos[2].equals("-") && campos[2].length() % 3 != 0)) {
+            System.out.println("Transferência inválida: " + dados);
+            return false;
+        }
+        long id;
+        int opcoes;
+        try {
+            id = Long.parseLong(campos[0]);
+            opcoes = Integer.parseInt(campos[1]);
+        } catch (NumberFormatException e) {
+            System.out.println("Transferência inválida: " + dados);
+            return false;
+        }
+        String jogadas = campos[2].equals("-") ? "" : campos[2];
+        DiarioPartidas atual = diario;
+        Sessoes chaves = sessoes;
+        Partida partida = new Partida(id, Partida.VAZIA, Partida.VAZIA, atual, chaves);
+        for (int i = 0; i < jogadas.length(); i += 3) {
+            int jogada = Integer.parseInt(jogadas, i, i + 3, 16);
+            if (!partida.reproduzir(jogada & 63, jogada >>> 6)) {
+                System.out.println("Partida " + id + ": jogada inválida na transferência");
+                return false;
+            }
+        }
+        if (partida.getPosicao().verificarVencedor() != 0) {
+            return false;
+        }
+        if (partidas.putIfAbsent(id, partida) != null) {
+            System.out.println("Partida " + id + " já adotada, confirmando de novo");
+            return true;
+        }
+        if (atual != null) {
+            atual.registrarInicio(id, opcoes);
+            for (int i = 0; i < jogadas.length(); i += 3) {
+                int jogada = Integer.parseInt(jogadas, i, i + 3, 16);
+                atual.registrarLance(id, jogada & 63, jogada >>> 6);
+            }
+        }
+        Metricas.SERVIDOR.partidaIniciada();
+        long prazo = System.nanoTime() + prazoReconexaoNanos;
+        synchronized (this) {
+            if ((opcoes & DiarioPartidas.OPCAO_CONTRA_MAQUINA) != 0) {
+                partida.ocuparCadeira(criarMaquina(0), false);
+            }
+            if (chaves == null || prazoReconexaoNanos == 0) {
+                incompletas.add(partida);
+            } else {
+                partida.reservarCadeiras(prazo);
+            }
+        }
+        if (chaves != null && prazoReconexaoNanos > 0) {
+            Thread.ofVirtual().name("reservas-" + id).start(() -> {
+                if (esperarAte(prazo)) {
+                    liberarReservas(List.of(partida));
+                }
+            });
+        }
+        System.out.println("Partida " + id + " adotada com " + partida.getSequencia() + " jogadas");
+        return true;
+    }
+
+    /**
+     * Retira o cliente do servidor: sai da fila de espera ou encerra a sua partida,
+     * avisando o adversário caso o jogo ainda estivesse em andamento. Com sessões, a
+     * partida só é encerrada se o jogador não voltar dentro do prazo de reconexão.
+     *
+     * @param jogador Cliente que se desconectou
+     */
+    public void sair(Conexao jogador) {
+        Metricas.SERVIDOR.conexaoFechada();
+        synchronized (this) {
+            if (aguardando == jogador) {
+                aguardando = null;
+                return;
+            }
+        }
+        Partida assistida = espectadores.remove(jogador);
+        if (assistida != null) {
+            assistida.getTransmissao().remover(jogador);
+            return;
+        }
+        Partida partida = jogador.getPartida();
+        if (partida == null) {
+            return;
+        }
+        long prazo = prazoReconexaoNanos;
+        if (sessoes != null && prazo > 0) {
+            long limite = System.nanoTime() + prazo;
+            if (partida.liberarCadeira(jogador, limite)) {
+                System.out.println("Partida " + partida.getId() + ": jogador desconectado, aguardando a reconexão");
+                Thread.ofVirtual().name("reconexao-" + partida.getId()).start(() -> {
+                    if (esperarAte(limite) && partida.expirarCadeiras(System.nanoTime())) {
+                        remover(partida, "ERRO Partida encerrada: jogador desconectado");
+                        partida.broadcastMessage("ERRO Adversário desconectado");
+                    }
+                });
+            }
+            return;
+        }
+        if (partida.encerrar()) {
+            remover(partida, "ERRO Partida encerrada: jogador desconectado");
+            partida.getAdversario(jogador).sendMessage("ERRO Adversário desconectado");
+        }
+    }
+
+    // Dorme até o instante (System.nanoTime()); false se a thread foi interrompida
+    private static boolean esperarAte(long instante) {
+        try {
+            Thread.sleep(Duration.ofNanos(Math.max(0, instante - System.nanoTime())));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * "RETOMAR <token> <seq>": devolve ao jogador a cadeira da sua sessão (ver Partida.retomar).
+     * Quem acabou de conectar pode já ter sido emparelhado com outro jogador; se essa partida
+     * nova ainda não teve jogadas, ela é desfeita e o outro jogador volta à fila.
+     *
+     * @return false se o token não vale ou a partida já terminou
+     */
+    public boolean retomar(Conexao jogador, Comando comando) {
+        Sessoes atuais = sessoes;
+        if (atuais == null || !atuais.validar(comando.getNumero(), comando.isBrancas(), comando.getSessao(),
+                comando.getAssinatura())) {
+            return false;
+        }
+        Partida partida = partidas.get(comando.getNumero());
+        if (partida == null) {
+            return false;
+        }
+        // Os dois jogadores podem voltar juntos (a partida mudou de nó, a rede oscilou) e ser
+        // emparelhados um com o outro: as retomadas são feitas uma de cada vez para que a
+        // segunda encontre o emparelhamento já desfeito pela primeira
+        synchronized (this) {
+            // Se a retomada falhar, quem estava na fila ou teve a partida nova desfeita volta à fila
+            boolean voltarAFila = false;
+            Partida atual = jogador.getPartida();
+            if (atual != null && atual != partida) {
+                if (!desfazerEmparelhamento(jogador, atual)) {
+                    return false;
+                }
+                voltarAFila = true;
+            }
+            if (aguardando == jogador) {
+                aguardando = null;
+                voltarAFila = true;
+            }
+            if (partida.retomar(jogador, comando.isBrancas(), comando.getSessao(), comando.getSequencia())) {
+                System.out.println("Partida " + partida.getId() + " retomada pelas "
+                        + (comando.isBrancas() ? "brancas" : "pretas"));
+                return true;
+            }
+            if (voltarAFila) {
+                emparelhar(jogador);
+            }
+            return false;
+        }
+    }
+
+    private boolean desfazerEmparelhamento(Conexao jogador, Partida partida) {
+        if (!partida.encerrarSemJogadas()) {
+            return false;
+        }
+        Conexao adversario = partida.getAdversario(jogador);
+        remover(partida, "ERRO Partida encerrada");
+        jogador.setPartida(null);
+        adversario.setPartida(null);
+        adversario.sendMessage("ERRO Adversário desconectado");
+        if (!(adversario instanceof JogadorMaquina)) {
+            emparelhar(adversario);
+        }
+        return true;
+    }
+
+    /**
+     * Passa o cliente, que ainda não está jogando, a assistir à partida indicada.
+     * Um espectador que já assistia a outra partida deixa de recebê-la.
+     *
+     * @return false se a partida não existe ou já terminou
+     */
+    public boolean espectar(Conexao espectador, long id) {
+        Partida partida = partidas.get(id);
+        if (partida == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (aguardando == espectador) {
+                aguardando = null;
+            }
+        }
+        Partida anterior = espectadores.put(espectador, partida);
+        if (anterior != null) {
+            anterior.getTransmissao().remover(espectador);
+        }
+        if (!partida.adicionarEspectador(espectador)) {
+            espectadores.remove(espectador, partida);
+            return false;
+        }
+        return true;
+    }
+
+    // Remove do registro uma partida que terminou com vitória
+    public void finalizar(Partida partida) {
+        if (partida.encerrar()) {
+            int vencedor = partida.getPosicao().verificarVencedor();
+            remover(partida, vencedor == 0 ? "ERRO Partida encerrada"
+                    : "VITORIA " + (vencedor == 1 ? "BRANCAS" : "PRETAS"));
+        }
+    }
+
+    private void remover(Partida partida, String mensagemEspectadores) {
+        partidas.remove(partida.getId());
+        Metricas.SERVIDOR.partidaEncerrada();
+        if (diario != null) {
+            diario.registrarFim(partida.getId());
+        }
+        partida.encerrarTransmissao(mensagemEspectadores);
+        for (Conexao espectador : partida.getTransmissao().getEspectadores()) {
+            espectadores.remove(espectador, partida);
+        }
+    }
+
+    public Partida getPartida(long id) {
+        return partidas.get(id);
+    }
+
+    public Collection<Partida> getPartidas() {
+        return partidas.values();
+    }
+
+    public int getQuantidadePartidas() {
+        return partidas.size();
+    }
+}
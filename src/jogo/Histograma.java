@@ -0,0 +1,111 @@
+// =================== Histograma.java ===================
+/**
+ * Histograma de durações com faixas logarítmicas, para medir latências sem guardar as
+ * amostras.
+ *
+ * Cada potência de 2 é dividida em 4 faixas, de modo que o valor informado para um
+ * percentil erra no máximo 25% para cima. São 248 faixas para todos os valores positivos
+ * de um long, e registrar uma amostra é só incrementar um LongAdder: várias threads podem
+ * registrar ao mesmo tempo sem disputar um lock nem a mesma linha de cache.
+ */
+
+package jogo;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+final class Histograma {
+    private static final int BITS_SUBFAIXA = 2;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    private static final int FAIXAS = (63 - BITS_SUBFAIXA + 1) * SUBFAIXAS;
+
+    private final LongAdder[] contagens = new LongAdder[FAIXAS];
+    private final LongAdder soma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    Histograma() {
+        for (int i = 0; i < FAIXAS; i++) {
+            contagens[i] = new LongAdder();
+        }
+    }
+
+    // Registra uma duração em nanossegundos
+    void registrar(long ns) {
+        if (ns < 0) {
+            ns = 0;
+        }
+        contagens[faixa(ns)].increment();
+        soma.add(ns);
+        maximo.accumulate(ns);
+    }
+
+    // Faixa do valor: os 4 primeiros valores têm faixa própria, depois 4 faixas por potência de 2
+    static int faixa(long valor) {
+        if (valor < SUBFAIXAS) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int subfaixa = (int) (valor >>> (expoente - BITS_SUBFAIXA)) & (SUBFAIXAS - 1);
+        return (expoente - BITS_SUBFAIXA + 1) << BITS_SUBFAIXA | subfaixa;
+    }
+
+    // Maior valor que cai na faixa
+    static long limiteSuperior(int faixa) {
+        if (faixa < SUBFAIXAS) {
+            return faixa;
+        }
+        int expoente = (faixa >>> BITS_SUBFAIXA) + BITS_SUBFAIXA - 1;
+        long inferior = (long) (SUBFAIXAS | faixa & (SUBFAIXAS - 1)) << (expoente - BITS_SUBFAIXA);
+        return inferior + (1L << (expoente - BITS_SUBFAIXA)) - 1;
+    }
+
+    long getQuantidade() {
+        long total = 0;
+        for (LongAdder contagem : contagens) {
+            total += contagem.sum();
+        }
+        return total;
+    }
+
+    long getMaximo() {
+        return maximo.get();
+    }
+
+    long getMedia() {
+        long quantidade = getQuantidade();
+        return quantidade == 0 ? 0 : soma.sum() / quantidade;
+    }
+
+    /**
+     * Valor abaixo do qual está a fração p das amostras (0 a 1), em nanossegundos.
+     * As faixas são lidas sem parar quem registra, então o resultado é aproximado
+     * enquanto houver registros acontecendo.
+     */
+    long percentil(double p) {
+        long[] copia = new long[FAIXAS];
+        long total = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            copia[i] = contagens[i].sum();
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long posicao = Math.max(1, (long) Math.ceil(p * total));
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= posicao) {
+                return Math.min(limiteSuperior(i), getMaximo());
+            }
+        }
+        return getMaximo();
+    }
+
+    // Resumo em microssegundos: "n=... media=... p50=... p90=... p99=... p999=... max=..."
+    String resumo() {
+        return String.format("n=%d media=%d p50=%d p90=%d p99=%d p999=%d max=%d", getQuantidade(),
+                getMedia() / 1000, percentil(0.50) / 1000, percentil(0.90) / 1000, percentil(0.99) / 1000,
+                percentil(0.999) / 1000, getMaximo() / 1000);
+    }
+}
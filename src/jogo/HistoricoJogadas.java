@@ -0,0 +1,64 @@
+// =================== HistoricoJogadas.java ===================
+/**
+ * Cópia imutável do histórico de jogadas de um Tabuleiro.
+ *
+ * Cada jogada (cada salto, numa captura em cadeia) ocupa um short: origem | destino << 6,
+ * mais os bits CAPTURA, COROACAO e PRETAS (cor de quem jogou). A cópia divide o vetor com
+ * o Tabuleiro, que só acrescenta jogadas depois da última incluída aqui ou passa a usar
+ * outro vetor; por isso obtê-la é O(1) e ela pode ser lida sem o lock da partida.
+ */
+
+package jogo;
+
+public final class HistoricoJogadas {
+    public static final int CAPTURA = 1 << 12;
+    public static final int COROACAO = 1 << 13;
+    public static final int PRETAS = 1 << 14;
+
+    private final short[] jogadas;
+    private final int quantidade;
+
+    HistoricoJogadas(short[] jogadas, int quantidade) {
+        this.jogadas = jogadas;
+        this.quantidade = quantidade;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    // Jogada i (a partir de 0) no formato descrito acima
+    public int getJogada(int i) {
+        if (i < 0 || i >= quantidade) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return jogadas[i];
+    }
+
+    public static int origem(int jogada) {
+        return jogada & 63;
+    }
+
+    public static int destino(int jogada) {
+        return jogada >>> 6 & 63;
+    }
+
+    public static boolean isCaptura(int jogada) {
+        return (jogada & CAPTURA) != 0;
+    }
+
+    public static boolean isCoroacao(int jogada) {
+        return (jogada & COROACAO) != 0;
+    }
+
+    public static boolean isPretas(int jogada) {
+        return (jogada & PRETAS) != 0;
+    }
+
+    // Jogada i no formato de texto do protocolo, como "Brancas: 3B 4A"
+    public String formatar(int i) {
+        int jogada = getJogada(i);
+        return (isPretas(jogada) ? "Pretas: " : "Brancas: ") + GeradorMovimentos.coordenada(origem(jogada)) + " "
+                + GeradorMovimentos.coordenada(destino(jogada));
+    }
+}
@@ -0,0 +1,117 @@
+package jogo;
+
+/**
+ * Adversário controlado pelo MotorDamas, sentado numa partida como se fosse uma conexão.
+ *
+ * Recebe as mesmas mensagens que um cliente. Quando chega a sua vez, monta um tabuleiro de
+ * trabalho a partir do último retrato da partida (sem o lock), busca o lance numa thread virtual
+ * e o envia pelo ProcessadorComandos, como faria um jogador humano. Numa captura em
+ * cadeia cada salto é enviado como um MOVIMENTO separado; quando o próximo passo é
+ * forçado (todos os lances começam pelo mesmo salto) ele é jogado sem busca.
+ *
+ * Enquanto a partida está dentro do LivroAberturas, a jogada vem do livro e a busca
+ * nem começa.
+ */
+final class JogadorMaquina implements Conexao {
+    private final MotorDamas motor;
+    private final GerenciadorPartidas gerenciador;
+    private final long tempoMs;
+    private final LivroAberturas livro;
+
+    private volatile Partida partida;
+    private volatile String cor;
+
+    JogadorMaquina(MotorDamas motor, GerenciadorPartidas gerenciador, long tempoMs, LivroAberturas livro) {
+        this.motor = motor;
+        this.gerenciador = gerenciador;
+        this.tempoMs = tempoMs;
+        this.livro = livro;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        if (message.startsWith("INICIO ")) {
+            cor = message.substring(7);
+        } else if (message.startsWith("TURNO ") && message.substring(6).equals(cor)) {
+            Thread.ofVirtual().name("maquina-" + partida.getId()).start(this::jogar);
+        }
+    }
+
+    private void jogar() {
+        Partida atual = partida;
+        PosicaoTabuleiro posicao = atual.getPosicao();
+        if (atual.isEncerrada()) {
+            return;
+        }
+        Tabuleiro copia = new Tabuleiro(posicao);
+
+        long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+        int n = GeradorMovimentos.gerar(copia, lances);
+        if (n > 0 && passoForcado(lances, n)) {
+            enviar(lances[0]);
+            return;
+        }
+
+        HistoricoJogadas historico = livro != null ? posicao.getHistorico() : null;
+
+        int jogada = historico == null ? -1 : livro.sugerir(historico, copia.isVezBrancas());
+        if (jogada >= 0) {
+            int origem = jogada & 63;
+            int destino = jogada >>> 6;
+            // O livro pode ter sido gerado com outras regras; na dúvida, vale a busca
+            if (copia.validarMovimento(origem / Tabuleiro.TAMANHO, origem % Tabuleiro.TAMANHO,
+                    destino / Tabuleiro.TAMANHO, destino % Tabuleiro.TAMANHO)) {
+                System.out.println("Partida " + atual.getId() + " (máquina): livro "
+                        + GeradorMovimentos.coordenada(origem) + " " + GeradorMovimentos.coordenada(destino));
+                ProcessadorComandos.processar(this, new Comando().movimento(origem, destino), gerenciador);
+                return;
+            }
+        }
+
+        MotorDamas.Resultado resultado = motor.buscar(copia, tempoMs);
+        System.out.println("Partida " + atual.getId() + " (máquina): " + resultado);
+        if (resultado.getLance() == 0 || atual.isEncerrada()) {
+            return;
+        }
+        enviar(resultado.getLance());
+    }
+
+    // Verdadeiro se todos os lances começam pelo mesmo salto: não há o que escolher neste passo
+    private static boolean passoForcado(long[] lances, int n) {
+        int origem = GeradorMovimentos.origem(lances[0]);
+        int passo = GeradorMovimentos.primeiroPasso(lances[0]);
+        for (int i = 1; i < n; i++) {
+            if (GeradorMovimentos.origem(lances[i]) != origem || GeradorMovimentos.primeiroPasso(lances[i]) != passo) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Envia o primeiro passo do lance como MOVIMENTO
+    private void enviar(long lance) {
+        Comando comando = new Comando().movimento(GeradorMovimentos.origem(lance),
+                GeradorMovimentos.primeiroPasso(lance));
+        ProcessadorComandos.processar(this, comando, gerenciador);
+    }
+
+    @Override
+    public Partida getPartida() {
+        return partida;
+    }
+
+    @Override
+    public void setPartida(Partida partida) {
+        this.partida = partida;
+    }
+
+    // A máquina lê o tabuleiro direto da partida; o formato das mensagens é indiferente
+    @Override
+    public int getCapacidades() {
+        return CAP_DELTA;
+    }
+
+    @Override
+    public void setCapacidades(int capacidades) {
+    }
+}
@@ -0,0 +1,167 @@
+// =================== LivroAberturas.java ===================
+/**
+ * Livro de aberturas gerado pelo GeradorLivro a partir de partidas gravadas.
+ *
+ * É uma trie em que cada nó é a posição alcançada por uma sequência de jogadas desde a
+ * posição inicial e cada aresta é uma jogada do histórico (um salto, numa captura em
+ * cadeia). Os nós ficam num único arquivo mapeado em memória, em registros de tamanho
+ * fixo, com os filhos de cada nó em sequência; a consulta segue o histórico da partida
+ * nó a nó, em O(profundidade), sem alocar nada.
+ *
+ * Registro de um nó (5 ints):
+ *   0  índice do primeiro filho (os demais vêm logo em seguida)
+ *   1  jogada que leva ao nó (origem | destino << 6) | quantidade de filhos << 12
+ *   2  partidas que passaram pela posição
+ *   3  partidas vencidas pelas brancas
+ *   4  partidas vencidas pelas pretas
+ * O nó 0 é a posição inicial. Cabeçalho: MAGICO, VERSAO, quantidade de nós, profundidade.
+ */
+
+package jogo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class LivroAberturas {
+    static final int MAGICO = 0x44414D4C; // "DAML"
+    static final int VERSAO = 1;
+    static final int TAMANHO_CABECALHO = 16;
+    static final int INTS_POR_NO = 5;
+    static final int TAMANHO_NO = INTS_POR_NO * Integer.BYTES;
+
+    private final ByteBuffer nos;
+    private final int quantidade;
+    private final int profundidade;
+
+    private LivroAberturas(ByteBuffer nos, int quantidade, int profundidade) {
+        this.nos = nos;
+        this.quantidade = quantidade;
+        this.profundidade = profundidade;
+    }
+
+    /**
+     * Mapeia o livro gravado pelo GeradorLivro.
+     *
+     * @throws IOException se o arquivo não puder ser lido ou não for um livro válido
+     */
+    public static LivroAberturas abrir(Path arquivo) throws IOException {
+        ByteBuffer dados;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            dados = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        if (dados.capacity() < TAMANHO_CABECALHO || dados.getInt(0) != MAGICO || dados.getInt(4) != VERSAO) {
+            throw new IOException("Livro de aberturas inválido: " + arquivo);
+        }
+        int quantidade = dados.getInt(8);
+        if (quantidade < 1 || dados.capacity() != TAMANHO_CABECALHO + (long) quantidade * TAMANHO_NO) {
+            throw new IOException("Livro de aberturas inválido: " + arquivo);
+        }
+        return new LivroAberturas(dados.slice(TAMANHO_CABECALHO, quantidade * TAMANHO_NO), quantidade,
+                dados.getInt(12));
+    }
+
+    public int getQuantidadeNos() {
+        return quantidade;
+    }
+
+    // Jogadas de cada partida consideradas na geração; além disso o livro não tem nada
+    public int getProfundidade() {
+        return profundidade;
+    }
+
+    /**
+     * Nó da posição alcançada pelo histórico da partida.
+     *
+     * @return o nó, ou -1 se alguma jogada sai do livro
+     */
+    public int buscar(HistoricoJogadas historico) {
+        if (historico.getQuantidade() > profundidade) {
+            return -1;
+        }
+        int no = 0;
+        for (int i = 0; i < historico.getQuantidade() && no >= 0; i++) {
+            int jogada = historico.getJogada(i);
+            no = filho(no, HistoricoJogadas.origem(jogada) | HistoricoJogadas.destino(jogada) << 6);
+        }
+        return no;
+    }
+
+    // Idem para as primeiras "quantidade" jogadas (origem | destino << 6) do vetor
+    public int buscar(int[] jogadas, int quantidade) {
+        int no = quantidade > profundidade ? -1 : 0;
+        for (int i = 0; i < quantidade && no >= 0; i++) {
+            no = filho(no, jogadas[i]);
+        }
+        return no;
+    }
+
+    // Filho do nó pela jogada, procurado entre os filhos contíguos; -1 se não existe
+    public int filho(int no, int jogada) {
+        int primeiro = getPrimeiroFilho(no);
+        for (int f = primeiro; f < primeiro + getQuantidadeFilhos(no); f++) {
+            if (getJogada(f) == jogada) {
+                return f;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Jogada mais frequente a partir da posição do histórico, desempatada pelo resultado
+     * para quem joga. Jogadas raras já ficaram de fora na geração (GeradorLivro --minimo).
+     *
+     * @return origem | destino << 6, ou -1 se a posição está fora do livro
+     */
+    public int sugerir(HistoricoJogadas historico, boolean vezBrancas) {
+        int no = buscar(historico);
+        if (no < 0) {
+            return -1;
+        }
+        int primeiro = getPrimeiroFilho(no);
+        int melhor = -1;
+        for (int f = primeiro; f < primeiro + getQuantidadeFilhos(no); f++) {
+            if (melhor < 0 || getPartidas(f) > getPartidas(melhor)
+                    || (getPartidas(f) == getPartidas(melhor) && saldo(f, vezBrancas) > saldo(melhor, vezBrancas))) {
+                melhor = f;
+            }
+        }
+        return melhor < 0 ? -1 : getJogada(melhor);
+    }
+
+    public int getPrimeiroFilho(int no) {
+        return campo(no, 0);
+    }
+
+    public int getQuantidadeFilhos(int no) {
+        return campo(no, 1) >>> 12;
+    }
+
+    public int getJogada(int no) {
+        return campo(no, 1) & 0xFFF;
+    }
+
+    public int getPartidas(int no) {
+        return campo(no, 2);
+    }
+
+    public int getVitoriasBrancas(int no) {
+        return campo(no, 3);
+    }
+
+    public int getVitoriasPretas(int no) {
+        return campo(no, 4);
+    }
+
+    // Vitórias menos derrotas de quem joga, nas partidas que passaram pelo nó
+    private int saldo(int no, boolean vezBrancas) {
+        int saldo = getVitoriasBrancas(no) - getVitoriasPretas(no);
+        return vezBrancas ? saldo : -saldo;
+    }
+
+    private int campo(int no, int campo) {
+        return nos.getInt(no * TAMANHO_NO + campo * Integer.BYTES);
+    }
+}
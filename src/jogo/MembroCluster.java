@@ -0,0 +1,183 @@
+// =================== MembroCluster.java ===================
+/**
+ * Ligação de um DamasServer com o RoteadorDamas, quando o servidor é um nó de um cluster.
+ *
+ * O nó se anuncia com "NO <host:porta>" na porta de administração do roteador e recebe,
+ * a cada entrada ou saída de um nó, o anel completo ("ANEL <nós>", ver AnelConsistente).
+ * As partidas que passam a pertencer a outro nó são enviadas a ele pelo próprio
+ * roteador ("TRANSFERIR <nó> <partida>", entregue ao destino como "ADOTAR <origem>
+ * <partida>"). O destino responde "ADOTADA <origem> <id>" ou "RECUSADA <origem> <id>", que
+ * o roteador devolve à origem como "ADOTADA <id>" ou "RECUSADA <id>"; o
+ * GerenciadorPartidas é quem decide o que transferir, espera essa resposta e refaz as
+ * partidas adotadas.
+ *
+ * Se o roteador cair, o nó continua atendendo quem já está conectado com o último anel
+ * recebido e tenta se anunciar de novo a cada segundo.
+ */
+
+package jogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+final class MembroCluster {
+    private static final Duration INTERVALO_RECONEXAO = Duration.ofSeconds(1);
+
+    private final String hostRoteador;
+    private final int portaRoteador;
+    private final String endereco;
+    private final GerenciadorPartidas gerenciador;
+
+    // Conexão atual com o roteador; as escritas são serializadas por "this"
+    private Socket socket;
+    private Writer saida;
+    // Pediu para sair: não se anuncia de novo e avisa quando o anel não o incluir mais
+    private volatile boolean saindo;
+
+    /**
+     * @param roteador Endereço "host:porta" da porta de administração do roteador
+     * @param endereco Endereço "host:porta" em que este nó recebe os jogadores
+     */
+    MembroCluster(String roteador, String endereco, GerenciadorPartidas gerenciador) {
+        int separador = roteador.lastIndexOf(':');
+        this.hostRoteador = roteador.substring(0, separador);
+        this.portaRoteador = Integer.parseInt(roteador.substring(separador + 1));
+        this.endereco = endereco;
+        this.gerenciador = gerenciador;
+    }
+
+    String getEndereco() {
+        return endereco;
+    }
+
+    // Passa a atender o roteador numa thread virtual
+    void iniciar() {
+        Thread.ofVirtual().name("cluster").start(this::executar);
+    }
+
+    private void executar() {
+        while (!saindo) {
+            try (Socket conexao = new Socket(hostRoteador, portaRoteador)) {
+                BufferedReader entrada = new BufferedReader(
+                        new InputStreamReader(conexao.getInputStream(), StandardCharsets.UTF_8));
+                synchronized (this) {
+                    socket = conexao;
+                    saida = new OutputStreamWriter(conexao.getOutputStream(), StandardCharsets.UTF_8);
+                }
+                enviar("NO " + endereco);
+                System.out.println("Nó " + endereco + " anunciado ao roteador " + hostRoteador + ":" + portaRoteador);
+                String linha;
+                while ((linha = entrada.readLine()) != null) {
+                    tratar(linha);
+                }
+                System.out.println("Conexão com o roteador encerrada");
+            } catch (IOException e) {
+                System.out.println("Roteador indisponível: " + e.getMessage());
+            }
+            synchronized (this) {
+                socket = null;
+                saida = null;
+                notifyAll();
+            }
+            try {
+                Thread.sleep(INTERVALO_RECONEXAO);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void tratar(String linha) {
+        if (linha.startsWith("ANEL ")) {
+            AnelConsistente anel = AnelConsistente.ler(linha.substring("ANEL ".length()));
+            System.out.println("Anel do cluster: " + (anel.isVazio() ? "(vazio)" : anel));
+            gerenciador.atualizarAnel(anel);
+            // Quem espera em sair() confere se as partidas já foram repassadas
+            synchronized (this) {
+                notifyAll();
+            }
+        } else if (linha.startsWith("ADOTAR ")) {
+            adotar(linha.substring("ADOTAR ".length()));
+        } else if (linha.startsWith("ADOTADA ") || linha.startsWith("RECUSADA ")) {
+            int espaco = linha.indexOf(' ');
+            try {
+                long id = Long.parseLong(linha.substring(espaco + 1).trim());
+                gerenciador.responderTransferencia(id, linha.startsWith("ADOTADA "));
+            } catch (NumberFormatException e) {
+                System.out.println("Resposta de transferência inválida: " + linha);
+            }
+        }
+    }
+
+    // "<origem> <partida>": refaz a partida e responde à origem, pelo roteador
+    private void adotar(String dados) {
+        String[] campos = dados.split(" ", 3);
+        if (campos.length < 3) {
+            return;
+        }
+        // O id é o primeiro campo da partida
+        String resposta = gerenciador.adotar(campos[1] + " " + campos[2]) ? "ADOTADA " : "RECUSADA ";
+        enviar(resposta + campos[0] + " " + campos[1]);
+    }
+
+    // Entrega ao nó de destino, pelo roteador, uma partida no formato do GerenciadorPartidas
+    boolean transferir(String destino, String partida) {
+        return enviar("TRANSFERIR " + destino + " " + partida);
+    }
+
+    /**
+     * Pede ao roteador para deixar o anel e espera as partidas deste nó serem transferidas
+     * aos demais (o anel novo chega sem este nó e o GerenciadorPartidas as repassa) e
+     * confirmadas pelos seus donos novos.
+     *
+     * @return false se o roteador não confirmou a saída dentro do prazo
+     */
+    boolean sair(Duration prazo) {
+        saindo = true;
+        if (!enviar("SAIR")) {
+            return false;
+        }
+        long limite = System.nanoTime() + prazo.toNanos();
+        synchronized (this) {
+            while (saida != null && (gerenciador.isNoDoAnel() || gerenciador.isTransferindo())) {
+                long restante = limite - System.nanoTime();
+                if (restante <= 0) {
+                    return false;
+                }
+                try {
+                    wait(Math.max(1, restante / 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return saida != null;
+        }
+    }
+
+    private synchronized boolean enviar(String linha) {
+        if (saida == null) {
+            return false;
+        }
+        try {
+            saida.write(linha);
+            saida.write('\n');
+            saida.flush();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Erro ao enviar ao roteador: " + e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException erroAoFechar) {
+                // A leitura também vai falhar e a conexão será refeita
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+// =================== Metricas.java ===================
+/**
+ * Métricas do servidor, coletadas com custo baixo no caminho de cada comando.
+ *
+ * Contadores (LongAdder) de conexões, partidas, comandos e jogadas, e histogramas
+ * (Histograma) de três durações:
+ *   - tempo de processamento de cada comando no ProcessadorComandos;
+ *   - espera pelo lock do tabuleiro da partida, que mostra a disputa entre os dois jogadores
+ *     (e a máquina ou a transmissão) pela mesma partida;
+ *   - tempo de difusão, isto é, de montar as atualizações e colocá-las na fila de saída
+ *     de cada jogador (e o quadro na transmissão), com o lock da partida. A escrita no
+ *     socket acontece depois, na thread de escrita da conexão ou no laço do ServidorNio,
+ *     e não entra nessa medida.
+ *
+ * Há uma única instância por processo, publicada no JMX pelo servidor e consultada pelo
+ * comando STATS do protocolo.
+ */
+
+package jogo;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+final class Metricas implements MetricasMBean {
+    static final Metricas SERVIDOR = new Metricas();
+
+    private final LongAdder conexoes = new LongAdder();
+    private final LongAdder partidasIniciadas = new LongAdder();
+    private final LongAdder partidasEncerradas = new LongAdder();
+    private final LongAdder comandos = new LongAdder();
+    private final LongAdder movimentosAceitos = new LongAdder();
+    private final LongAdder movimentosInvalidos = new LongAdder();
+
+    private final Histograma tempoComando = new Histograma();
+    private final Histograma esperaLock = new Histograma();
+    private final Histograma tempoDifusao = new Histograma();
+
+    private Metricas() {
+    }
+
+    // Publica as métricas no servidor JMX da plataforma (jconsole, VisualVM, ...)
+    void registrarJmx() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("jogo:type=Metricas"));
+        } catch (JMException e) {
+            System.out.println("Não foi possível registrar as métricas no JMX: " + e.getMessage());
+        }
+    }
+
+    void conexaoAberta() {
+        conexoes.increment();
+    }
+
+    void conexaoFechada() {
+        conexoes.decrement();
+    }
+
+    void partidaIniciada() {
+        partidasIniciadas.increment();
+    }
+
+    void partidaEncerrada() {
+        partidasEncerradas.increment();
+    }
+
+    void comando(long inicioNs) {
+        comandos.increment();
+        tempoComando.registrar(System.nanoTime() - inicioNs);
+    }
+
+    void movimento(boolean aceito) {
+        if (aceito) {
+            movimentosAceitos.increment();
+        } else {
+            movimentosInvalidos.increment();
+        }
+    }
+
+    void esperaLock(long ns) {
+        esperaLock.registrar(ns);
+    }
+
+    void difusao(long inicioNs) {
+        tempoDifusao.registrar(System.nanoTime() - inicioNs);
+    }
+
+    // Linhas enviadas em resposta ao STATS
+    List<String> resumo() {
+        return List.of(
+                String.format("STATS conexoes=%d partidas=%d iniciadas=%d comandos=%d movimentos=%d invalidos=%d"
+                        + " eventos-descartados=%d", getConexoesAtivas(), getPartidasAtivas(), getPartidasIniciadas(),
+                        getComandos(), getMovimentosAceitos(), getMovimentosInvalidos(), getEventosDescartados()),
+                "STATS comando " + tempoComando.resumo(),
+                "STATS espera-lock " + esperaLock.resumo(),
+                "STATS difusao " + tempoDifusao.resumo());
+    }
+
+    @Override
+    public long getConexoesAtivas() {
+        return conexoes.sum();
+    }
+
+    @Override
+    public long getPartidasAtivas() {
+        return partidasIniciadas.sum() - partidasEncerradas.sum();
+    }
+
+    @Override
+    public long getPartidasIniciadas() {
+        return partidasIniciadas.sum();
+    }
+
+    @Override
+    public long getComandos() {
+        return comandos.sum();
+    }
+
+    @Override
+    public long getMovimentosAceitos() {
+        return movimentosAceitos.sum();
+    }
+
+    @Override
+    public long getMovimentosInvalidos() {
+        return movimentosInvalidos.sum();
+    }
+
+    // Eventos de tabuleiro que não couberam no BarramentoEventos
+    @Override
+    public long getEventosDescartados() {
+        return BarramentoEventos.getDescartadosPadrao();
+    }
+
+    @Override
+    public long getTempoComandoP99() {
+        return tempoComando.percentil(0.99) / 1000;
+    }
+
+    @Override
+    public long getEsperaLockP99() {
+        return esperaLock.percentil(0.99) / 1000;
+    }
+
+    @Override
+    public long getTempoDifusaoP99() {
+        return tempoDifusao.percentil(0.99) / 1000;
+    }
+
+    @Override
+    public String getTempoComando() {
+        return tempoComando.resumo();
+    }
+
+    @Override
+    public String getEsperaLock() {
+        return esperaLock.resumo();
+    }
+
+    @Override
+    public String getTempoDifusao() {
+        return tempoDifusao.resumo();
+    }
+}
@@ -0,0 +1,36 @@
+// =================== MetricasMBean.java ===================
+/**
+ * Interface JMX das métricas do servidor (ver Metricas), registrada como "jogo:type=Metricas".
+ * Os tempos são em microssegundos; os atributos de texto trazem o resumo completo de cada
+ * histograma (quantidade, média, p50, p90, p99, p99.9 e máximo).
+ */
+
+package jogo;
+
+public interface MetricasMBean {
+    long getConexoesAtivas();
+
+    long getPartidasAtivas();
+
+    long getPartidasIniciadas();
+
+    long getComandos();
+
+    long getMovimentosAceitos();
+
+    long getMovimentosInvalidos();
+
+    long getEventosDescartados();
+
+    long getTempoComandoP99();
+
+    long getEsperaLockP99();
+
+    long getTempoDifusaoP99();
+
+    String getTempoComando();
+
+    String getEsperaLock();
+
+    String getTempoDifusao();
+}
@@ -0,0 +1,517 @@
+// =================== MotorDamas.java ===================
+/**
+ * Motor de busca para jogar contra o servidor.
+ *
+ * Faz aprofundamento iterativo com alfa-beta (negamax) sobre os lances do
+ * GeradorMovimentos, usando a TabelaTransposicao para ordenar lances e evitar
+ * repetir trabalho. Capturas pendentes no horizonte são sempre resolvidas.
+ *
+ * A busca é paralela no estilo "young brothers wait": em cada nó com profundidade
+ * suficiente o primeiro lance é buscado sozinho e, com a janela já estreitada por ele,
+ * os demais são divididos entre as threads de um ForkJoinPool. Um corte beta encontrado
+ * por qualquer irmão cancela os outros. Um mesmo motor pode atender várias partidas
+ * ao mesmo tempo: o pool e a tabela são compartilhados e cada busca tem seu próprio controle.
+ *
+ * Com uma TabelaFinais (usarFinais), as posições com poucas peças não são buscadas: o
+ * valor exato vem da tabela, e as vitórias mais rápidas valem mais.
+ */
+
+package jogo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+public class MotorDamas {
+    public static final int VITORIA = 30000;
+    private static final int INFINITO = VITORIA + 1;
+    private static final int MAX_PLY = 128;
+    // Valores além deste são vitórias ou derrotas a uma distância conhecida (ply mais a
+    // distância da TabelaFinais); a avaliação estática fica bem abaixo
+    private static final int VITORIA_MINIMA = VITORIA - 1000;
+    private static final int PROFUNDIDADE_MAXIMA = 64;
+    // Abaixo desta profundidade restante não compensa dividir o trabalho entre threads
+    private static final int PROFUNDIDADE_MIN_PARALELA = 4;
+
+    private static final int VALOR_PEAO = 100;
+    private static final int VALOR_DAMA = 320;
+    private static final int AVANCO_PEAO = 4;
+
+    private final ForkJoinPool pool;
+    private final TabelaTransposicao tabela;
+    private volatile TabelaFinais finais;
+
+    /**
+     * @param threads Threads de busca (em geral, o número de núcleos)
+     * @param megabytesTabela Tamanho da tabela de transposição
+     */
+    public MotorDamas(int threads, int megabytesTabela) {
+        this.pool = new ForkJoinPool(threads);
+        this.tabela = new TabelaTransposicao(megabytesTabela);
+    }
+
+    // Passa a consultar as tabelas de finais; pode ser chamado com buscas em andamento
+    public void usarFinais(TabelaFinais finais) {
+        this.finais = finais;
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Procura o melhor lance para o jogador da vez dentro do tempo dado.
+     * A posição recebida não é alterada. A profundidade 1 é sempre concluída,
+     * mesmo que o tempo acabe antes.
+     *
+     * @return O resultado da última iteração completa; o lance é 0 se não houver lances
+     */
+    public Resultado buscar(Tabuleiro posicao, long tempoMs) {
+        Controle controle = new Controle(System.nanoTime() + tempoMs * 1_000_000L);
+        tabela.novaBusca();
+        long inicio = System.nanoTime();
+
+        long melhorLance = 0;
+        int melhorValor = 0;
+        int profundidadeCompleta = 0;
+        for (int profundidade = 1; profundidade <= PROFUNDIDADE_MAXIMA; profundidade++) {
+            Raiz raiz = new Raiz(posicao, profundidade, controle);
+            pool.invoke(raiz);
+            if (controle.parar && profundidade > 1) {
+                break;
+            }
+            melhorLance = raiz.melhorLance;
+            melhorValor = raiz.melhorValor;
+            profundidadeCompleta = profundidade;
+            controle.podeParar = true;
+            // Sem lances ou com resultado já decidido não adianta aprofundar
+            if (melhorLance == 0 || Math.abs(melhorValor) >= VITORIA - MAX_PLY || System.nanoTime() > controle.prazo) {
+                break;
+            }
+        }
+        return new Resultado(melhorLance, melhorValor, profundidadeCompleta, controle.nos.sum(),
+                System.nanoTime() - inicio);
+    }
+
+    // Avaliação estática do ponto de vista do jogador da vez
+    static int avaliar(Tabuleiro t) {
+        long damas = t.getDamas();
+        long peoesBrancos = t.getBrancas() & ~damas;
+        long peoesPretos = t.getPretas() & ~damas;
+        int valor = VALOR_PEAO * (Long.bitCount(peoesBrancos) - Long.bitCount(peoesPretos))
+                + VALOR_DAMA * (Long.bitCount(t.getBrancas() & damas) - Long.bitCount(t.getPretas() & damas));
+        // Peões valem um pouco mais quanto mais perto da coroação
+        for (int linha = 1; linha < Tabuleiro.TAMANHO - 1; linha++) {
+            long mascara = Tabuleiro.LINHA_1 << (linha * Tabuleiro.TAMANHO);
+            valor += AVANCO_PEAO * (linha * Long.bitCount(peoesBrancos & mascara)
+                    - (Tabuleiro.TAMANHO - 1 - linha) * Long.bitCount(peoesPretos & mascara));
+        }
+        return t.isVezBrancas() ? valor : -valor;
+    }
+
+    // Estado compartilhado por todas as threads de uma mesma busca
+    private static final class Controle {
+        final long prazo;
+        final LongAdder nos = new LongAdder();
+        volatile boolean parar;
+        volatile boolean podeParar;
+
+        Controle(long prazo) {
+            this.prazo = prazo;
+        }
+
+        void verificarTempo() {
+            if (podeParar && System.nanoTime() > prazo) {
+                parar = true;
+            }
+        }
+    }
+
+    // Nó onde os irmãos mais novos foram divididos entre threads
+    private static final class PontoDivisao {
+        final PontoDivisao pai;
+        final int beta;
+        volatile boolean cortado;
+        int alfa;
+        int melhorValor = -INFINITO;
+        long melhorLance;
+
+        PontoDivisao(PontoDivisao pai, int alfa, int beta) {
+            this.pai = pai;
+            this.alfa = alfa;
+            this.beta = beta;
+        }
+
+        boolean cancelado() {
+            for (PontoDivisao p = this; p != null; p = p.pai) {
+                if (p.cortado) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int getAlfa() {
+            return alfa;
+        }
+
+        synchronized void registrar(long lance, int valor) {
+            if (valor > melhorValor) {
+                melhorValor = valor;
+                melhorLance = lance;
+                if (valor > alfa) {
+                    alfa = valor;
+                }
+                if (valor >= beta) {
+                    cortado = true;
+                }
+            }
+        }
+    }
+
+    // Contexto de uma thread de busca: posição própria e vetores de lances por ply
+    private final class Busca {
+        final Tabuleiro tabuleiro;
+        final Controle controle;
+        final PontoDivisao ponto;
+        final long[][] lances = new long[MAX_PLY][];
+        long nos;
+
+        Busca(Tabuleiro tabuleiro, Controle controle, PontoDivisao ponto) {
+            this.tabuleiro = tabuleiro;
+            this.controle = controle;
+            this.ponto = ponto;
+        }
+
+        boolean abortada() {
+            return controle.parar || (ponto != null && ponto.cancelado());
+        }
+
+        long[] lancesDoPly(int ply) {
+            long[] vetor = lances[ply];
+            if (vetor == null) {
+                vetor = new long[GeradorMovimentos.MAX_LANCES];
+                lances[ply] = vetor;
+            }
+            return vetor;
+        }
+
+        void contarNo() {
+            if ((++nos & 1023) == 0) {
+                controle.nos.add(1024);
+                controle.verificarTempo();
+            }
+        }
+
+        // Negamax com alfa-beta; o valor é descartado por quem chama se a busca foi abortada
+        int alfaBeta(int profundidade, int alfa, int beta, int ply) {
+            contarNo();
+            if (abortada()) {
+                return 0;
+            }
+            Tabuleiro t = tabuleiro;
+            long[] vetor = lancesDoPly(ply);
+            int n = GeradorMovimentos.gerar(t, vetor);
+            if (n == 0) {
+                return -VITORIA + ply;
+            }
+            TabelaFinais tabelaFinais = finais;
+            if (tabelaFinais != null) {
+                int valor = tabelaFinais.consultar(t);
+                if (valor != TabelaFinais.FORA_DA_TABELA) {
+                    return valorFinal(valor, ply);
+                }
+            }
+            // No horizonte só seguem as capturas, que são obrigatórias
+            if ((profundidade <= 0 && !GeradorMovimentos.isCaptura(vetor[0])) || ply >= MAX_PLY - 1) {
+                return avaliar(t);
+            }
+
+            long hash = t.getHash();
+            long entrada = tabela.sondar(hash);
+            if (entrada != 0 && TabelaTransposicao.profundidade(entrada) >= profundidade) {
+                int valor = valorDaTabela(TabelaTransposicao.valor(entrada), ply);
+                int tipo = TabelaTransposicao.tipo(entrada);
+                if (tipo == TabelaTransposicao.EXATO) {
+                    return valor;
+                } else if (tipo == TabelaTransposicao.INFERIOR) {
+                    alfa = Math.max(alfa, valor);
+                } else {
+                    beta = Math.min(beta, valor);
+                }
+                if (alfa >= beta) {
+                    return valor;
+                }
+            }
+            ordenar(vetor, n, entrada);
+
+            long brancas = t.getBrancas();
+            long pretas = t.getPretas();
+            long damas = t.getDamas();
+            boolean vezBrancas = t.isVezBrancas();
+
+            int alfaOriginal = alfa;
+            int melhorValor = -INFINITO;
+            long melhorLance = 0;
+            for (int i = 0; i < n; i++) {
+                if (i == 1 && profundidade >= PROFUNDIDADE_MIN_PARALELA && n > 2) {
+                    PontoDivisao divisao = new PontoDivisao(ponto, alfa, beta);
+                    divisao.registrar(melhorLance, melhorValor);
+                    dividir(divisao, vetor, 1, n, profundidade - 1, ply + 1);
+                    if (abortada()) {
+                        return 0;
+                    }
+                    melhorValor = divisao.melhorValor;
+                    melhorLance = divisao.melhorLance;
+                    break;
+                }
+
+                t.aplicarLance(vetor[i]);
+                int valor = -alfaBeta(profundidade - 1, -beta, -alfa, ply + 1);
+                t.restaurar(brancas, pretas, damas, vezBrancas, hash);
+                if (abortada()) {
+                    return 0;
+                }
+                if (valor > melhorValor) {
+                    melhorValor = valor;
+                    melhorLance = vetor[i];
+                    if (valor > alfa) {
+                        alfa = valor;
+                    }
+                    if (alfa >= beta) {
+                        break;
+                    }
+                }
+            }
+
+            int tipo = melhorValor <= alfaOriginal ? TabelaTransposicao.SUPERIOR
+                    : melhorValor >= beta ? TabelaTransposicao.INFERIOR : TabelaTransposicao.EXATO;
+            tabela.guardar(hash, Math.max(profundidade, 0), valorParaTabela(melhorValor, ply), tipo, melhorLance);
+            return melhorValor;
+        }
+
+        // Busca os lances [de, ate) em paralelo, cada um numa cópia da posição atual
+        void dividir(PontoDivisao divisao, long[] vetor, int de, int ate, int profundidade, int ply) {
+            List<Irmao> irmaos = new ArrayList<>(ate - de);
+            for (int i = de; i < ate; i++) {
+                irmaos.add(new Irmao(new Busca(new Tabuleiro(tabuleiro), controle, divisao), vetor[i],
+                        profundidade, ply));
+            }
+            ForkJoinTask.invokeAll(irmaos);
+        }
+    }
+
+    // Tarefa que busca um lance de um ponto de divisão
+    @SuppressWarnings("serial")
+    private final class Irmao extends RecursiveAction {
+        private final Busca busca;
+        private final long lance;
+        private final int profundidade;
+        private final int ply;
+
+        Irmao(Busca busca, long lance, int profundidade, int ply) {
+            this.busca = busca;
+            this.lance = lance;
+            this.profundidade = profundidade;
+            this.ply = ply;
+        }
+
+        @Override
+        protected void compute() {
+            PontoDivisao divisao = busca.ponto;
+            // Tarefas pequenas podem não chegar a 1024 nós, então o tempo é conferido também aqui
+            busca.controle.verificarTempo();
+            if (busca.abortada()) {
+                return;
+            }
+            busca.tabuleiro.aplicarLance(lance);
+            int alfa = divisao.getAlfa();
+            int valor = -busca.alfaBeta(profundidade, -divisao.beta, -alfa, ply);
+            busca.controle.nos.add(busca.nos & 1023);
+            if (!busca.abortada()) {
+                divisao.registrar(lance, valor);
+            }
+        }
+    }
+
+    // Tarefa da raiz de uma iteração do aprofundamento iterativo
+    @SuppressWarnings("serial")
+    private final class Raiz extends RecursiveAction {
+        private final Tabuleiro posicao;
+        private final int profundidade;
+        private final Controle controle;
+        long melhorLance;
+        int melhorValor;
+
+        Raiz(Tabuleiro posicao, int profundidade, Controle controle) {
+            this.posicao = posicao;
+            this.profundidade = profundidade;
+            this.controle = controle;
+        }
+
+        @Override
+        protected void compute() {
+            Busca busca = new Busca(new Tabuleiro(posicao), controle, null);
+            long[] vetor = busca.lancesDoPly(0);
+            int n = GeradorMovimentos.gerar(busca.tabuleiro, vetor);
+            if (n == 0) {
+                melhorValor = -VITORIA;
+                return;
+            }
+            ordenar(vetor, n, tabela.sondar(posicao.getHash()));
+
+            // Primeiro lance sozinho; os demais em paralelo com a janela que ele definiu
+            busca.tabuleiro.aplicarLance(vetor[0]);
+            int valor = -busca.alfaBeta(profundidade - 1, -INFINITO, INFINITO, 1);
+            busca.controle.nos.add(busca.nos & 1023);
+            melhorLance = vetor[0];
+            melhorValor = valor;
+            if (n > 1 && !controle.parar) {
+                PontoDivisao divisao = new PontoDivisao(null, valor, INFINITO);
+                divisao.registrar(vetor[0], valor);
+                busca.tabuleiro.copiarPosicao(posicao);
+                busca.dividir(divisao, vetor, 1, n, profundidade - 1, 1);
+                melhorLance = divisao.melhorLance;
+                melhorValor = divisao.melhorValor;
+            }
+            // Iteração interrompida: o valor é parcial e não pode ir para a tabela como EXATO
+            if (controle.parar) {
+                return;
+            }
+            tabela.guardar(posicao.getHash(), profundidade, melhorValor, TabelaTransposicao.EXATO, melhorLance);
+        }
+    }
+
+    /*
+     * A busca conta as vitórias a partir da raiz (VITORIA - ply); a tabela as guarda a
+     * partir da posição, que pode ser encontrada de novo em outro ply ou em outra busca.
+     */
+    private static int valorParaTabela(int valor, int ply) {
+        if (valor >= VITORIA_MINIMA) {
+            return valor + ply;
+        }
+        if (valor <= -VITORIA_MINIMA) {
+            return valor - ply;
+        }
+        return valor;
+    }
+
+    private static int valorDaTabela(int valor, int ply) {
+        if (valor >= VITORIA_MINIMA) {
+            return valor - ply;
+        }
+        if (valor <= -VITORIA_MINIMA) {
+            return valor + ply;
+        }
+        return valor;
+    }
+
+    // Valor da TabelaFinais convertido para a escala da busca, contando os lances até aqui
+    private static int valorFinal(int valor, int ply) {
+        if (TabelaFinais.isVitoria(valor)) {
+            return VITORIA - ply - TabelaFinais.distancia(valor);
+        }
+        if (TabelaFinais.isDerrota(valor)) {
+            return -VITORIA + ply + TabelaFinais.distancia(valor);
+        }
+        return 0;
+    }
+
+    // Põe o melhor lance da tabela primeiro e, em seguida, as capturas que levam mais peças
+    private static void ordenar(long[] lances, int n, long entrada) {
+        int inicio = 0;
+        if (entrada != 0) {
+            for (int i = 0; i < n; i++) {
+                if (TabelaTransposicao.isMelhorLance(entrada, lances[i])) {
+                    trocar(lances, 0, i);
+                    inicio = 1;
+                    break;
+                }
+            }
+        }
+        if (n - inicio > 1 && GeradorMovimentos.isCaptura(lances[inicio])) {
+            for (int i = inicio; i < n - 1; i++) {
+                int melhor = i;
+                for (int j = i + 1; j < n; j++) {
+                    if (Long.bitCount(lances[j] >>> 32) > Long.bitCount(lances[melhor] >>> 32)) {
+                        melhor = j;
+                    }
+                }
+                trocar(lances, i, melhor);
+            }
+        }
+    }
+
+    private static void trocar(long[] lances, int i, int j) {
+        long temp = lances[i];
+        lances[i] = lances[j];
+        lances[j] = temp;
+    }
+
+    /**
+     * Resultado de uma busca: lance escolhido, avaliação, profundidade concluída e
+     * estatísticas de desempenho.
+     */
+    public static final class Resultado {
+        private final long lance;
+        private final int valor;
+        private final int profundidade;
+        private final long nos;
+        private final long tempoNs;
+
+        Resultado(long lance, int valor, int profundidade, long nos, long tempoNs) {
+            this.lance = lance;
+            this.valor = valor;
+            this.profundidade = profundidade;
+            this.nos = nos;
+            this.tempoNs = tempoNs;
+        }
+
+        public long getLance() {
+            return lance;
+        }
+
+        public int getValor() {
+            return valor;
+        }
+
+        public int getProfundidade() {
+            return profundidade;
+        }
+
+        public long getNos() {
+            return nos;
+        }
+
+        public long getTempoNs() {
+            return tempoNs;
+        }
+
+        public long getNosPorSegundo() {
+            return tempoNs == 0 ? 0 : nos * 1_000_000_000L / tempoNs;
+        }
+
+        @Override
+        public String toString() {
+            String jogada = lance == 0 ? "-"
+                    : GeradorMovimentos.coordenada(GeradorMovimentos.origem(lance)) + " "
+                            + GeradorMovimentos.coordenada(GeradorMovimentos.destino(lance));
+            return String.format("lance %s, valor %d, profundidade %d, %d nós em %d ms (%d nós/s)", jogada, valor,
+                    profundidade, nos, tempoNs / 1_000_000, getNosPorSegundo());
+        }
+    }
+
+    /**
+     * Mede o motor a partir da posição inicial: java jogo.MotorDamas [tempoMs] [threads]
+     */
+    public static void main(String[] args) {
+        long tempoMs = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        MotorDamas motor = new MotorDamas(threads, 64);
+        System.out.println("Motor com " + threads + " threads, " + tempoMs + " ms por lance");
+        System.out.println(motor.buscar(new Tabuleiro(), tempoMs));
+    }
+}
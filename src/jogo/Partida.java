@@ -0,0 +1,584 @@
+// =================== Partida.java ===================
+/**
+ * Representa uma partida entre dois jogadores.
+ *
+ * Cada partida possui o seu próprio tabuleiro e o seu próprio grupo de difusão,
+ * formado pelas duas conexões que ocupam as cadeiras de BRANCAS e PRETAS.
+ * Dessa forma, várias partidas podem acontecer ao mesmo tempo no mesmo servidor
+ * sem que as mensagens de uma cheguem aos jogadores de outra.
+ *
+ * Uma partida recuperada do DiarioPartidas começa com as cadeiras vazias; elas são
+ * ocupadas pelos próximos jogadores que se conectarem e o jogo segue do ponto em que parou.
+ *
+ * Cada ocupante de cadeira recebe com o INICIO um token de sessão (SESSAO, ver Sessoes).
+ * Quando a conexão cai, a cadeira fica vazia mas reservada por um prazo, e quem tem o
+ * token volta a ela com RETOMAR, recebendo só as jogadas que perdeu.
+ *
+ * As jogadas são feitas com o lock do tabuleiro, por um jogador de cada vez. Depois de
+ * cada uma a partida publica um PosicaoTabuleiro imutável (getPosicao()), e quem só lê o
+ * estado usa esse retrato em vez de disputar o lock com o jogador da vez.
+ */
+
+package jogo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class Partida {
+    private final long id;
+    private final Tabuleiro tabuleiro = new Tabuleiro();
+    // Retrato da posição depois da última jogada; trocado com o lock, lido sem ele
+    private volatile PosicaoTabuleiro posicao = new PosicaoTabuleiro(tabuleiro, 0);
+    private volatile Conexao brancas;
+    private volatile Conexao pretas;
+    private volatile boolean encerrada;
+    // Sendo enviada a outro nó do cluster: não aceita jogadas até a resposta (ver congelar)
+    private volatile boolean transferindo;
+    // Diário onde as jogadas aceitas são registradas; null se o servidor roda sem diário
+    private final DiarioPartidas diario;
+    private final Transmissao transmissao;
+    // Emite os tokens de sessão; null se o servidor não aceita retomadas
+    private final Sessoes sessoes;
+    // Retomadas que ficam mais longe que isso da jogada atual recebem o estado completo
+    private static final int MAXIMO_JOGADAS_RETOMADA = 64;
+
+    // Cadeira ainda não ocupada de uma partida recuperada: descarta as mensagens
+    static final Conexao VAZIA = new Conexao() {
+        @Override
+        public void sendMessage(String message) {
+        }
+
+        @Override
+        public Partida getPartida() {
+            return null;
+        }
+
+        @Override
+        public void setPartida(Partida partida) {
+        }
+
+        @Override
+        public int getCapacidades() {
+            return 0;
+        }
+
+        @Override
+        public void setCapacidades(int capacidades) {
+        }
+    };
+
+    // Número de movimentos aceitos; acompanha cada DELTA (protegido pelo lock do tabuleiro)
+    private long sequencia;
+    // Mensagens de tabuleiro já codificadas no envio atual, reaproveitadas entre os jogadores
+    private String cacheTexto;
+    private String cacheCompacto;
+    private String cacheSnapshot;
+    // Sessão do ocupante de cada cadeira (0 = nenhuma) e prazo em nanoTime para retomá-la
+    // depois de uma queda (0 = cadeira ocupada); protegidos pelo lock do tabuleiro
+    private long sessaoBrancas;
+    private long sessaoPretas;
+    private long prazoBrancas;
+    private long prazoPretas;
+
+    Partida(long id, Conexao brancas, Conexao pretas) {
+        this(id, brancas, pretas, null, null);
+    }
+
+    Partida(long id, Conexao brancas, Conexao pretas, DiarioPartidas diario, Sessoes sessoes) {
+        this.id = id;
+        this.brancas = brancas;
+        this.pretas = pretas;
+        this.diario = diario;
+        this.sessoes = sessoes;
+        this.transmissao = new Transmissao(id);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Tabuleiro getTabuleiro() {
+        return tabuleiro;
+    }
+
+    /**
+     * Último retrato publicado. Pode ser lido sem o lock do tabuleiro; o lock ainda é
+     * preciso para ordenar a leitura com as mensagens enviadas aos jogadores (SYNC).
+     */
+    PosicaoTabuleiro getPosicao() {
+        return posicao;
+    }
+
+    public boolean isEncerrada() {
+        return encerrada;
+    }
+
+    Transmissao getTransmissao() {
+        return transmissao;
+    }
+
+    /**
+     * Inclui um espectador, que passa a receber o estado do tabuleiro a cada jogada.
+     *
+     * @return false se a partida já terminou
+     */
+    boolean adicionarEspectador(Conexao espectador) {
+        synchronized (tabuleiro) {
+            if (encerrada) {
+                return false;
+            }
+            transmissao.adicionar(espectador, posicao);
+            return true;
+        }
+    }
+
+    // Envia aos espectadores o estado final e a mensagem de encerramento
+    void encerrarTransmissao(String mensagem) {
+        synchronized (tabuleiro) {
+            transmissao.encerrar(posicao, mensagem);
+        }
+    }
+
+    // Falso enquanto alguma cadeira de uma partida recuperada estiver vazia
+    public boolean isCompleta() {
+        return brancas != VAZIA && pretas != VAZIA;
+    }
+
+    /**
+     * Coloca o jogador numa cadeira vazia (brancas primeiro) e envia a ele a cor e o
+     * tabuleiro atual. Quando as duas cadeiras estão ocupadas, o jogo continua com TURNO.
+     *
+     * @return false se não havia cadeira vazia ou a partida já terminou
+     */
+    public boolean ocuparCadeira(Conexao jogador) {
+        synchronized (tabuleiro) {
+            return ocuparCadeira(jogador, brancas == VAZIA && prazoBrancas == 0);
+        }
+    }
+
+    boolean ocuparCadeira(Conexao jogador, boolean corBranca) {
+        synchronized (tabuleiro) {
+            // Cadeira reservada para a retomada de quem caiu não vai para outro jogador
+            if (encerrada || (corBranca ? brancas : pretas) != VAZIA || (corBranca ? prazoBrancas : prazoPretas) != 0) {
+                return false;
+            }
+            if (corBranca) {
+                brancas = jogador;
+            } else {
+                pretas = jogador;
+            }
+            jogador.setPartida(this);
+            jogador.sendMessage(corBranca ? "INICIO BRANCAS" : "INICIO PRETAS");
+            abrirSessao(jogador, corBranca);
+            enviarTabuleiro(jogador);
+            if (isCompleta()) {
+                broadcastMessage("TURNO " + (tabuleiro.isVezBrancas() ? "BRANCAS" : "PRETAS"));
+            }
+            return true;
+        }
+    }
+
+    // Sorteia a sessão do novo ocupante da cadeira e envia o token; com o lock do tabuleiro
+    private void abrirSessao(Conexao jogador, boolean corBranca) {
+        if (sessoes == null) {
+            return;
+        }
+        long sessao = sessoes.novaSessao();
+        if (corBranca) {
+            sessaoBrancas = sessao;
+            prazoBrancas = 0;
+        } else {
+            sessaoPretas = sessao;
+            prazoPretas = 0;
+        }
+        jogador.sendMessage("SESSAO " + sessoes.token(id, corBranca, sessao));
+    }
+
+    /**
+     * Reserva as cadeiras vazias de uma partida recuperada do diário para quem tiver o
+     * token, até o prazo (System.nanoTime()).
+     */
+    void reservarCadeiras(long prazo) {
+        synchronized (tabuleiro) {
+            if (brancas == VAZIA) {
+                prazoBrancas = prazo;
+            }
+            if (pretas == VAZIA) {
+                prazoPretas = prazo;
+            }
+        }
+    }
+
+    /**
+     * Esvazia a cadeira de um jogador que se desconectou, guardando-a até o prazo
+     * (System.nanoTime()) para ele voltar com RETOMAR. O adversário é avisado e o jogo
+     * fica parado, como numa partida recuperada, até a cadeira ser ocupada de novo.
+     *
+     * @return false se a partida já terminou ou o jogador não ocupa mais a cadeira
+     */
+    boolean liberarCadeira(Conexao jogador, long prazo) {
+        synchronized (tabuleiro) {
+            if (encerrada || (jogador != brancas && jogador != pretas)) {
+                return false;
+            }
+            Conexao adversario = getAdversario(jogador);
+            if (jogador == brancas) {
+                brancas = VAZIA;
+                prazoBrancas = prazo;
+            } else {
+                pretas = VAZIA;
+                prazoPretas = prazo;
+            }
+            adversario.sendMessage("ERRO Adversário desconectado, aguardando a reconexão");
+            return true;
+        }
+    }
+
+    /**
+     * Encerra a partida se alguma cadeira continua vazia depois do prazo de retomada.
+     *
+     * @return true se a partida foi encerrada agora
+     */
+    boolean expirarCadeiras(long agora) {
+        synchronized (tabuleiro) {
+            boolean expirou = (brancas == VAZIA && prazoBrancas != 0 && agora - prazoBrancas >= 0)
+                    || (pretas == VAZIA && prazoPretas != 0 && agora - prazoPretas >= 0);
+            if (encerrada || !expirou) {
+                return false;
+            }
+            encerrada = true;
+            return true;
+        }
+    }
+
+    // Libera para qualquer jogador as cadeiras reservadas cujo prazo acabou (partidas recuperadas)
+    boolean liberarReservas(long agora) {
+        synchronized (tabuleiro) {
+            if (brancas == VAZIA && prazoBrancas != 0 && agora - prazoBrancas >= 0) {
+                prazoBrancas = 0;
+                sessaoBrancas = 0;
+            }
+            if (pretas == VAZIA && prazoPretas != 0 && agora - prazoPretas >= 0) {
+                prazoPretas = 0;
+                sessaoPretas = 0;
+            }
+            return !encerrada && !isCompleta();
+        }
+    }
+
+    /**
+     * Devolve a cadeira a quem apresentou o token da sessão (já validado por Sessoes). Vale
+     * para a cadeira esvaziada por uma queda, para a de uma partida recuperada e também
+     * para a cadeira ainda ocupada pela mesma sessão, quando o servidor não percebeu a
+     * queda da conexão antiga. O jogador recebe INICIO e, se negociou DELTA e perdeu no
+     * máximo MAXIMO_JOGADAS_RETOMADA jogadas, só os DELTA que faltam; senão o estado completo.
+     *
+     * @param sequenciaCliente Última sequência recebida pelo cliente (0 se não sabe)
+     * @return false se a partida terminou ou a cadeira é de outra sessão
+     */
+    boolean retomar(Conexao jogador, boolean corBranca, long sessao, long sequenciaCliente) {
+        // Os DELTA que faltam são montados fora do lock, a partir do histórico do último retrato
+        HistoricoJogadas historico = posicao.getHistorico();
+        List<String> perdidas = null;
+        if ((jogador.getCapacidades() & Conexao.CAP_DELTA) != 0 && sequenciaCliente > 0
+                && sequenciaCliente <= historico.getQuantidade()
+                && historico.getQuantidade() - sequenciaCliente <= MAXIMO_JOGADAS_RETOMADA) {
+            perdidas = deltasDesde(historico, (int) sequenciaCliente);
+        }
+
+        synchronized (tabuleiro) {
+            long atual = corBranca ? sessaoBrancas : sessaoPretas;
+            if (encerrada || (atual != 0 && atual != sessao)) {
+                return false;
+            }
+            Conexao anterior = corBranca ? brancas : pretas;
+            if (anterior != VAZIA && anterior != jogador) {
+                // Conexão antiga, que o servidor ainda não viu cair: deixa de falar pela cadeira
+                anterior.setPartida(null);
+            }
+            if (corBranca) {
+                brancas = jogador;
+                sessaoBrancas = sessao;
+                prazoBrancas = 0;
+            } else {
+                pretas = jogador;
+                sessaoPretas = sessao;
+                prazoPretas = 0;
+            }
+            jogador.setPartida(this);
+            jogador.sendMessage(corBranca ? "INICIO BRANCAS" : "INICIO PRETAS");
+            jogador.sendMessage("SESSAO " + sessoes.token(id, corBranca, sessao));
+            // Se houve jogada depois da cópia, os DELTA montados estão incompletos: vai o estado completo
+            if (perdidas != null && historico.getQuantidade() == sequencia) {
+                for (String delta : perdidas) {
+                    jogador.sendMessage(delta);
+                }
+            } else {
+                enviarTabuleiro(jogador);
+            }
+            if (isCompleta()) {
+                broadcastMessage("TURNO " + (tabuleiro.isVezBrancas() ? "BRANCAS" : "PRETAS"));
+            } else {
+                jogador.sendMessage("ERRO Aguardando adversário");
+            }
+            return true;
+        }
+    }
+
+    // DELTA das jogadas depois da sequência "desde", refazendo a partida num tabuleiro à parte
+    private static List<String> deltasDesde(HistoricoJogadas historico, int desde) {
+        List<String> deltas = new ArrayList<>(historico.getQuantidade() - desde);
+        Tabuleiro refeito = new Tabuleiro();
+        for (int i = 0; i < historico.getQuantidade(); i++) {
+            int jogada = historico.getJogada(i);
+            int origem = HistoricoJogadas.origem(jogada);
+            int destino = HistoricoJogadas.destino(jogada);
+            boolean vezBrancas = refeito.isVezBrancas();
+            long adversariasAntes = vezBrancas ? refeito.getPretas() : refeito.getBrancas();
+            refeito.moverPeca(origem / Tabuleiro.TAMANHO, origem % Tabuleiro.TAMANHO, destino / Tabuleiro.TAMANHO,
+                    destino % Tabuleiro.TAMANHO);
+            if (i >= desde) {
+                long capturadas = adversariasAntes & ~(vezBrancas ? refeito.getPretas() : refeito.getBrancas());
+                deltas.add(formatarDelta(i + 1, origem, destino, capturadas, HistoricoJogadas.isCoroacao(jogada),
+                        refeito.isVezBrancas()));
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Refaz uma jogada lida do diário, sem avisar ninguém nem registrá-la de novo.
+     *
+     * @return false se a jogada não é válida na posição atual
+     */
+    boolean reproduzir(int origem, int destino) {
+        int xo = origem / Tabuleiro.TAMANHO;
+        int yo = origem % Tabuleiro.TAMANHO;
+        int xd = destino / Tabuleiro.TAMANHO;
+        int yd = destino % Tabuleiro.TAMANHO;
+        synchronized (tabuleiro) {
+            if (!tabuleiro.validarMovimento(xo, yo, xd, yd)) {
+                return false;
+            }
+            tabuleiro.moverPeca(xo, yo, xd, yd);
+            sequencia++;
+            posicao = new PosicaoTabuleiro(tabuleiro, sequencia);
+            return true;
+        }
+    }
+
+    // Verdadeiro se o jogador ocupa a cadeira da cor que tem a vez; com o lock do tabuleiro
+    boolean isVezDe(Conexao jogador) {
+        return jogador == (tabuleiro.isVezBrancas() ? brancas : pretas);
+    }
+
+    // Retorna o jogador da outra cor
+    public Conexao getAdversario(Conexao jogador) {
+        return jogador == brancas ? pretas : brancas;
+    }
+
+    // Informa os dois jogadores sobre o início do jogo
+    public void iniciar() {
+        synchronized (tabuleiro) {
+            brancas.sendMessage("INICIO BRANCAS");
+            abrirSessao(brancas, true);
+            pretas.sendMessage("INICIO PRETAS");
+            abrirSessao(pretas, false);
+            broadcastTabuleiro();
+            broadcastMessage("TURNO BRANCAS");
+        }
+    }
+
+    public long getSequencia() {
+        return sequencia;
+    }
+
+    // Envia o estado atual do tabuleiro para os dois jogadores, no formato que cada um negociou
+    public void broadcastTabuleiro() {
+        long inicio = System.nanoTime();
+        limparCache();
+        enviarTabuleiro(brancas);
+        enviarTabuleiro(pretas);
+        Metricas.SERVIDOR.difusao(inicio);
+    }
+
+    /**
+     * Executa um movimento já validado e avisa os jogadores: quem negociou DELTA recebe
+     * só a jogada (origem, destino, capturas, coroação e turno); os demais recebem o
+     * tabuleiro inteiro. Deve ser chamado com o lock do tabuleiro.
+     */
+    public void executarMovimento(int xOrigem, int yOrigem, int xDestino, int yDestino) {
+        boolean vezBrancas = tabuleiro.isVezBrancas();
+        long adversariasAntes = vezBrancas ? tabuleiro.getPretas() : tabuleiro.getBrancas();
+        boolean eraDama = tabuleiro.casa(xOrigem, yOrigem).isDama();
+
+        // Write-ahead: a jogada vai para o diário antes de alterar o tabuleiro
+        if (diario != null) {
+            diario.registrarLance(id, xOrigem * Tabuleiro.TAMANHO + yOrigem, xDestino * Tabuleiro.TAMANHO + yDestino);
+        }
+        tabuleiro.moverPeca(xOrigem, yOrigem, xDestino, yDestino);
+        sequencia++;
+        PosicaoTabuleiro atual = new PosicaoTabuleiro(tabuleiro, sequencia);
+        posicao = atual;
+
+        long capturadas = adversariasAntes & ~(vezBrancas ? tabuleiro.getPretas() : tabuleiro.getBrancas());
+        boolean coroou = !eraDama && tabuleiro.casa(xDestino, yDestino).isDama();
+        String delta = formatarDelta(sequencia, xOrigem * Tabuleiro.TAMANHO + yOrigem,
+                xDestino * Tabuleiro.TAMANHO + yDestino, capturadas, coroou, tabuleiro.isVezBrancas());
+
+        long inicio = System.nanoTime();
+        limparCache();
+        enviarAtualizacao(brancas, delta);
+        enviarAtualizacao(pretas, delta);
+        transmissao.publicar(atual);
+        Metricas.SERVIDOR.difusao(inicio);
+    }
+
+    // "SNAP <seq> <estado compacto>": estado completo para quem trabalha com DELTA
+    public String mensagemSnapshot() {
+        return "SNAP " + sequencia + " " + tabuleiro.serializarCompacto();
+    }
+
+    // Formato: DELTA <seq> <origem> <destino> <capturadas separadas por vírgula ou -> <coroa 1/0> <vez B/P>
+    static String formatarDelta(long sequencia, int origem, int destino, long capturadas, boolean coroou,
+            boolean vezBrancas) {
+        StringBuilder sb = new StringBuilder("DELTA ").append(sequencia).append(' ')
+                .append(GeradorMovimentos.coordenada(origem)).append(' ')
+                .append(GeradorMovimentos.coordenada(destino)).append(' ');
+        if (capturadas == 0) {
+            sb.append('-');
+        }
+        for (long m = capturadas; m != 0; m &= m - 1) {
+            sb.append(GeradorMovimentos.coordenada(Long.numberOfTrailingZeros(m)));
+            if ((m & (m - 1)) != 0) {
+                sb.append(',');
+            }
+        }
+        return sb.append(' ').append(coroou ? '1' : '0').append(' ').append(vezBrancas ? 'B' : 'P').toString();
+    }
+
+    private void limparCache() {
+        cacheTexto = null;
+        cacheCompacto = null;
+        cacheSnapshot = null;
+    }
+
+    private void enviarAtualizacao(Conexao jogador, String delta) {
+        if ((jogador.getCapacidades() & Conexao.CAP_DELTA) != 0) {
+            jogador.sendMessage(delta);
+        } else {
+            enviarTabuleiro(jogador);
+        }
+    }
+
+    private void enviarTabuleiro(Conexao jogador) {
+        int capacidades = jogador.getCapacidades();
+        if ((capacidades & Conexao.CAP_DELTA) != 0) {
+            if (cacheSnapshot == null) {
+                cacheSnapshot = mensagemSnapshot();
+            }
+            jogador.sendMessage(cacheSnapshot);
+        } else if ((capacidades & Conexao.CAP_COMPACTO) != 0) {
+            if (cacheCompacto == null) {
+                cacheCompacto = "TABC " + tabuleiro.serializarCompacto();
+            }
+            jogador.sendMessage(cacheCompacto);
+        } else {
+            if (cacheTexto == null) {
+                cacheTexto = "TABULEIRO " + tabuleiro.serializar();
+            }
+            jogador.sendMessage(cacheTexto);
+        }
+    }
+
+    // Envia uma mensagem genérica para os dois jogadores
+    public void broadcastMessage(String message) {
+        long inicio = System.nanoTime();
+        brancas.sendMessage(message);
+        pretas.sendMessage(message);
+        Metricas.SERVIDOR.difusao(inicio);
+    }
+
+    // Encerra a partida se nenhuma jogada foi feita ainda; retorna false caso contrário
+    boolean encerrarSemJogadas() {
+        synchronized (tabuleiro) {
+            if (encerrada || sequencia != 0) {
+                return false;
+            }
+            encerrada = true;
+            return true;
+        }
+    }
+
+    // Marca a partida como encerrada; retorna false se ela já estava encerrada
+    boolean encerrar() {
+        synchronized (tabuleiro) {
+            if (encerrada) {
+                return false;
+            }
+            encerrada = true;
+            return true;
+        }
+    }
+
+    boolean isTransferindo() {
+        return transferindo;
+    }
+
+    /**
+     * Para de aceitar jogadas para a partida ser enviada a outro nó; os jogadores continuam
+     * conectados até o outro nó confirmar (transferir) ou a transferência ser desistida
+     * (descongelar).
+     *
+     * @return o histórico completo, que não muda mais enquanto a partida estiver congelada,
+     *         ou null se ela já estava encerrada
+     */
+    HistoricoJogadas congelar() {
+        synchronized (tabuleiro) {
+            if (encerrada) {
+                return null;
+            }
+            transferindo = true;
+            return tabuleiro.getHistorico();
+        }
+    }
+
+    // Volta a aceitar jogadas depois de uma transferência desistida; a vez é anunciada de novo
+    void descongelar() {
+        synchronized (tabuleiro) {
+            if (!transferindo) {
+                return;
+            }
+            transferindo = false;
+            if (!encerrada && isCompleta()) {
+                broadcastMessage("TURNO " + (tabuleiro.isVezBrancas() ? "BRANCAS" : "PRETAS"));
+            }
+        }
+    }
+
+    boolean isContraMaquina() {
+        return brancas instanceof JogadorMaquina || pretas instanceof JogadorMaquina;
+    }
+
+    /**
+     * Encerra a partida, já adotada por outro nó do cluster: os jogadores recebem o aviso e
+     * são desconectados (voltam com RETOMAR) e as cadeiras ficam vazias.
+     *
+     * @return o histórico completo, ou null se a partida já estava encerrada
+     */
+    HistoricoJogadas transferir(String aviso) {
+        synchronized (tabuleiro) {
+            if (encerrada) {
+                return null;
+            }
+            encerrada = true;
+            for (Conexao jogador : new Conexao[] { brancas, pretas }) {
+                jogador.sendMessage(aviso);
+                jogador.desconectar();
+            }
+            brancas = VAZIA;
+            pretas = VAZIA;
+            return tabuleiro.getHistorico();
+        }
+    }
+}
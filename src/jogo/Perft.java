@@ -0,0 +1,214 @@
+// =================== Perft.java ===================
+/**
+ * Contagem de posições (perft) para conferir e medir as regras de movimento.
+ *
+ * Conta as folhas da árvore de lances até a profundidade pedida, a partir da posição
+ * inicial e de um conjunto de posições de referência escolhidas para exercitar capturas
+ * múltiplas, coroação no meio de uma captura e damas à distância. Cada lance é uma jogada
+ * completa do GeradorMovimentos (uma captura múltipla conta como um lance só).
+ *
+ * As contagens conhecidas servem de teste de regressão: qualquer otimização do Tabuleiro
+ * ou do GeradorMovimentos deve manter exatamente os mesmos números.
+ *
+ * Uso: java jogo.Perft [profundidade] [--paralelo] [--threads=N] [--verificar]
+ */
+
+package jogo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class Perft {
+    /*
+     * Posições de referência: a vez ("B" ou "P") seguida das peças, cada uma com o tipo
+     * (b/p peão branco/preto, B/P dama branca/preta) e a casa no formato do protocolo.
+     */
+    static final String[][] POSICOES = {
+            { "inicial", null },
+            { "captura-multipla", "B b3D b1B b1D p4C p4E p6C p6E p6G p8G" },
+            { "coroacao-em-cadeia", "B b6C b2A b3F p7B p7D p7F p4E p8G" },
+            { "damas-voadoras", "P P8C P5D p7F p6G B1D B3H b2C b4E" },
+            { "final-de-damas", "B B4C B1F b2A P7D P8E p6A p6E" },
+    };
+
+    /*
+     * Contagens conhecidas, por posição, a partir da profundidade 1. Até a profundidade 7
+     * a posição inicial coincide com as contagens publicadas para as damas inglesas, que têm
+     * as mesmas regras para os peões; a partir da 8 surgem damas, que aqui andam à distância.
+     */
+    static final long[][] CONTAGENS = {
+            { 7, 49, 302, 1469, 7361, 36768, 179740, 846019, 3964406 },
+            { 3, 23, 125, 788, 3450, 17658, 92200, 445399, 2575132 },
+            { 6, 15, 148, 507, 4089, 13295, 92424, 322241, 2071563 },
+            { 3, 15, 144, 1130, 10511, 81687, 755887, 5795252 },
+            { 2, 14, 137, 1550, 15539, 161483, 1624304, 16720633 },
+    };
+
+    private Perft() {
+    }
+
+    /**
+     * Conta as folhas até a profundidade dada. O tabuleiro é alterado durante a contagem
+     * e restaurado ao final.
+     */
+    public static long contar(Tabuleiro tabuleiro, int profundidade) {
+        if (profundidade == 0) {
+            return 1;
+        }
+        return contar(tabuleiro, profundidade, new long[profundidade][GeradorMovimentos.MAX_LANCES]);
+    }
+
+    private static long contar(Tabuleiro t, int profundidade, long[][] lances) {
+        long[] vetor = lances[profundidade - 1];
+        int n = GeradorMovimentos.gerar(t, vetor);
+        if (profundidade == 1) {
+            return n;
+        }
+        long brancas = t.getBrancas();
+        long pretas = t.getPretas();
+        long damas = t.getDamas();
+        boolean vezBrancas = t.isVezBrancas();
+        long hash = t.getHash();
+
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            t.aplicarLance(vetor[i]);
+            total += contar(t, profundidade - 1, lances);
+            t.restaurar(brancas, pretas, damas, vezBrancas, hash);
+        }
+        return total;
+    }
+
+    /**
+     * Mesma contagem, dividindo os lances da raiz entre as threads do pool.
+     * Cada lance da raiz é contado numa cópia própria do tabuleiro.
+     */
+    public static long contarParalelo(Tabuleiro tabuleiro, int profundidade, ForkJoinPool pool) {
+        if (profundidade <= 1) {
+            return contar(new Tabuleiro(tabuleiro), profundidade);
+        }
+        long[] raiz = new long[GeradorMovimentos.MAX_LANCES];
+        int n = GeradorMovimentos.gerar(tabuleiro, raiz);
+
+        List<Callable<Long>> tarefas = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            long lance = raiz[i];
+            tarefas.add(() -> {
+                Tabuleiro copia = new Tabuleiro(tabuleiro);
+                copia.aplicarLance(lance);
+                return contar(copia, profundidade - 1);
+            });
+        }
+
+        long total = 0;
+        try {
+            for (Future<Long> parcial : pool.invokeAll(tarefas)) {
+                total += parcial.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Contagem interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erro na contagem", e.getCause());
+        }
+        return total;
+    }
+
+    /**
+     * Monta uma posição a partir da descrição usada em POSICOES, por exemplo "P B3C p6F".
+     *
+     * @throws IllegalArgumentException se a descrição tiver peça ou casa inválida
+     */
+    public static Tabuleiro posicao(String descricao) {
+        Tabuleiro tabuleiro = new Tabuleiro();
+        if (descricao == null) {
+            return tabuleiro;
+        }
+        String[] partes = descricao.trim().split("\\s+");
+        long brancas = 0;
+        long pretas = 0;
+        long damas = 0;
+        for (int i = 1; i < partes.length; i++) {
+            String peca = partes[i];
+            int[] xy = peca.length() == 3 ? Tabuleiro.converterCoordenada(peca.substring(1)) : null;
+            if (xy == null || (xy[0] + xy[1]) % 2 == 0) {
+                throw new IllegalArgumentException("Casa inválida: " + peca);
+            }
+            long bit = 1L << (xy[0] * Tabuleiro.TAMANHO + xy[1]);
+            switch (peca.charAt(0)) {
+                case 'b' -> brancas |= bit;
+                case 'p' -> pretas |= bit;
+                case 'B' -> {
+                    brancas |= bit;
+                    damas |= bit;
+                }
+                case 'P' -> {
+                    pretas |= bit;
+                    damas |= bit;
+                }
+                default -> throw new IllegalArgumentException("Peça inválida: " + peca);
+            }
+        }
+        tabuleiro.carregarPosicao(brancas, pretas, damas, partes[0].equals("B"));
+        return tabuleiro;
+    }
+
+    public static void main(String[] args) {
+        int profundidadeMaxima = 0;
+        boolean paralelo = false;
+        boolean verificar = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.equals("--paralelo")) {
+                paralelo = true;
+            } else if (arg.equals("--verificar")) {
+                verificar = true;
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else {
+                profundidadeMaxima = Integer.parseInt(arg);
+            }
+        }
+
+        ForkJoinPool pool = paralelo ? new ForkJoinPool(threads) : null;
+        int divergencias = 0;
+        for (int p = 0; p < POSICOES.length; p++) {
+            System.out.println("== " + POSICOES[p][0] + (POSICOES[p][1] == null ? "" : " (" + POSICOES[p][1] + ")"));
+            Tabuleiro tabuleiro = posicao(POSICOES[p][1]);
+            // Sem profundidade explícita, --verificar vai até a última contagem conhecida
+            int limite = profundidadeMaxima > 0 ? profundidadeMaxima : 7;
+            if (verificar) {
+                limite = profundidadeMaxima > 0 ? Math.min(profundidadeMaxima, CONTAGENS[p].length) : CONTAGENS[p].length;
+            }
+            for (int profundidade = 1; profundidade <= limite; profundidade++) {
+                long inicio = System.nanoTime();
+                long nos = paralelo ? contarParalelo(tabuleiro, profundidade, pool) : contar(tabuleiro, profundidade);
+                long tempoNs = Math.max(1, System.nanoTime() - inicio);
+
+                String situacao = "";
+                if (profundidade <= CONTAGENS[p].length) {
+                    long esperado = CONTAGENS[p][profundidade - 1];
+                    if (esperado == nos) {
+                        situacao = " ok";
+                    } else {
+                        situacao = " ERRO (esperado " + esperado + ")";
+                        divergencias++;
+                    }
+                }
+                System.out.printf("perft(%d) = %d em %d ms, %d nós/s%s%n", profundidade, nos, tempoNs / 1_000_000,
+                        nos * 1_000_000_000L / tempoNs, situacao);
+            }
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (divergencias > 0) {
+            System.out.println(divergencias + " contagem(ns) diferente(s) das conhecidas");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+// =================== PosicaoTabuleiro.java ===================
+/**
+ * Retrato imutável do tabuleiro de uma partida depois de uma jogada.
+ *
+ * A Partida monta um retrato novo a cada moverPeca, ainda com o lock do tabuleiro, e o
+ * publica numa referência volatile. Quem só lê o estado (espectadores, HIST, a
+ * JogadorMaquina, o vencedor ao encerrar) pega a referência e trabalha sem o lock: nada
+ * do retrato muda depois de publicado e o histórico é a cópia O(1) de HistoricoJogadas.
+ * Assim a thread do jogador da vez nunca espera por leitores.
+ *
+ * O retrato guarda só as máscaras, o turno, a captura em andamento e o vencedor já
+ * calculado pela própria partida; montá-lo não percorre as casas.
+ */
+
+package jogo;
+
+final class PosicaoTabuleiro {
+    private final long brancas;
+    private final long pretas;
+    private final long damas;
+    private final boolean vezBrancas;
+    private final long hash;
+    // Casa da peça que continua uma captura em cadeia (-1 se não há)
+    private final int capturaX;
+    private final int capturaY;
+    private final int vencedor;
+    private final long sequencia;
+    private final HistoricoJogadas historico;
+
+    /**
+     * Deve ser chamado com o lock do tabuleiro, por quem acabou de alterá-lo.
+     *
+     * @param sequencia Número de movimentos aceitos na partida até esta posição
+     */
+    PosicaoTabuleiro(Tabuleiro tabuleiro, long sequencia) {
+        this.brancas = tabuleiro.getBrancas();
+        this.pretas = tabuleiro.getPretas();
+        this.damas = tabuleiro.getDamas();
+        this.vezBrancas = tabuleiro.isVezBrancas();
+        this.hash = tabuleiro.getHash();
+        this.capturaX = tabuleiro.getUltimoMovimentoX();
+        this.capturaY = tabuleiro.getUltimoMovimentoY();
+        // Fica guardado no tabuleiro: a verificação logo depois da jogada não repete o cálculo
+        this.vencedor = tabuleiro.verificarVencedor();
+        this.sequencia = sequencia;
+        this.historico = tabuleiro.getHistorico();
+    }
+
+    long getBrancas() {
+        return brancas;
+    }
+
+    long getPretas() {
+        return pretas;
+    }
+
+    long getDamas() {
+        return damas;
+    }
+
+    boolean isVezBrancas() {
+        return vezBrancas;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    int getCapturaX() {
+        return capturaX;
+    }
+
+    int getCapturaY() {
+        return capturaY;
+    }
+
+    long getSequencia() {
+        return sequencia;
+    }
+
+    HistoricoJogadas getHistorico() {
+        return historico;
+    }
+
+    // Mesmo resultado de Tabuleiro.verificarVencedor() nesta posição
+    int verificarVencedor() {
+        return vencedor;
+    }
+
+    Tabuleiro.TipoPeca casa(int x, int y) {
+        return Tabuleiro.tipoNoBit(brancas, pretas, damas, Tabuleiro.bit(x, y));
+    }
+
+    // Matriz 8x8 nova a cada chamada
+    Tabuleiro.TipoPeca[][] getCasas() {
+        Tabuleiro.TipoPeca[][] casas = new Tabuleiro.TipoPeca[Tabuleiro.TAMANHO][Tabuleiro.TAMANHO];
+        for (int i = 0; i < Tabuleiro.TAMANHO; i++) {
+            for (int j = 0; j < Tabuleiro.TAMANHO; j++) {
+                casas[i][j] = casa(i, j);
+            }
+        }
+        return casas;
+    }
+
+    int getQuantidadePecas(boolean corBranca) {
+        return Long.bitCount(corBranca ? brancas : pretas);
+    }
+
+    int getQuantidadeDamas(boolean corBranca) {
+        return Long.bitCount((corBranca ? brancas : pretas) & damas);
+    }
+
+    // Mesmos formatos de Tabuleiro.serializar() e Tabuleiro.serializarCompacto()
+    String serializar() {
+        return Tabuleiro.serializar(brancas, pretas, damas, vezBrancas);
+    }
+
+    String serializarCompacto() {
+        return Tabuleiro.serializarCompacto(brancas, pretas, damas, vezBrancas);
+    }
+}
@@ -0,0 +1,224 @@
+// =================== ProcessadorComandos.java ===================
+/**
+ * Aplica à partida do jogador os comandos enviados por ele (MOVIMENTO, HIST, MAQUINA,
+ * ESPECTAR, RETOMAR), já decodificados pelo CodecComandos. O tempo de cada comando e a espera pelo lock do
+ * tabuleiro vão para as Metricas, consultadas com STATS.
+ *
+ * A mesma lógica é usada pelo servidor bloqueante (ClientHandler) e pelo servidor
+ * baseado em Selector (ServidorNio), de modo que os dois falam exatamente o mesmo
+ * protocolo e os clientes existentes funcionam com qualquer um deles.
+ */
+
+package jogo;
+
+final class ProcessadorComandos {
+
+    private ProcessadorComandos() {
+    }
+
+    // Respostas ao CODEC, indexadas pelas capacidades aceitas
+    private static final String[] RESPOSTAS_CODEC = { "CODEC TEXTO", "CODEC COMPACTO", "CODEC DELTA",
+            "CODEC COMPACTO DELTA" };
+    // Jogadas por página do "HIST <de> <quantidade>", para uma página não encher a fila do cliente
+    private static final int PAGINA_MAXIMA_HIST = 500;
+
+    /**
+     * Processa uma linha recebida de um jogador, em texto. Para quem não lê os comandos
+     * direto dos bytes (a máquina, os benchmarks).
+     *
+     * @param jogador Conexão que enviou o comando
+     * @param inputLine Linha recebida, sem o terminador
+     * @param gerenciador Registro de partidas do servidor
+     * @return false se a partida terminou e a conexão deve ser encerrada
+     */
+    static boolean processar(Conexao jogador, String inputLine, GerenciadorPartidas gerenciador) {
+        Comando comando = new Comando();
+        CodecComandos.decodificar(inputLine, comando);
+        return processar(jogador, comando, gerenciador);
+    }
+
+    /**
+     * Processa um comando já interpretado pelo CodecComandos.
+     *
+     * @param jogador Conexão que enviou o comando
+     * @param comando Comando decodificado; pode ter vindo com erro
+     * @param gerenciador Registro de partidas do servidor
+     * @return false se a partida terminou e a conexão deve ser encerrada
+     */
+    static boolean processar(Conexao jogador, Comando comando, GerenciadorPartidas gerenciador) {
+        long inicio = System.nanoTime();
+        try {
+            return processarComando(jogador, comando, gerenciador);
+        } finally {
+            Metricas.SERVIDOR.comando(inicio);
+        }
+    }
+
+    private static boolean processarComando(Conexao jogador, Comando comando, GerenciadorPartidas gerenciador) {
+        // Linhas em branco são ignoradas, como sempre foram
+        if (comando.getErro() == Comando.Erro.LINHA_VAZIA) {
+            return true;
+        }
+        if (!comando.isValido()) {
+            if (comando.getTipo() == Comando.Tipo.MOVIMENTO) {
+                Metricas.SERVIDOR.movimento(false);
+            }
+            jogador.sendMessage("ERRO " + comando.getErro().getMensagem());
+            return true;
+        }
+        Partida partida = jogador.getPartida();
+        switch (comando.getTipo()) {
+            // Negociação de formato: pode ser feita antes mesmo do início da partida
+            case CODEC:
+                jogador.setCapacidades(comando.getCapacidades());
+                jogador.sendMessage(RESPOSTAS_CODEC[comando.getCapacidades()]);
+                return true;
+            // Métricas do servidor, para quem opera: também não depende de partida
+            case STATS:
+                if (!gerenciador.podeVerStats(jogador)) {
+                    jogador.sendMessage("ERRO STATS só é aceito de localhost (ou com --stats)");
+                    return true;
+                }
+                for (String linha : Metricas.SERVIDOR.resumo()) {
+                    jogador.sendMessage(linha);
+                }
+                return true;
+            case MAQUINA:
+                if (partida == null) {
+                    pedirMaquina(jogador, comando.getNumero(), gerenciador);
+                }
+                return true;
+            // Volta à cadeira depois de uma queda: vale também para quem já foi emparelhado de novo
+            case RETOMAR:
+                if (!gerenciador.retomar(jogador, comando)) {
+                    jogador.sendMessage("ERRO Sessão inválida ou encerrada");
+                }
+                return true;
+            case ESPECTAR:
+                if (partida == null) {
+                    espectar(jogador, comando.getNumero(), gerenciador);
+                }
+                return true;
+            default:
+                break;
+        }
+        if (partida == null) {
+            jogador.sendMessage("ERRO Aguardando adversário");
+            return true;
+        }
+        Tabuleiro tabuleiro = partida.getTabuleiro();
+
+        // Cliente com DELTA detectou uma lacuna na sequência e pede o estado completo. O SNAP é
+        // enfileirado com o lock para não passar à frente de um DELTA posterior a ele
+        if (comando.getTipo() == Comando.Tipo.SYNC) {
+            synchronized (tabuleiro) {
+                jogador.sendMessage(partida.mensagemSnapshot());
+            }
+            return true;
+        }
+        // O histórico vem do último retrato publicado, sem disputar o lock com o jogador da vez
+        if (comando.getTipo() == Comando.Tipo.HIST) {
+            enviarHistorico(jogador, partida.getPosicao().getHistorico(), comando);
+            return true;
+        }
+        if (comando.getTipo() != Comando.Tipo.MOVIMENTO) {
+            return true;
+        }
+
+        int xOrigem = comando.getOrigem() / Tabuleiro.TAMANHO;
+        int yOrigem = comando.getOrigem() % Tabuleiro.TAMANHO;
+        int xDestino = comando.getDestino() / Tabuleiro.TAMANHO;
+        int yDestino = comando.getDestino() % Tabuleiro.TAMANHO;
+
+        long antesLock = System.nanoTime();
+        synchronized (tabuleiro) {
+            Metricas.SERVIDOR.esperaLock(System.nanoTime() - antesLock);
+            // Verifica se o jogo já terminou antes de processar
+            int vencedor = tabuleiro.verificarVencedor();
+            if (vencedor != 0) {
+                String ganhador = (vencedor == 1) ? "BRANCAS" : "PRETAS";
+                partida.broadcastMessage("VITORIA " + ganhador);
+                gerenciador.finalizar(partida);
+                return false;
+            }
+            // Partida recuperada do diário: espera as duas cadeiras serem ocupadas
+            if (!partida.isCompleta()) {
+                jogador.sendMessage("ERRO Aguardando adversário");
+                return true;
+            }
+            // Num cluster, a partida está sendo enviada ao seu novo nó
+            if (partida.isTransferindo()) {
+                jogador.sendMessage("ERRO Partida em transferência para outro servidor, aguarde");
+                return true;
+            }
+
+            // Só quem ocupa a cadeira da vez move: contra o motor, o humano não joga pelas peças dele
+            if (!partida.isVezDe(jogador)) {
+                jogador.sendMessage("ERRO Não é a sua vez");
+                return true;
+            }
+
+            // Valida e executa o movimento
+            boolean valido = tabuleiro.validarMovimento(xOrigem, yOrigem, xDestino, yDestino);
+            Metricas.SERVIDOR.movimento(valido);
+            if (valido) {
+                partida.executarMovimento(xOrigem, yOrigem, xDestino, yDestino);
+
+                // Verifica novamente se alguém venceu
+                vencedor = tabuleiro.verificarVencedor();
+                if (vencedor != 0) {
+                    String ganhador = (vencedor == 1) ? "BRANCAS" : "PRETAS";
+                    partida.broadcastMessage("VITORIA " + ganhador);
+                    gerenciador.finalizar(partida);
+                    return false;
+                } else {
+                    partida.broadcastMessage("TURNO " + (tabuleiro.isVezBrancas() ? "BRANCAS" : "PRETAS"));
+                }
+            } else if (tabuleiro.verificarCapturaObrigatoria()) {
+                jogador.sendMessage("ERRO Movimento inválido: a captura é obrigatória");
+            } else {
+                jogador.sendMessage("ERRO Movimento inválido");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Envia o histórico já copiado, fora do lock. "HIST" manda todas as jogadas, como
+     * sempre; "HIST <de> [quantidade]" manda uma página, com as jogadas numeradas a partir
+     * de 1 ("HIST 12 Pretas: 6C 5D"), seguida de "HIST FIM <total>" para o cliente saber
+     * se há mais.
+     */
+    private static void enviarHistorico(Conexao jogador, HistoricoJogadas historico, Comando comando) {
+        if (comando.getNumero() == 0) {
+            for (int i = 0; i < historico.getQuantidade(); i++) {
+                jogador.sendMessage("HIST " + historico.formatar(i));
+            }
+            return;
+        }
+        int quantidade = comando.getQuantidade() > 0 ? Math.min(comando.getQuantidade(), PAGINA_MAXIMA_HIST)
+                : PAGINA_MAXIMA_HIST;
+        long fim = Math.min(historico.getQuantidade(), comando.getNumero() - 1 + quantidade);
+        for (int i = (int) Math.min(comando.getNumero() - 1, fim); i < fim; i++) {
+            jogador.sendMessage("HIST " + (i + 1) + " " + historico.formatar(i));
+        }
+        jogador.sendMessage("HIST FIM " + historico.getQuantidade());
+    }
+
+    /**
+     * "MAQUINA [ms]": o jogador que aguarda um adversário passa a jogar, de brancas,
+     * contra o motor do servidor, com o tempo por lance opcional em milissegundos.
+     */
+    private static void pedirMaquina(Conexao jogador, long tempoMs, GerenciadorPartidas gerenciador) {
+        if (gerenciador.jogarContraMaquina(jogador, tempoMs) == null) {
+            jogador.sendMessage("ERRO Partida já iniciada");
+        }
+    }
+
+    // "ESPECTAR <id>": o cliente que não está jogando passa a assistir à partida
+    private static void espectar(Conexao jogador, long id, GerenciadorPartidas gerenciador) {
+        if (!gerenciador.espectar(jogador, id)) {
+            jogador.sendMessage("ERRO Partida não encontrada: " + id);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+// =================== RoteadorDamas.java ===================
+/**
+ * Porta de entrada de um cluster de servidores de Damas.
+ *
+ * Os clientes se conectam ao roteador (porta 5555, ou "--porta=N") como se fosse um
+ * DamasServer, e cada conexão é repassada, byte a byte, ao nó dono da partida: os nós
+ * dividem as partidas por um AnelConsistente dos seus endereços. Para escolher o nó, o
+ * roteador lê as primeiras linhas do cliente (no máximo "--espera=ms", 200 por padrão),
+ * com o mesmo CodecComandos dos servidores:
+ *
+ *   RETOMAR <token> ou ESPECTAR <id>  → o dono da partida indicada pelo id;
+ *   qualquer outra coisa (ou nada)    → um nó para uma partida nova.
+ *
+ * As linhas CODEC são guardadas sem decidir nada e seguem, com a linha que decidiu, para o
+ * nó escolhido. Partidas novas precisam dos dois jogadores no mesmo nó: o roteador conta,
+ * por nó, as conexões enviadas para uma partida nova que ainda não receberam INICIO. Com
+ * um número ímpar, alguém lá está sem adversário e é para lá que vai quem chega; senão,
+ * para um nó sorteado pelo anel, o que espalha as partidas novas como as antigas.
+ *
+ * Os nós se anunciam na porta de administração ("--porta-nos=N", 5554 por padrão, só em
+ * localhost), que também serve para o roteador repassar as partidas transferidas entre
+ * eles (ver MembroCluster). A cada nó que entra, sai com SAIR ou cai, o anel novo é
+ * enviado a todos, e cada nó transfere ao dono novo as partidas que deixaram de ser suas;
+ * a resposta do dono novo (ADOTADA ou RECUSADA) volta pelo roteador ao nó de origem.
+ *
+ * Cada conexão usa duas threads virtuais, uma para cada sentido.
+ */
+
+package jogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class RoteadorDamas {
+    private static final int PORTA = 5555;
+    private static final int PORTA_NOS = 5554;
+    private static final long ESPERA_MS = 200;
+    private static final int TAMANHO_BUFFER = 8 * 1024;
+    private static final byte[] INICIO = "INICIO".getBytes(StandardCharsets.US_ASCII);
+
+    private final long esperaMs;
+    // Nós anunciados pelo endereço, na ordem de chegada (protegido por "this")
+    private final Map<String, No> nos = new LinkedHashMap<>();
+    private volatile AnelConsistente anel = AnelConsistente.VAZIO;
+    // Conexões enviadas a cada nó para uma partida nova que ainda não receberam INICIO (protegido por "this")
+    private final Map<String, Integer> aguardando = new HashMap<>();
+
+    RoteadorDamas(long esperaMs) {
+        this.esperaMs = esperaMs;
+    }
+
+    public static void main(String[] args) {
+        int porta = PORTA;
+        int portaNos = PORTA_NOS;
+        long esperaMs = ESPERA_MS;
+        for (String arg : args) {
+            if (arg.startsWith("--porta=")) {
+                porta = Integer.parseInt(arg.substring("--porta=".length()));
+            } else if (arg.startsWith("--porta-nos=")) {
+                portaNos = Integer.parseInt(arg.substring("--porta-nos=".length()));
+            } else if (arg.startsWith("--espera=")) {
+                esperaMs = Long.parseLong(arg.substring("--espera=".length()));
+            }
+        }
+        RoteadorDamas roteador = new RoteadorDamas(esperaMs);
+        try {
+            roteador.executar(porta, portaNos);
+        } catch (IOException e) {
+            System.out.println("Erro no roteador: " + e.getMessage());
+        }
+    }
+
+    void executar(int porta, int portaNos) throws IOException {
+        // A administração aceita partidas transferidas: só processos da própria máquina
+        ServerSocket administracao = new ServerSocket(portaNos, 50, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("nos").start(() -> aceitarNos(administracao));
+        try (ServerSocket servidor = new ServerSocket(porta)) {
+            System.out.println("Roteador de Damas na porta " + porta + " (nós na porta " + portaNos + ")");
+            while (true) {
+                Socket cliente = servidor.accept();
+                cliente.setTcpNoDelay(true);
+                Thread.ofVirtual().name("rota-", 0).start(() -> atender(cliente));
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- nós
+
+    private void aceitarNos(ServerSocket administracao) {
+        try (administracao) {
+            while (true) {
+                Socket socket = administracao.accept();
+                Thread.ofVirtual().name("no-", 0).start(() -> atenderNo(socket));
+            }
+        } catch (IOException e) {
+            System.out.println("Erro na porta dos nós: " + e.getMessage());
+        }
+    }
+
+    /*
+     * "NO <endereço>" abre a conversa; depois vêm "TRANSFERIR <destino> <partida>",
+     * "ADOTADA <origem> <id>", "RECUSADA <origem> <id>" e "SAIR".
+     */
+    private void atenderNo(Socket socket) {
+        No no = null;
+        try (socket) {
+            BufferedReader entrada = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String linha = entrada.readLine();
+            if (linha == null || !linha.startsWith("NO ") || linha.length() == "NO ".length()) {
+                return;
+            }
+            no = new No(linha.substring("NO ".length()).trim(), socket);
+            entrar(no);
+            while ((linha = entrada.readLine()) != null) {
+                if (linha.startsWith("TRANSFERIR ")) {
+                    repassar(no, linha.substring("TRANSFERIR ".length()));
+                } else if (linha.startsWith("ADOTADA ") || linha.startsWith("RECUSADA ")) {
+                    responder(linha);
+                } else if (linha.equals("SAIR")) {
+                    sair(no, true);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Erro na conexão com o nó: " + e.getMessage());
+        } finally {
+            if (no != null) {
+                sair(no, false);
+            }
+        }
+    }
+
+    private synchronized void entrar(No no) {
+        No anterior = nos.put(no.endereco, no);
+        if (anterior != null) {
+            // O nó reiniciou antes de o roteador perceber a queda da conexão antiga
+            anterior.fechar();
+        }
+        System.out.println("Nó " + no.endereco + " entrou no cluster");
+        publicarAnel();
+    }
+
+    /*
+     * Tira o nó do anel. Quem sai com SAIR continua registrado, para receber o anel novo
+     * e transferir as suas partidas; ao fechar a conexão passa por aqui de novo e é removido.
+     */
+    private synchronized void sair(No no, boolean pediu) {
+        if (nos.get(no.endereco) != no) {
+            return;
+        }
+        if (!pediu) {
+            nos.remove(no.endereco);
+        }
+        if (no.fora) {
+            return;
+        }
+        no.fora = true;
+        System.out.println("Nó " + no.endereco + (pediu ? " saindo do cluster" : " desconectado"));
+        publicarAnel();
+        if (pediu) {
+            no.enviar("ANEL " + anel);
+        }
+    }
+
+    // Deve ser chamado com o lock de "this"; os nós recebem os anéis na ordem em que mudam
+    private void publicarAnel() {
+        List<String> ativos = new ArrayList<>();
+        for (No no : nos.values()) {
+            if (!no.fora) {
+                ativos.add(no.endereco);
+            }
+        }
+        anel = new AnelConsistente(ativos);
+        System.out.println("Anel: " + (anel.isVazio() ? "(vazio)" : anel));
+        for (No no : nos.values()) {
+            if (!no.fora) {
+                no.enviar("ANEL " + anel);
+            }
+        }
+    }
+
+    /*
+     * Entrega ao destino a partida que o nó de origem deixou de ter, como "ADOTAR <origem>
+     * <partida>". Sem destino não há resposta: a origem repete o envio com o anel que tiver.
+     */
+    private void repassar(No origem, String dados) {
+        int espaco = dados.indexOf(' ');
+        No destino;
+        synchronized (this) {
+            destino = espaco < 0 ? null : nos.get(dados.substring(0, espaco));
+        }
+        if (destino == null || destino.fora) {
+            System.out.println("Transferência de " + origem.endereco + " sem destino: " + dados);
+            return;
+        }
+        destino.enviar("ADOTAR " + origem.endereco + " " + dados.substring(espaco + 1));
+    }
+
+    // Leva ao nó de origem a resposta do destino: "ADOTADA <origem> <id>" vira "ADOTADA <id>"
+    private void responder(String linha) {
+        String[] campos = linha.split(" ");
+        if (campos.length != 3) {
+            return;
+        }
+        No origem;
+        synchronized (this) {
+            origem = nos.get(campos[1]);
+        }
+        if (origem == null) {
+            System.out.println("Resposta de transferência para um nó que já saiu: " + linha);
+            return;
+        }
+        origem.enviar(campos[0] + " " + campos[2]);
+    }
+
+    // Conexão de administração de um nó
+    private static final class No {
+        final String endereco;
+        final String host;
+        final int porta;
+        private final Socket socket;
+        private final Writer saida;
+        // Já não está no anel (pediu para sair ou caiu); protegido pelo lock do roteador
+        boolean fora;
+
+        No(String endereco, Socket socket) throws IOException {
+            int separador = endereco.lastIndexOf(':');
+            if (separador < 0) {
+                throw new IOException("Endereço de nó inválido: " + endereco);
+            }
+            this.endereco = endereco;
+            this.host = endereco.substring(0, separador);
+            this.porta = Integer.parseInt(endereco.substring(separador + 1));
+            this.socket = socket;
+            this.saida = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        synchronized void enviar(String linha) {
+            try {
+                saida.write(linha);
+                saida.write('\n');
+                saida.flush();
+            } catch (IOException e) {
+                // A leitura do nó também falha e o tira do anel
+                fechar();
+            }
+        }
+
+        void fechar() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.out.println("Erro ao fechar a conexão com o nó: " + e.getMessage());
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- clientes
+
+    private void atender(Socket cliente) {
+        Ligacao ligacao = new Ligacao(cliente);
+        try (cliente) {
+            String destino = escolherNo(ligacao);
+            if (destino == null) {
+                return;
+            }
+            int separador = destino.lastIndexOf(':');
+            Socket servidor;
+            try {
+                servidor = new Socket(destino.substring(0, separador), Integer.parseInt(destino.substring(separador + 1)));
+            } catch (IOException e) {
+                System.out.println("Nó " + destino + " não aceitou a conexão: " + e.getMessage());
+                enviarErro(cliente, "ERRO Servidor indisponível");
+                return;
+            }
+            try (servidor) {
+                servidor.setTcpNoDelay(true);
+                OutputStream paraServidor = servidor.getOutputStream();
+                paraServidor.write(ligacao.buffer, 0, ligacao.lidos);
+                paraServidor.flush();
+                Thread respostas = Thread.ofVirtual().name("resposta-", 0)
+                        .start(() -> copiarRespostas(ligacao, servidor, cliente));
+                copiar(cliente.getInputStream(), paraServidor, ligacao.buffer);
+                // O cliente saiu: o servidor vê o fim da conexão e ainda envia o que faltar
+                servidor.shutdownOutput();
+                respostas.join();
+            }
+        } catch (IOException e) {
+            // Uma das pontas caiu; a outra é fechada junto
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            esquecer(ligacao);
+        }
+    }
+
+    /*
+     * Lê as primeiras linhas do cliente até uma decidir o nó ou o prazo acabar. As linhas
+     * lidas ficam no buffer da ligação, para serem repassadas ao nó.
+     *
+     * @return o endereço do nó, ou null se não há nós ou o cliente saiu
+     */
+    private String escolherNo(Ligacao ligacao) throws IOException {
+        Socket cliente = ligacao.socket;
+        InputStream entrada = cliente.getInputStream();
+        Comando comando = new Comando();
+        long limite = System.nanoTime() + esperaMs * 1_000_000;
+        int inicioLinha = 0;
+        String destino = null;
+        boolean decidido = false;
+        try {
+            while (!decidido && ligacao.lidos < ligacao.buffer.length) {
+                long restante = (limite - System.nanoTime()) / 1_000_000;
+                if (restante <= 0) {
+                    break;
+                }
+                cliente.setSoTimeout((int) restante);
+                int lidos = entrada.read(ligacao.buffer, ligacao.lidos, ligacao.buffer.length - ligacao.lidos);
+                if (lidos < 0) {
+                    return null;
+                }
+                int fim = ligacao.lidos + lidos;
+                for (int i = ligacao.lidos; i < fim && !decidido; i++) {
+                    if (ligacao.buffer[i] != '\n') {
+                        continue;
+                    }
+                    CodecComandos.decodificar(ligacao.buffer, inicioLinha, i, comando);
+                    inicioLinha = i + 1;
+                    Comando.Tipo tipo = comando.getTipo();
+                    if (comando.getErro() == Comando.Erro.LINHA_VAZIA || tipo == Comando.Tipo.CODEC) {
+                        continue;
+                    }
+                    decidido = true;
+                    if (comando.isValido() && (tipo == Comando.Tipo.RETOMAR || tipo == Comando.Tipo.ESPECTAR)) {
+                        destino = anel.dono(comando.getNumero());
+                    }
+                }
+                ligacao.lidos = fim;
+            }
+        } catch (SocketTimeoutException e) {
+            // Clientes antigos só falam depois do INICIO: vão para uma partida nova
+        }
+        cliente.setSoTimeout(0);
+        if (destino == null) {
+            destino = emparelhar(ligacao);
+        }
+        if (destino == null) {
+            enviarErro(cliente, "ERRO Nenhum servidor disponível");
+        }
+        return destino;
+    }
+
+    // Nó para quem vai esperar uma partida nova: um em que alguém está sem adversário, ou um sorteado
+    private synchronized String emparelhar(Ligacao ligacao) {
+        AnelConsistente atual = anel;
+        String destino = null;
+        for (Map.Entry<String, Integer> no : aguardando.entrySet()) {
+            if (no.getValue() % 2 == 1 && atual.contem(no.getKey())) {
+                destino = no.getKey();
+                break;
+            }
+        }
+        if (destino == null) {
+            destino = atual.dono(ThreadLocalRandom.current().nextLong());
+        }
+        if (destino != null) {
+            ligacao.no = destino;
+            aguardando.merge(destino, 1, Integer::sum);
+        }
+        return destino;
+    }
+
+    // A ligação começou uma partida (ou jogou contra a máquina, ou saiu): não aguarda mais adversário
+    private synchronized void esquecer(Ligacao ligacao) {
+        if (ligacao.no != null && !ligacao.esquecida) {
+            ligacao.esquecida = true;
+            aguardando.computeIfPresent(ligacao.no, (no, quantidade) -> quantidade > 1 ? quantidade - 1 : null);
+        }
+    }
+
+    // Repassa as respostas do nó ao cliente, procurando o INICIO enquanto a ligação aguarda
+    private void copiarRespostas(Ligacao ligacao, Socket servidor, Socket cliente) {
+        byte[] buffer = new byte[TAMANHO_BUFFER];
+        // Bytes de "INICIO" já reconhecidos no começo da linha atual; -1 no meio de outra linha
+        int reconhecidos = 0;
+        boolean procurar = ligacao.no != null;
+        try {
+            InputStream entrada = servidor.getInputStream();
+            OutputStream saida = cliente.getOutputStream();
+            int lidos;
+            while ((lidos = entrada.read(buffer)) >= 0) {
+                for (int i = 0; i < lidos && procurar; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        reconhecidos = 0;
+                    } else if (reconhecidos >= 0 && b == INICIO[reconhecidos]) {
+                        if (++reconhecidos == INICIO.length) {
+                            procurar = false;
+                            esquecer(ligacao);
+                        }
+                    } else {
+                        reconhecidos = -1;
+                    }
+                }
+                saida.write(buffer, 0, lidos);
+                saida.flush();
+            }
+        } catch (IOException e) {
+            // Uma das pontas caiu; fechar as duas encerra também a cópia no outro sentido
+        } finally {
+            try {
+                cliente.close();
+                servidor.close();
+            } catch (IOException e) {
+                System.out.println("Erro ao fechar a ligação: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void copiar(InputStream entrada, OutputStream saida, byte[] buffer) throws IOException {
+        int lidos;
+        while ((lidos = entrada.read(buffer)) >= 0) {
+            saida.write(buffer, 0, lidos);
+            saida.flush();
+        }
+    }
+
+    private static void enviarErro(Socket cliente, String mensagem) {
+        try {
+            cliente.getOutputStream().write((mensagem + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // O cliente já saiu
+        }
+    }
+
+    // Conexão de um cliente: o que foi lido antes da escolha do nó e, se foi para uma partida nova, o nó
+    private static final class Ligacao {
+        final Socket socket;
+        final byte[] buffer = new byte[TAMANHO_BUFFER];
+        int lidos;
+        volatile String no;
+        // Já descontada de "aguardando" (protegido pelo lock do roteador)
+        boolean esquecida;
+
+        Ligacao(Socket socket) {
+            this.socket = socket;
+        }
+    }
+}
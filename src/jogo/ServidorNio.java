@@ -0,0 +1,246 @@
+// =================== ServidorNio.java ===================
+/**
+ * Servidor de Damas baseado em laços de eventos (java.nio.channels.Selector).
+ *
+ * Em vez de uma thread bloqueada em readLine() por cliente, um pequeno conjunto fixo
+ * de threads de E/S atende todas as conexões: cada laço tem o seu Selector, lê os bytes
+ * disponíveis num buffer compartilhado, separa as linhas diretamente no ByteBuffer e
+ * decodifica cada comando ali mesmo (CodecComandos), num Comando reaproveitado, antes de
+ * repassá-lo ao ProcessadorComandos, o mesmo usado pelo servidor bloqueante.
+ * Conexões ociosas custam apenas o registro no Selector, o que permite manter centenas
+ * de milhares de clientes conectados numa única máquina.
+ */
+
+package jogo;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+final class ServidorNio {
+    // Tamanho do buffer de leitura compartilhado por todas as conexões de um laço
+    private static final int TAMANHO_BUFFER_LEITURA = 64 * 1024;
+    // Linhas maiores que isso não fazem parte do protocolo e derrubam a conexão
+    static final int TAMANHO_MAXIMO_LINHA = 8 * 1024;
+    // Espera depois de um accept que falhou, antes de tentar de novo
+    private static final Duration PAUSA_ERRO_ACEITE = Duration.ofMillis(100);
+
+    private final int porta;
+    private final GerenciadorPartidas gerenciador;
+    private final LacoEventos[] lacos;
+
+    ServidorNio(int porta, int quantidadeLacos, GerenciadorPartidas gerenciador) throws IOException {
+        this.porta = porta;
+        this.gerenciador = gerenciador;
+        this.lacos = new LacoEventos[quantidadeLacos];
+        for (int i = 0; i < quantidadeLacos; i++) {
+            lacos[i] = new LacoEventos();
+        }
+    }
+
+    /**
+     * Inicia os laços de E/S e passa a aceitar conexões na thread atual.
+     * Cada nova conexão é distribuída entre os laços em rodízio.
+     */
+    void executar() throws IOException {
+        for (int i = 0; i < lacos.length; i++) {
+            Thread thread = new Thread(lacos[i], "nio-laco-" + i);
+            thread.start();
+        }
+
+        try (ServerSocketChannel servidor = ServerSocketChannel.open()) {
+            servidor.bind(new InetSocketAddress(porta), 1024);
+            System.out.println("Servidor de Damas (NIO, " + lacos.length + " laços) iniciado na porta " + porta);
+
+            int proximo = 0;
+            while (servidor.isOpen()) {
+                SocketChannel canal = null;
+                try {
+                    canal = servidor.accept();
+                    canal.configureBlocking(false);
+                    canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                } catch (IOException e) {
+                    // Uma conexão que falha (ou descritores esgotados) não derruba o servidor
+                    System.out.println("Erro ao aceitar conexão: " + e.getMessage());
+                    fecharSilenciosamente(canal);
+                    pausarAposErro();
+                    continue;
+                }
+
+                LacoEventos laco = lacos[proximo];
+                proximo = (proximo + 1) % lacos.length;
+                laco.registrar(new ConexaoNio(canal, laco, gerenciador));
+            }
+        }
+    }
+
+    // Com os descritores esgotados o accept falharia de novo na hora; espera alguns fecharem
+    private static void pausarAposErro() {
+        try {
+            Thread.sleep(PAUSA_ERRO_ACEITE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void fecharSilenciosamente(SocketChannel canal) {
+        if (canal == null) {
+            return;
+        }
+        try {
+            canal.close();
+        } catch (IOException e) {
+            // Já estava inutilizável
+        }
+    }
+
+    // Laço de eventos: um Selector atendido por uma única thread
+    final class LacoEventos implements Runnable {
+        private final Selector selector;
+        private final Queue<ConexaoNio> novas = new ConcurrentLinkedQueue<>();
+        private final Queue<ConexaoNio> comEscrita = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer leitura = ByteBuffer.allocate(TAMANHO_BUFFER_LEITURA);
+        // Reaproveitado para todas as linhas lidas por este laço
+        private final Comando comando = new Comando();
+
+        LacoEventos() throws IOException {
+            selector = Selector.open();
+        }
+
+        // Chamado pela thread que aceita conexões
+        void registrar(ConexaoNio conexao) {
+            novas.add(conexao);
+            selector.wakeup();
+        }
+
+        // Chamado por qualquer thread que tenha enfileirado mensagens para a conexão
+        void agendarEscrita(ConexaoNio conexao) {
+            comEscrita.add(conexao);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    registrarNovas();
+                    escreverPendentes();
+
+                    Iterator<SelectionKey> chaves = selector.selectedKeys().iterator();
+                    while (chaves.hasNext()) {
+                        SelectionKey chave = chaves.next();
+                        chaves.remove();
+                        ConexaoNio conexao = (ConexaoNio) chave.attachment();
+                        if (!chave.isValid()) {
+                            continue;
+                        }
+                        try {
+                            if (chave.isReadable()) {
+                                ler(conexao);
+                            }
+                            if (chave.isValid() && chave.isWritable()) {
+                                conexao.escrever();
+                            }
+                        } catch (RuntimeException e) {
+                            descartar(conexao, e);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("Erro no laço de eventos: " + e.getMessage());
+                }
+            }
+        }
+
+        private void registrarNovas() {
+            ConexaoNio conexao;
+            while ((conexao = novas.poll()) != null) {
+                try {
+                    conexao.setChave(conexao.getCanal().register(selector, SelectionKey.OP_READ, conexao));
+                } catch (ClosedChannelException e) {
+                    continue;
+                }
+                // Emparelha o cliente; a partida começa quando houver dois jogadores
+                try {
+                    gerenciador.entrar(conexao);
+                } catch (RuntimeException e) {
+                    descartar(conexao, e);
+                }
+            }
+        }
+
+        private void escreverPendentes() {
+            ConexaoNio conexao;
+            while ((conexao = comEscrita.poll()) != null) {
+                try {
+                    conexao.escrever();
+                } catch (RuntimeException e) {
+                    descartar(conexao, e);
+                }
+            }
+        }
+
+        /*
+         * Uma falha ao atender uma conexão (como o diário sem espaço em disco) derruba só
+         * ela: se escapasse do laço, todas as conexões dele ficariam sem resposta.
+         */
+        private void descartar(ConexaoNio conexao, RuntimeException erro) {
+            System.out.println("Erro ao atender conexão, fechando: " + erro);
+            try {
+                conexao.fechar();
+            } catch (RuntimeException e) {
+                // fechar() avisa o gerenciador, que pode falhar pelo mesmo motivo
+                System.out.println("Erro ao fechar conexão: " + e);
+            }
+        }
+
+        // Lê o que estiver disponível e entrega cada linha completa ao processador
+        private void ler(ConexaoNio conexao) {
+            int lidos;
+            try {
+                leitura.clear();
+                lidos = conexao.getCanal().read(leitura);
+            } catch (IOException e) {
+                conexao.fechar();
+                return;
+            }
+            if (lidos < 0) {
+                conexao.fechar();
+                return;
+            }
+            leitura.flip();
+
+            byte[] dados = leitura.array();
+            int inicio = 0;
+            int fim = leitura.limit();
+            for (int i = 0; i < fim; i++) {
+                if (dados[i] != '\n') {
+                    continue;
+                }
+                boolean completa = conexao.completarLinha(dados, inicio, i, comando);
+                inicio = i + 1;
+                if (!completa) {
+                    conexao.fechar();
+                    return;
+                }
+                if (!ProcessadorComandos.processar(conexao, comando, gerenciador)) {
+                    conexao.fecharAposEnvio();
+                    return;
+                }
+            }
+            if (inicio < fim && !conexao.guardarParcial(dados, inicio, fim)) {
+                conexao.fechar();
+            }
+        }
+    }
+}
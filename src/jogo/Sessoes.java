@@ -0,0 +1,116 @@
+// =================== Sessoes.java ===================
+/**
+ * Tokens de sessão entregues com o INICIO, que permitem retomar a cadeira depois de
+ * uma queda da conexão (comando RETOMAR).
+ *
+ * Formato: "<id da partida>-<B|P>-<sessão><assinatura>", com sessão e assinatura em 16
+ * dígitos hexadecimais cada. A sessão é um número aleatório sorteado para cada ocupante
+ * da cadeira; a assinatura é um HMAC-SHA256 (truncado em 64 bits) da partida, da cor e
+ * da sessão com a chave do servidor. Assim o servidor não precisa guardar os tokens:
+ * basta conferir a assinatura. Com o DiarioPartidas a chave fica num arquivo da pasta do
+ * diário e os tokens continuam valendo para as partidas recuperadas depois de um reinício.
+ */
+
+package jogo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+final class Sessoes {
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final int TAMANHO_CHAVE = 32;
+    static final String ARQUIVO_CHAVE = "sessoes.chave";
+
+    private final SecretKeySpec chave;
+    private final SecureRandom aleatorio = new SecureRandom();
+
+    Sessoes(byte[] chave) {
+        this.chave = new SecretKeySpec(chave, ALGORITMO);
+        // Carrega o provedor de criptografia agora: ele lê arquivos da JVM e, com os
+        // descritores esgotados, falharia na primeira partida, dentro de um laço de E/S
+        assinar(0, true, 1);
+    }
+
+    // Chave só em memória: os tokens deixam de valer quando o servidor reinicia
+    static Sessoes temporarias() {
+        byte[] chave = new byte[TAMANHO_CHAVE];
+        new SecureRandom().nextBytes(chave);
+        return new Sessoes(chave);
+    }
+
+    /**
+     * Lê a chave guardada na pasta, criando-a na primeira vez. A pasta pode ser dividida
+     * pelos nós de um cluster: se vários criam a chave ao mesmo tempo, vale a do primeiro.
+     *
+     * @throws IOException se o arquivo não puder ser lido ou gravado
+     */
+    static Sessoes carregar(Path pasta) throws IOException {
+        Path arquivo = pasta.resolve(ARQUIVO_CHAVE);
+        if (!Files.exists(arquivo)) {
+            byte[] chave = new byte[TAMANHO_CHAVE];
+            new SecureRandom().nextBytes(chave);
+            Files.createDirectories(pasta);
+            Path temporario = Files.createTempFile(pasta, ARQUIVO_CHAVE, ".tmp");
+            try {
+                Files.write(temporario, chave);
+                // Ao contrário de um rename, o link não substitui a chave que outro processo já criou
+                Files.createLink(arquivo, temporario);
+            } catch (FileAlreadyExistsException e) {
+                // Outro processo criou a chave primeiro
+            } finally {
+                Files.delete(temporario);
+            }
+        }
+        byte[] chave = Files.readAllBytes(arquivo);
+        if (chave.length != TAMANHO_CHAVE) {
+            throw new IOException("Chave de sessões inválida: " + arquivo);
+        }
+        return new Sessoes(chave);
+    }
+
+    // Número de sessão para um novo ocupante de cadeira; nunca 0, que marca cadeira sem sessão
+    long novaSessao() {
+        long sessao;
+        do {
+            sessao = aleatorio.nextLong();
+        } while (sessao == 0);
+        return sessao;
+    }
+
+    String token(long partida, boolean brancas, long sessao) {
+        return partida + (brancas ? "-B-" : "-P-") + hex(sessao) + hex(assinar(partida, brancas, sessao));
+    }
+
+    // Confere a assinatura em tempo constante
+    boolean validar(long partida, boolean brancas, long sessao, long assinatura) {
+        byte[] esperada = ByteBuffer.allocate(Long.BYTES).putLong(assinar(partida, brancas, sessao)).array();
+        byte[] recebida = ByteBuffer.allocate(Long.BYTES).putLong(assinatura).array();
+        return MessageDigest.isEqual(esperada, recebida);
+    }
+
+    private long assinar(long partida, boolean brancas, long sessao) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITMO);
+            mac.init(chave);
+            byte[] dados = ByteBuffer.allocate(17).putLong(partida).put((byte) (brancas ? 'B' : 'P')).putLong(sessao)
+                    .array();
+            return ByteBuffer.wrap(mac.doFinal(dados)).getLong();
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 faz parte de toda JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(long valor) {
+        String digitos = Long.toHexString(valor);
+        return "0".repeat(16 - digitos.length()) + digitos;
+    }
+}
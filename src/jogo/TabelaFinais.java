@@ -0,0 +1,281 @@
+// =================== TabelaFinais.java ===================
+/**
+ * Consulta às tabelas de finais geradas pelo GeradorFinais.
+ *
+ * Há um arquivo por material (quantidade de peões e damas de cada cor), mapeado em
+ * memória só para leitura: o sistema operacional carrega as páginas usadas e as
+ * compartilha entre processos. Cada posição ocupa um byte no índice calculado direto
+ * das máscaras do Tabuleiro, então a consulta é O(1) e não aloca nada.
+ *
+ * Índice: as casas de cada grupo de peças (peões brancos, damas brancas, peões pretos,
+ * damas pretas) são numeradas pela ordem combinatória do conjunto de casas escuras que
+ * o grupo pode ocupar (peões nunca estão na própria linha de coroação), e os números
+ * são combinados com a vez de jogar. Índices em que dois grupos se sobrepõem não
+ * correspondem a posições e ficam marcados como FORA_DA_TABELA.
+ *
+ * Valor, do ponto de vista de quem joga: 0 empate; d + 1 vitória em d lances (plies);
+ * -(d + 1) derrota em d lances. As regras de fim de jogo são as de verificarVencedor.
+ *
+ * Arquivo: cabeçalho de 16 bytes (MAGICO, VERSAO, material, quantidade de posições),
+ * seguido de um byte por posição.
+ */
+
+package jogo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class TabelaFinais {
+    public static final int FORA_DA_TABELA = Byte.MIN_VALUE;
+    public static final int EMPATE = 0;
+    // Maior distância que cabe num byte com sinal
+    static final int DISTANCIA_MAXIMA = Byte.MAX_VALUE - 1;
+    // Com mais peças os índices deixam de caber num int
+    public static final int MAX_PECAS = 6;
+
+    static final int MAGICO = 0x44414D46; // "DAMF"
+    static final int VERSAO = 1;
+    static final int TAMANHO_CABECALHO = 16;
+
+    private static final int CASAS = 32;
+    // Casas escuras que um peão pode ocupar: todas menos as da linha de coroação
+    private static final int CASAS_PEAO = 28;
+    private static final int[][] BINOMIAL = new int[CASAS + 1][MAX_PECAS + 1];
+
+    static {
+        for (int n = 0; n <= CASAS; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, MAX_PECAS); k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    // Valores por material (ver material()); null se o material não tem tabela
+    private final ByteBuffer[] tabelas = new ByteBuffer[1 << 12];
+    private int maxPecas;
+
+    TabelaFinais() {
+    }
+
+    /**
+     * Mapeia todas as tabelas ("finais-*.tab") encontradas na pasta.
+     *
+     * @throws IOException se algum arquivo não puder ser lido ou não for uma tabela válida
+     */
+    public static TabelaFinais abrir(Path pasta) throws IOException {
+        TabelaFinais tabela = new TabelaFinais();
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(pasta, "finais-*.tab")) {
+            for (Path arquivo : arquivos) {
+                tabela.carregar(arquivo);
+            }
+        }
+        return tabela;
+    }
+
+    // Mapeia um arquivo gerado e passa a usá-lo nas consultas
+    void carregar(Path arquivo) throws IOException {
+        ByteBuffer dados;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            dados = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        if (dados.capacity() < TAMANHO_CABECALHO || dados.getInt(0) != MAGICO || dados.getInt(4) != VERSAO) {
+            throw new IOException("Arquivo de finais inválido: " + arquivo);
+        }
+        int material = dados.getInt(8);
+        int tamanho = dados.getInt(12);
+        if (material < 0 || material >= tabelas.length || tamanho != tamanho(material)
+                || dados.capacity() != TAMANHO_CABECALHO + tamanho) {
+            throw new IOException("Arquivo de finais inválido: " + arquivo);
+        }
+        adicionar(material, dados.slice(TAMANHO_CABECALHO, tamanho));
+    }
+
+    // Deve ser chamado antes das consultas que dependem desse material
+    void adicionar(int material, ByteBuffer valores) {
+        tabelas[material] = valores;
+        maxPecas = Math.max(maxPecas, pecas(material));
+    }
+
+    // Maior quantidade de peças coberta pelas tabelas carregadas
+    public int getMaxPecas() {
+        return maxPecas;
+    }
+
+    /**
+     * Valor da posição para o jogador da vez (ver a descrição da classe).
+     *
+     * @return FORA_DA_TABELA se o material não tem tabela ou há uma captura em andamento
+     */
+    public int consultar(Tabuleiro tabuleiro) {
+        if (tabuleiro.getUltimoMovimentoX() >= 0) {
+            return FORA_DA_TABELA;
+        }
+        return consultar(tabuleiro.getBrancas(), tabuleiro.getPretas(), tabuleiro.getDamas(),
+                tabuleiro.isVezBrancas());
+    }
+
+    int consultar(long brancas, long pretas, long damas, boolean vezBrancas) {
+        // Quem ficou sem peças já perdeu
+        if (brancas == 0 || pretas == 0) {
+            return (vezBrancas ? brancas : pretas) == 0 ? derrota(0) : vitoria(0);
+        }
+        if (Long.bitCount(brancas | pretas) > maxPecas || (brancas & ~damas & Tabuleiro.LINHA_8) != 0
+                || (pretas & ~damas & Tabuleiro.LINHA_1) != 0) {
+            return FORA_DA_TABELA;
+        }
+        ByteBuffer valores = tabelas[material(brancas, pretas, damas)];
+        if (valores == null) {
+            return FORA_DA_TABELA;
+        }
+        return valores.get(indice(brancas, pretas, damas, vezBrancas));
+    }
+
+    public static boolean isVitoria(int valor) {
+        return valor > 0;
+    }
+
+    public static boolean isDerrota(int valor) {
+        return valor < 0 && valor != FORA_DA_TABELA;
+    }
+
+    // Lances (plies) até o fim do jogo com o melhor jogo dos dois lados; -1 no empate
+    public static int distancia(int valor) {
+        return Math.abs(valor) - 1;
+    }
+
+    static byte vitoria(int distancia) {
+        return (byte) (distancia + 1);
+    }
+
+    static byte derrota(int distancia) {
+        return (byte) -(distancia + 1);
+    }
+
+    // Material: 3 bits para cada quantidade (peões brancos, damas brancas, peões pretos, damas pretas)
+    static int material(int peoesBrancos, int damasBrancas, int peoesPretos, int damasPretas) {
+        return peoesBrancos << 9 | damasBrancas << 6 | peoesPretos << 3 | damasPretas;
+    }
+
+    static int material(long brancas, long pretas, long damas) {
+        return material(Long.bitCount(brancas & ~damas), Long.bitCount(brancas & damas),
+                Long.bitCount(pretas & ~damas), Long.bitCount(pretas & damas));
+    }
+
+    static int peoesBrancos(int material) {
+        return material >>> 9 & 7;
+    }
+
+    static int damasBrancas(int material) {
+        return material >>> 6 & 7;
+    }
+
+    static int peoesPretos(int material) {
+        return material >>> 3 & 7;
+    }
+
+    static int damasPretas(int material) {
+        return material & 7;
+    }
+
+    static int pecas(int material) {
+        return peoesBrancos(material) + damasBrancas(material) + peoesPretos(material) + damasPretas(material);
+    }
+
+    // Quantidade de índices da tabela do material, já contando a vez de jogar
+    static int tamanho(int material) {
+        return BINOMIAL[CASAS_PEAO][peoesBrancos(material)] * BINOMIAL[CASAS][damasBrancas(material)]
+                * BINOMIAL[CASAS_PEAO][peoesPretos(material)] * BINOMIAL[CASAS][damasPretas(material)] * 2;
+    }
+
+    static Path arquivo(Path pasta, int material) {
+        return pasta.resolve(String.format("finais-%d%d%d%d.tab", peoesBrancos(material), damasBrancas(material),
+                peoesPretos(material), damasPretas(material)));
+    }
+
+    // Índice da posição na tabela do seu material
+    static int indice(long brancas, long pretas, long damas, boolean vezBrancas) {
+        long damasBrancas = brancas & damas;
+        long damasPretas = pretas & damas;
+        int indice = posto(escuras(brancas & ~damas));
+        indice = indice * BINOMIAL[CASAS][Long.bitCount(damasBrancas)] + posto(escuras(damasBrancas));
+        // Peões pretos nunca estão na linha 1: as 4 primeiras casas escuras ficam de fora
+        indice = indice * BINOMIAL[CASAS_PEAO][Long.bitCount(pretas & ~damas)] + posto(escuras(pretas & ~damas) >>> 4);
+        indice = indice * BINOMIAL[CASAS][Long.bitCount(damasPretas)] + posto(escuras(damasPretas));
+        return indice * 2 + (vezBrancas ? 0 : 1);
+    }
+
+    /**
+     * Inverso de indice: preenche brancas, pretas e damas (nessa ordem) em "pecas". A vez é
+     * das brancas nos índices pares.
+     *
+     * @return false se o índice não corresponde a uma posição (grupos sobrepostos)
+     */
+    static boolean posicao(int material, int indice, long[] pecas) {
+        indice >>>= 1;
+        int quantidade = damasPretas(material);
+        int divisor = BINOMIAL[CASAS][quantidade];
+        long damasPretas = casas(indice % divisor, quantidade, 0);
+        indice /= divisor;
+        quantidade = peoesPretos(material);
+        divisor = BINOMIAL[CASAS_PEAO][quantidade];
+        long peoesPretos = casas(indice % divisor, quantidade, 4);
+        indice /= divisor;
+        quantidade = damasBrancas(material);
+        divisor = BINOMIAL[CASAS][quantidade];
+        long damasBrancas = casas(indice % divisor, quantidade, 0);
+        indice /= divisor;
+        long peoesBrancos = casas(indice, peoesBrancos(material), 0);
+
+        long[] grupos = { peoesBrancos, damasBrancas, peoesPretos, damasPretas };
+        long ocupadas = 0;
+        for (long grupo : grupos) {
+            if ((ocupadas & grupo) != 0) {
+                return false;
+            }
+            ocupadas |= grupo;
+        }
+        pecas[0] = peoesBrancos | damasBrancas;
+        pecas[1] = peoesPretos | damasPretas;
+        pecas[2] = damasBrancas | damasPretas;
+        return true;
+    }
+
+    // Casas escuras (bit x * 8 + y) como máscara de 32 bits, uma por índice de casa escura
+    private static int escuras(long casas) {
+        int resultado = 0;
+        for (long m = casas; m != 0; m &= m - 1) {
+            resultado |= 1 << (Long.numberOfTrailingZeros(m) >>> 1);
+        }
+        return resultado;
+    }
+
+    // Posição do conjunto na ordem combinatória (colex)
+    private static int posto(int conjunto) {
+        int posto = 0;
+        int k = 1;
+        for (int m = conjunto; m != 0; m &= m - 1) {
+            posto += BINOMIAL[Integer.numberOfTrailingZeros(m)][k++];
+        }
+        return posto;
+    }
+
+    // Inverso de posto, já convertido em casas do tabuleiro; "deslocamento" é a primeira casa escura do domínio
+    private static long casas(int posto, int quantidade, int deslocamento) {
+        long resultado = 0;
+        int p = CASAS - 1;
+        for (int k = quantidade; k > 0; k--) {
+            while (BINOMIAL[p][k] > posto) {
+                p--;
+            }
+            posto -= BINOMIAL[p][k];
+            resultado |= 1L << GeradorMovimentos.casaEscura(p + deslocamento);
+        }
+        return resultado;
+    }
+}
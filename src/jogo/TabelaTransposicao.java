@@ -0,0 +1,109 @@
+// =================== TabelaTransposicao.java ===================
+/**
+ * Tabela de transposição de tamanho fixo, sem locks, indexada pelo hash de Zobrist.
+ *
+ * Cada entrada ocupa duas posições em vetores de long: os dados empacotados e a
+ * chave guardada como (hash XOR dados). Várias threads podem ler e gravar ao mesmo
+ * tempo; se uma leitura pegar uma entrada escrita pela metade, o XOR não confere e
+ * ela é tratada como ausente, o que basta para uma cache de busca.
+ *
+ * Formato dos dados:
+ *   bits 0-15  valor (com sinal)
+ *   bits 16-23 profundidade
+ *   bits 24-25 tipo do valor (EXATO, INFERIOR ou SUPERIOR; nunca zero)
+ *   bits 26-43 melhor lance (origem, primeiro passo e destino, 6 bits cada)
+ *   bits 44-51 geração da busca que gravou a entrada
+ */
+
+package jogo;
+
+import java.util.Arrays;
+
+public final class TabelaTransposicao {
+    public static final int EXATO = 1;
+    public static final int INFERIOR = 2;
+    public static final int SUPERIOR = 3;
+
+    private final long[] chaves;
+    private final long[] dados;
+    private final int mascara;
+    private volatile int geracao;
+
+    /**
+     * @param megabytes Memória aproximada da tabela; o número de entradas é arredondado
+     *                  para baixo até uma potência de 2
+     */
+    public TabelaTransposicao(int megabytes) {
+        long entradas = Math.max(1024, (long) megabytes * 1024 * 1024 / 16);
+        int tamanho = Integer.highestOneBit((int) Math.min(entradas, 1 << 30));
+        chaves = new long[tamanho];
+        dados = new long[tamanho];
+        mascara = tamanho - 1;
+    }
+
+    // Marca o início de uma nova busca; entradas de buscas anteriores passam a ser substituíveis
+    public void novaBusca() {
+        geracao = (geracao + 1) & 0xFF;
+    }
+
+    /**
+     * @return Os dados guardados para a posição, ou 0 se ela não estiver na tabela
+     */
+    public long sondar(long hash) {
+        int indice = (int) hash & mascara;
+        long d = dados[indice];
+        return (chaves[indice] ^ d) == hash ? d : 0;
+    }
+
+    public void guardar(long hash, int profundidade, int valor, int tipo, long lance) {
+        int indice = (int) hash & mascara;
+        long atual = dados[indice];
+        boolean mesmaPosicao = (chaves[indice] ^ atual) == hash;
+        // Mantém a entrada mais profunda da busca atual, exceto quando é a mesma posição
+        if (atual != 0 && !mesmaPosicao && geracao(atual) == geracao && profundidade(atual) > profundidade) {
+            return;
+        }
+        long d = (valor & 0xFFFFL)
+                | ((long) Math.min(profundidade, 255) << 16)
+                | ((long) tipo << 24)
+                | (compactarLance(lance) << 26)
+                | ((long) geracao << 44);
+        dados[indice] = d;
+        chaves[indice] = hash ^ d;
+    }
+
+    public void limpar() {
+        Arrays.fill(chaves, 0);
+        Arrays.fill(dados, 0);
+    }
+
+    public static int valor(long dados) {
+        return (short) dados;
+    }
+
+    public static int profundidade(long dados) {
+        return (int) (dados >>> 16) & 0xFF;
+    }
+
+    public static int tipo(long dados) {
+        return (int) (dados >>> 24) & 3;
+    }
+
+    private static int geracao(long dados) {
+        return (int) (dados >>> 44) & 0xFF;
+    }
+
+    // Verdadeiro se o lance gerado é o melhor lance guardado nos dados
+    public static boolean isMelhorLance(long dados, long lance) {
+        return lance != 0 && ((dados >>> 26) & 0x3FFFF) == compactarLance(lance);
+    }
+
+    private static long compactarLance(long lance) {
+        if (lance == 0) {
+            return 0;
+        }
+        return GeradorMovimentos.origem(lance)
+                | (GeradorMovimentos.primeiroPasso(lance) << 6)
+                | ((long) GeradorMovimentos.destino(lance) << 12);
+    }
+}
@@ -1,19 +1,51 @@
 package jogo;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Tabuleiro {
     public static final int TAMANHO = 8;
     public static final String RESET = "\u001B[0m";
     public static final String DESTAQUE = "\u001B[33m";
-
-    private TipoPeca[][] casas;
+    // Bytes da codificação compacta: 1 bit de turno + 32 casas escuras x 3 bits = 97 bits
+    public static final int TAMANHO_COMPACTO = 13;
+
+    // Bitboards: a casa (x, y) corresponde ao bit x * 8 + y. Só as 32 casas escuras são usadas.
+    static final long CASAS_ESCURAS = calcularCasasEscuras();
+    static final long COLUNA_A = 0x0101010101010101L;
+    static final long COLUNA_H = 0x8080808080808080L;
+    static final long LINHA_1 = 0x00000000000000FFL;
+    static final long LINHA_8 = 0xFF00000000000000L;
+
+    // Direções diagonais, na ordem usada pelos deslocamentos: (+1,-1), (+1,+1), (-1,-1), (-1,+1)
+    static final int SUDOESTE = 0;
+    static final int SUDESTE = 1;
+    static final int NOROESTE = 2;
+    static final int NORDESTE = 3;
+    static final int[] DIRECAO_X = { 1, 1, -1, -1 };
+    static final int[] DIRECAO_Y = { -1, 1, -1, 1 };
+    private static final short[] SEM_JOGADAS = new short[0];
+
+    private long brancas;
+    private long pretas;
+    private long damas;
     private boolean vezBrancas;
+    // Hash de Zobrist da posição, atualizado a cada alteração das casas ou do turno
+    private long hash;
     private int ultimoMovimentoX = -1;
     private int ultimoMovimentoY = -1;
-    private List<String> historico;
-    private List<TabuleiroObserver> observers = new ArrayList<>();
+    // Resultado de verificarVencedor para as casas guardadas aqui; -1 nunca é uma posição válida
+    private long resumoBrancas = -1;
+    private long resumoPretas = -1;
+    private long resumoDamas = -1;
+    private int resumoVencedor;
+    // Jogadas feitas com moverPeca, no formato de HistoricoJogadas; só cresce (ver getHistorico)
+    private short[] historico = SEM_JOGADAS;
+    private int quantidadeJogadas;
+    // Observadores recebem os eventos de moverPeca pelo BarramentoEventos, em outra thread
+    private final List<TabuleiroObserver> observers = new CopyOnWriteArrayList<>();
 
     public enum TipoPeca {
         VAZIO('·'),
@@ -46,24 +78,54 @@ public class Tabuleiro {
     }
 
     public Tabuleiro() {
-        casas = new TipoPeca[TAMANHO][TAMANHO];
         vezBrancas = true;
-        historico = new ArrayList<>();
         inicializarTabuleiro();
     }
 
+    // Cópia só da posição (casas, turno e captura em andamento), sem histórico nem observadores
+    Tabuleiro(Tabuleiro outro) {
+        copiarPosicao(outro);
+    }
+
+    // Tabuleiro de trabalho a partir de um retrato publicado pela partida (ver PosicaoTabuleiro)
+    Tabuleiro(PosicaoTabuleiro posicao) {
+        restaurar(posicao.getBrancas(), posicao.getPretas(), posicao.getDamas(), posicao.isVezBrancas(),
+                posicao.getHash());
+        ultimoMovimentoX = posicao.getCapturaX();
+        ultimoMovimentoY = posicao.getCapturaY();
+    }
+
+    void copiarPosicao(Tabuleiro outro) {
+        brancas = outro.brancas;
+        pretas = outro.pretas;
+        damas = outro.damas;
+        vezBrancas = outro.vezBrancas;
+        hash = outro.hash;
+        ultimoMovimentoX = outro.ultimoMovimentoX;
+        ultimoMovimentoY = outro.ultimoMovimentoY;
+    }
+
+    // Volta a uma posição salva antes de aplicarLance (usado para desfazer lances na busca)
+    void restaurar(long brancas, long pretas, long damas, boolean vezBrancas, long hash) {
+        this.brancas = brancas;
+        this.pretas = pretas;
+        this.damas = damas;
+        this.vezBrancas = vezBrancas;
+        this.hash = hash;
+        ultimoMovimentoX = -1;
+        ultimoMovimentoY = -1;
+    }
+
     private void inicializarTabuleiro() {
-        for (int i = 0; i < TAMANHO; i++) {
-            for (int j = 0; j < TAMANHO; j++) {
-                casas[i][j] = TipoPeca.VAZIO;
-            }
-        }
+        brancas = 0;
+        pretas = 0;
+        damas = 0;
 
         // Peças brancas (linhas 0-2)
         for (int i = 0; i < 3; i++) {
             for (int j = 0; j < TAMANHO; j++) {
                 if ((i + j) % 2 != 0) {
-                    casas[i][j] = TipoPeca.PEAO_BRANCO;
+                    definirCasa(i, j, TipoPeca.PEAO_BRANCO);
                 }
             }
         }
@@ -72,23 +134,119 @@ public class Tabuleiro {
         for (int i = 5; i < TAMANHO; i++) {
             for (int j = 0; j < TAMANHO; j++) {
                 if ((i + j) % 2 != 0) {
-                    casas[i][j] = TipoPeca.PEAO_PRETO;
+                    definirCasa(i, j, TipoPeca.PEAO_PRETO);
+                }
+            }
+        }
+    }
+
+    private static long calcularCasasEscuras() {
+        long mascara = 0;
+        for (int i = 0; i < TAMANHO; i++) {
+            for (int j = 0; j < TAMANHO; j++) {
+                if ((i + j) % 2 != 0) {
+                    mascara |= bit(i, j);
                 }
             }
         }
+        return mascara;
+    }
+
+    static long bit(int x, int y) {
+        return 1L << (x * TAMANHO + y);
+    }
+
+    // Desloca todas as peças da máscara uma casa na direção indicada, descartando as que saem do tabuleiro
+    static long deslocar(long mascara, int direcao) {
+        switch (direcao) {
+            case SUDOESTE:
+                return (mascara & ~COLUNA_A) << 7;
+            case SUDESTE:
+                return (mascara & ~COLUNA_H) << 9;
+            case NOROESTE:
+                return (mascara & ~COLUNA_A) >>> 9;
+            default:
+                return (mascara & ~COLUNA_H) >>> 7;
+        }
+    }
+
+    // Retorna a peça que ocupa a casa (x, y)
+    TipoPeca casa(int x, int y) {
+        return tipoNoBit(bit(x, y));
+    }
+
+    private TipoPeca tipoNoBit(long b) {
+        return tipoNoBit(brancas, pretas, damas, b);
+    }
+
+    // Peça no bit b das máscaras dadas; compartilhado com PosicaoTabuleiro
+    static TipoPeca tipoNoBit(long brancas, long pretas, long damas, long b) {
+        if ((brancas & b) != 0) {
+            return (damas & b) != 0 ? TipoPeca.DAMA_BRANCA : TipoPeca.PEAO_BRANCO;
+        }
+        if ((pretas & b) != 0) {
+            return (damas & b) != 0 ? TipoPeca.DAMA_PRETA : TipoPeca.PEAO_PRETO;
+        }
+        return TipoPeca.VAZIO;
+    }
+
+    // Coloca a peça na casa (x, y), substituindo o que houver nela
+    private void definirCasa(int x, int y, TipoPeca peca) {
+        long b = bit(x, y);
+        hash ^= Zobrist.chave(tipoNoBit(b), x * TAMANHO + y) ^ Zobrist.chave(peca, x * TAMANHO + y);
+        brancas &= ~b;
+        pretas &= ~b;
+        damas &= ~b;
+        if (peca.isBranca()) {
+            brancas |= b;
+        } else if (peca.isPreta()) {
+            pretas |= b;
+        }
+        if (peca.isDama()) {
+            damas |= b;
+        }
+    }
+
+    long getBrancas() {
+        return brancas;
+    }
+
+    long getPretas() {
+        return pretas;
+    }
+
+    long getDamas() {
+        return damas;
     }
 
     public void addObserver(TabuleiroObserver observer) {
+        BarramentoEventos.padrao();
         observers.add(observer);
     }
 
-    private void notificarObservers(String mensagem) {
-        for (TabuleiroObserver observer : observers) {
-            observer.atualizar(this, mensagem);
+    public void removeObserver(TabuleiroObserver observer) {
+        observers.remove(observer);
+    }
+
+    List<TabuleiroObserver> getObservers() {
+        return observers;
+    }
+
+    // Só publica se houver observadores; sem eles, moverPeca não faz nenhum trabalho extra
+    private void notificarObservers(EventoTabuleiro.Tipo tipo, int origem, int destino, int capturada) {
+        if (!observers.isEmpty()) {
+            BarramentoEventos.padrao().publicar(tipo, this, origem, destino, capturada, vezBrancas);
         }
     }
 
+    // Visão do tabuleiro como matriz 8x8; é uma cópia, alterá-la não afeta o jogo
     public TipoPeca[][] getCasas() {
+        TipoPeca[][] casas = new TipoPeca[TAMANHO][TAMANHO];
+        for (int i = 0; i < TAMANHO; i++) {
+            for (int j = 0; j < TAMANHO; j++) {
+                casas[i][j] = casa(i, j);
+            }
+        }
         return casas;
     }
 
@@ -104,84 +262,98 @@ public class Tabuleiro {
         return x >= 0 && x < TAMANHO && y >= 0 && y < TAMANHO;
     }
 
+    /**
+     * @return 1 se as brancas venceram, 2 se as pretas venceram, 0 se o jogo continua.
+     *         O resultado é guardado e só recalculado depois que alguma casa mudar.
+     */
     public int verificarVencedor() {
-        boolean brancasTemPecas = false;
-        boolean pretasTemPecas = false;
-
-        for (int i = 0; i < TAMANHO; i++) {
-            for (int j = 0; j < TAMANHO; j++) {
-                TipoPeca peca = casas[i][j];
-                if (peca.isBranca()) {
-                    brancasTemPecas = true;
-                } else if (peca.isPreta()) {
-                    pretasTemPecas = true;
-                }
-            }
+        if (brancas != resumoBrancas || pretas != resumoPretas || damas != resumoDamas) {
+            resumoVencedor = calcularVencedor();
+            resumoBrancas = brancas;
+            resumoPretas = pretas;
+            resumoDamas = damas;
         }
+        return resumoVencedor;
+    }
 
-        if (!brancasTemPecas)
+    private int calcularVencedor() {
+        if (brancas == 0)
             return 2;
-        if (!pretasTemPecas)
+        if (pretas == 0)
             return 1;
 
-        boolean brancasTemMovimentos = false;
-        boolean pretasTemMovimentos = false;
-
-        for (int i = 0; i < TAMANHO; i++) {
-            for (int j = 0; j < TAMANHO; j++) {
-                TipoPeca peca = casas[i][j];
-                if (peca.isBranca() && podeMover(i, j)) {
-                    brancasTemMovimentos = true;
-                } else if (peca.isPreta() && podeMover(i, j)) {
-                    pretasTemMovimentos = true;
-                }
-            }
-        }
-
-        if (!brancasTemMovimentos)
+        if (!temMovimentos(true))
             return 2;
-        if (!pretasTemMovimentos)
+        if (!temMovimentos(false))
             return 1;
 
         return 0;
     }
 
-    private boolean podeMover(int x, int y) {
-        TipoPeca peca = casas[x][y];
-        int[][] direcoes;
+    // Verdadeiro se alguma peça da cor pode andar uma casa ou saltar uma peça adversária
+    private boolean temMovimentos(boolean corBranca) {
+        long proprias = corBranca ? brancas : pretas;
+        long adversarias = corBranca ? pretas : brancas;
+        long vazias = CASAS_ESCURAS & ~(brancas | pretas);
 
-        if (peca.isDama()) {
-            direcoes = new int[][] { { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 } };
-        } else {
-            direcoes = peca.isBranca() ? new int[][] { { 1, -1 }, { 1, 1 } } : new int[][] { { -1, -1 }, { -1, 1 } };
+        for (int direcao = 0; direcao < 4; direcao++) {
+            long pecas = podeAndarPara(proprias, corBranca, direcao);
+            long vizinhas = deslocar(pecas, direcao);
+            if ((vizinhas & vazias) != 0
+                    || (deslocar(vizinhas & adversarias, direcao) & vazias) != 0) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        for (int[] dir : direcoes) {
-            int novoX = x + dir[0];
-            int novoY = y + dir[1];
+    // Peças da máscara que podem se mover na direção: damas em todas, peões só para frente
+    private long podeAndarPara(long pecas, boolean corBranca, int direcao) {
+        boolean paraFrente = corBranca ? DIRECAO_X[direcao] > 0 : DIRECAO_X[direcao] < 0;
+        return paraFrente ? pecas : pecas & damas;
+    }
 
-            if (estaDentroTabuleiro(novoX, novoY) && casas[novoX][novoY] == TipoPeca.VAZIO) {
-                return true;
+    // Verdadeiro se alguma das peças da máscara pode capturar (peões saltam a vizinha; damas voam)
+    private boolean podemCapturar(long pecas, boolean corBranca) {
+        long adversarias = corBranca ? pretas : brancas;
+        long vazias = CASAS_ESCURAS & ~(brancas | pretas);
+
+        for (int direcao = 0; direcao < 4; direcao++) {
+            long alcance = deslocar(podeAndarPara(pecas, corBranca, direcao), direcao);
+
+            // Damas deslizam pelas casas vazias até encontrar a primeira peça
+            long frente = deslocar(pecas & damas, direcao);
+            while (frente != 0) {
+                frente = deslocar(frente & vazias, direcao);
+                alcance |= frente;
             }
 
-            int capturaX = x + 2 * dir[0];
-            int capturaY = y + 2 * dir[1];
-            if (estaDentroTabuleiro(capturaX, capturaY) && casas[capturaX][capturaY] == TipoPeca.VAZIO) {
-                int meioX = x + dir[0];
-                int meioY = y + dir[1];
-                TipoPeca pecaMeio = casas[meioX][meioY];
-
-                if (pecaMeio != TipoPeca.VAZIO &&
-                        ((peca.isBranca() && pecaMeio.isPreta()) ||
-                                (peca.isPreta() && pecaMeio.isBranca()))) {
-                    return true;
-                }
+            if ((deslocar(alcance & adversarias, direcao) & vazias) != 0) {
+                return true;
             }
         }
-
         return false;
     }
 
+    // Casa (x * 8 + y) da única peça adversária entre origem e destino, ou -1 se não houver
+    private int casaCapturada(int xOrigem, int yOrigem, int xDestino, int yDestino, boolean corBranca) {
+        int distancia = Math.abs(xDestino - xOrigem);
+        if (distancia < 2) {
+            return -1;
+        }
+        int passoX = (xDestino - xOrigem) / distancia;
+        int passoY = (yDestino - yOrigem) / distancia;
+        long adversarias = corBranca ? pretas : brancas;
+        for (int i = 1; i < distancia; i++) {
+            int x = xOrigem + i * passoX;
+            int y = yOrigem + i * passoY;
+            if ((adversarias & bit(x, y)) != 0) {
+                return x * TAMANHO + y;
+            }
+        }
+        return -1;
+    }
+
     private boolean validarMovimentoPeao(int xOrigem, int yOrigem, int xDestino, int yDestino,
             int dirX, int dirY, int distancia) {
         if (distancia != 1 && distancia != 2) {
@@ -201,7 +373,7 @@ public class Tabuleiro {
         }
 
         if (distancia == 1) {
-            return casas[xDestino][yDestino] == TipoPeca.VAZIO;
+            return casa(xDestino, yDestino) == TipoPeca.VAZIO;
         } else if (distancia == 2) {
             return validarCapturaPeao(xOrigem, yOrigem, xDestino, yDestino, dirX, dirY);
         }
@@ -214,7 +386,7 @@ public class Tabuleiro {
         int xMeio = xOrigem + dirX / 2;
         int yMeio = yOrigem + dirY / 2;
 
-        TipoPeca pecaMeio = casas[xMeio][yMeio];
+        TipoPeca pecaMeio = casa(xMeio, yMeio);
         if (pecaMeio == TipoPeca.VAZIO ||
                 (vezBrancas && !pecaMeio.isPreta()) ||
                 (!vezBrancas && !pecaMeio.isBranca())) {
@@ -236,7 +408,7 @@ public class Tabuleiro {
         for (int i = 1; i < distancia; i++) {
             int x = xOrigem + i * passoX;
             int y = yOrigem + i * passoY;
-            TipoPeca casa = casas[x][y];
+            TipoPeca casa = casa(x, y);
 
             if (casa != TipoPeca.VAZIO) {
                 if ((vezBrancas && casa.isBranca()) ||
@@ -254,7 +426,7 @@ public class Tabuleiro {
             return false;
         }
 
-        TipoPeca peca = casas[xOrigem][yOrigem];
+        TipoPeca peca = casa(xOrigem, yOrigem);
         if (peca == TipoPeca.VAZIO) {
             return false;
         }
@@ -264,7 +436,7 @@ public class Tabuleiro {
             return false;
         }
 
-        if (casas[xDestino][yDestino] != TipoPeca.VAZIO) {
+        if (casa(xDestino, yDestino) != TipoPeca.VAZIO) {
             return false;
         }
 
@@ -272,95 +444,145 @@ public class Tabuleiro {
         int dirY = yDestino - yOrigem;
         int distancia = Math.max(Math.abs(dirX), Math.abs(dirY));
 
+        boolean valido;
         if (peca.isDama()) {
-            return validarMovimentoDama(xOrigem, yOrigem, xDestino, yDestino, dirX, dirY, distancia);
+            valido = validarMovimentoDama(xOrigem, yOrigem, xDestino, yDestino, dirX, dirY, distancia);
         } else {
-            return validarMovimentoPeao(xOrigem, yOrigem, xDestino, yDestino, dirX, dirY, distancia);
+            valido = validarMovimentoPeao(xOrigem, yOrigem, xDestino, yDestino, dirX, dirY, distancia);
+        }
+        if (!valido) {
+            return false;
+        }
+
+        // No meio de uma captura múltipla só a peça que capturou pode jogar, e capturando
+        boolean captura = casaCapturada(xOrigem, yOrigem, xDestino, yDestino, vezBrancas) >= 0;
+        if (ultimoMovimentoX >= 0) {
+            return captura && xOrigem == ultimoMovimentoX && yOrigem == ultimoMovimentoY;
         }
+
+        // Captura obrigatória: havendo captura disponível, movimentos simples não valem
+        return captura || !verificarCapturaObrigatoria();
     }
 
     public boolean moverPeca(int xOrigem, int yOrigem, int xDestino, int yDestino) {
-        TipoPeca peca = casas[xOrigem][yOrigem];
-        boolean capturaRealizada = Math.abs(xDestino - xOrigem) == 2;
+        TipoPeca peca = casa(xOrigem, yOrigem);
+        int capturada = casaCapturada(xOrigem, yOrigem, xDestino, yDestino, peca.isBranca());
+        boolean capturaRealizada = capturada >= 0;
         boolean eraDamaAntes = peca.isDama();
 
+        int origem = xOrigem * TAMANHO + yOrigem;
+        int destino = xDestino * TAMANHO + yDestino;
+        int jogada = origem | destino << 6 | (peca.isBranca() ? 0 : HistoricoJogadas.PRETAS);
+
         if (capturaRealizada) {
-            int xCapturada = (xOrigem + xDestino) / 2;
-            int yCapturada = (yOrigem + yDestino) / 2;
-            casas[xCapturada][yCapturada] = TipoPeca.VAZIO;
-            notificarObservers("Peça capturada!");
+            definirCasa(capturada / TAMANHO, capturada % TAMANHO, TipoPeca.VAZIO);
+            notificarObservers(EventoTabuleiro.Tipo.CAPTURA, origem, destino, capturada);
+            jogada |= HistoricoJogadas.CAPTURA;
         }
 
-        casas[xDestino][yDestino] = peca;
-        casas[xOrigem][yOrigem] = TipoPeca.VAZIO;
+        definirCasa(xOrigem, yOrigem, TipoPeca.VAZIO);
+        definirCasa(xDestino, yDestino, peca);
         verificarCoroada(xDestino, yDestino);
 
-        if (casas[xDestino][yDestino].isDama() && !eraDamaAntes) {
-            notificarObservers("Peça coroada a Dama!");
+        if (casa(xDestino, yDestino).isDama() && !eraDamaAntes) {
+            notificarObservers(EventoTabuleiro.Tipo.COROACAO, origem, destino, -1);
+            jogada |= HistoricoJogadas.COROACAO;
         }
+        registrarJogada(jogada);
 
         if (capturaRealizada && podeCapturar(xDestino, yDestino)) {
             setUltimoMovimentoX(xDestino);
             setUltimoMovimentoY(yDestino);
-            notificarObservers("Peça capturada!");
-            notificarObservers(DESTAQUE + "Continue capturando com a peça em " +
-                    (char) ('A' + yDestino) + (xDestino + 1) + RESET);
+            notificarObservers(EventoTabuleiro.Tipo.CONTINUACAO, origem, destino, -1);
         } else {
             alternarTurno();
             setUltimoMovimentoX(-1);
-            notificarObservers("Movimento realizado");
-            notificarObservers("Turno alternado para " + (vezBrancas ? "brancas" : "pretas"));
+            setUltimoMovimentoY(-1);
+            notificarObservers(EventoTabuleiro.Tipo.MOVIMENTO, origem, destino, -1);
+            notificarObservers(EventoTabuleiro.Tipo.TURNO, -1, -1, -1);
         }
 
         return capturaRealizada;
     }
 
     private void verificarCoroada(int x, int y) {
-        TipoPeca peca = casas[x][y];
-        if ((peca == TipoPeca.PEAO_BRANCO && x == TAMANHO - 1) ||
-                (peca == TipoPeca.PEAO_PRETO && x == 0)) {
-            casas[x][y] = peca == TipoPeca.PEAO_BRANCO ? TipoPeca.DAMA_BRANCA : TipoPeca.DAMA_PRETA;
+        // Peões brancos viram dama na última linha; pretos, na primeira
+        long b = bit(x, y);
+        if ((b & ((brancas & LINHA_8) | (pretas & LINHA_1))) != 0 && (damas & b) == 0) {
+            TipoPeca peao = tipoNoBit(b);
+            damas |= b;
+            hash ^= Zobrist.chave(peao, x * TAMANHO + y) ^ Zobrist.chave(tipoNoBit(b), x * TAMANHO + y);
         }
     }
 
     private void alternarTurno() {
         vezBrancas = !vezBrancas;
+        hash ^= Zobrist.VEZ_PRETAS;
     }
 
-    public boolean podeCapturar(int x, int y) {
-        TipoPeca peca = casas[x][y];
-        int[][] direcoes;
+    public long getHash() {
+        return hash;
+    }
 
-        if (peca.isDama()) {
-            direcoes = new int[][] { { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 } };
-        } else {
-            direcoes = peca.isBranca() ? new int[][] { { 1, -1 }, { 1, 1 } } : new int[][] { { -1, -1 }, { -1, 1 } };
-        }
+    // Substitui a posição pelas máscaras dadas, sem captura em andamento
+    void carregarPosicao(long brancas, long pretas, long damas, boolean vezBrancas) {
+        restaurar(brancas, pretas, damas & (brancas | pretas), vezBrancas, 0);
+        recalcularHash();
+    }
 
-        for (int[] dir : direcoes) {
-            int xAlvo = x + 2 * dir[0];
-            int yAlvo = y + 2 * dir[1];
+    // Recalcula o hash do zero; usado quando a posição é carregada de uma vez
+    private void recalcularHash() {
+        hash = vezBrancas ? 0 : Zobrist.VEZ_PRETAS;
+        for (long m = brancas | pretas; m != 0; m &= m - 1) {
+            int casa = Long.numberOfTrailingZeros(m);
+            hash ^= Zobrist.chave(tipoNoBit(1L << casa), casa);
+        }
+    }
 
-            if (estaDentroTabuleiro(xAlvo, yAlvo) && validarMovimento(x, y, xAlvo, yAlvo)) {
-                return true;
-            }
+    public boolean podeCapturar(int x, int y) {
+        long b = bit(x, y);
+        if ((brancas & b) != 0) {
+            return podemCapturar(b, true);
+        }
+        if ((pretas & b) != 0) {
+            return podemCapturar(b, false);
         }
         return false;
     }
 
     public boolean verificarCapturaObrigatoria() {
-        for (int i = 0; i < TAMANHO; i++) {
-            for (int j = 0; j < TAMANHO; j++) {
-                TipoPeca peca = casas[i][j];
-                if ((vezBrancas && peca.isBranca()) ||
-                        (!vezBrancas && peca.isPreta())) {
-                    if (podeCapturar(i, j)) {
-                        return true;
-                    }
-                }
-            }
+        return podemCapturar(vezBrancas ? brancas : pretas, vezBrancas);
+    }
+
+    // Aplica um lance completo produzido pelo GeradorMovimentos, sem histórico nem observadores
+    void aplicarLance(long lance) {
+        long origem = 1L << GeradorMovimentos.origem(lance);
+        long destino = 1L << GeradorMovimentos.destino(lance);
+        long capturadas = GeradorMovimentos.capturadas(lance);
+        boolean dama = (damas & origem) != 0 || GeradorMovimentos.isCoroacao(lance);
+
+        int casaOrigem = GeradorMovimentos.origem(lance);
+        hash ^= Zobrist.chave(tipoNoBit(origem), casaOrigem)
+                ^ Zobrist.chave(PecaFactory.criarPeca(vezBrancas, dama), GeradorMovimentos.destino(lance));
+        for (long m = capturadas; m != 0; m &= m - 1) {
+            int casa = Long.numberOfTrailingZeros(m);
+            hash ^= Zobrist.chave(tipoNoBit(1L << casa), casa);
         }
-        return false;
+
+        if (vezBrancas) {
+            brancas = (brancas & ~origem) | destino;
+            pretas &= ~capturadas;
+        } else {
+            pretas = (pretas & ~origem) | destino;
+            brancas &= ~capturadas;
+        }
+        damas &= ~(origem | capturadas);
+        if (dama) {
+            damas |= destino;
+        }
+        alternarTurno();
+        ultimoMovimentoX = -1;
+        ultimoMovimentoY = -1;
     }
 
     public void imprimirTabuleiro() {
@@ -368,66 +590,71 @@ public class Tabuleiro {
     for (int i = 0; i < TAMANHO; i++) {
         System.out.printf("%d  ", i + 1);
         for (int j = 0; j < TAMANHO; j++) {
-            System.out.print(casas[i][j].getSimbolo() + " ");
+            System.out.print(casa(i, j).getSimbolo() + " ");
         }
         System.out.println();
     }
 }
 
 
+    // Contagens direto das máscaras: cada uma é uma única instrução (popcount)
+    public int getQuantidadePecas(boolean corBranca) {
+        return Long.bitCount(corBranca ? brancas : pretas);
+    }
+
+    public int getQuantidadeDamas(boolean corBranca) {
+        return Long.bitCount((corBranca ? brancas : pretas) & damas);
+    }
+
     public void mostrarContagem() {
-        int brancas = 0, pretas = 0;
-        for (TipoPeca[] linha : casas) {
-            for (TipoPeca peca : linha) {
-                if (peca.isBranca())
-                    brancas++;
-                else if (peca.isPreta())
-                    pretas++;
-            }
-        }
-        System.out.printf("Peças Brancas: %d | Peças Pretas: %d\n", brancas, pretas);
+        System.out.printf("Peças Brancas: %d (%d damas) | Peças Pretas: %d (%d damas)\n", getQuantidadePecas(true),
+                getQuantidadeDamas(true), getQuantidadePecas(false), getQuantidadeDamas(false));
     }
 
     public void mostrarHistorico() {
         System.out.println("\nHistórico de Jogadas:");
-        for (String jogada : historico) {
-            System.out.println(jogada);
+        HistoricoJogadas jogadas = getHistorico();
+        for (int i = 0; i < jogadas.getQuantidade(); i++) {
+            System.out.println(jogadas.formatar(i));
         }
     }
 
-    public List<String> getHistorico() {
-        return historico;
+    /**
+     * Histórico até aqui, em O(1). Deve ser obtido com o lock da partida; depois pode ser
+     * lido sem ele, já que as próximas jogadas não alteram o que a cópia enxerga. Quem
+     * não tem o lock usa o do último retrato publicado (Partida.getPosicao()).
+     */
+    public HistoricoJogadas getHistorico() {
+        return new HistoricoJogadas(historico, quantidadeJogadas);
     }
 
     public static int[] converterCoordenada(String coord) {
-        if (coord == null || coord.length() != 2)
-            return null;
-
-        try {
-            int linha = Integer.parseInt(coord.substring(0, 1)) - 1;
-            char colunaChar = Character.toUpperCase(coord.charAt(1));
-            int coluna = colunaChar - 'A';
-
-            if (linha < 0 || linha >= TAMANHO || coluna < 0 || coluna >= TAMANHO) {
-                return null;
-            }
-            return new int[] { linha, coluna };
-        } catch (Exception e) {
+        int casa = CodecComandos.casa(coord);
+        if (casa < 0) {
             return null;
         }
+        return new int[] { casa / TAMANHO, casa % TAMANHO };
     }
 
-    public void registrarJogada(String jogada) {
-        historico.add((vezBrancas ? "Brancas" : "Pretas") + ": " + jogada);
+    // Acrescenta ao fim; ao crescer o vetor é trocado, nunca alterado antes de quantidadeJogadas
+    private void registrarJogada(int jogada) {
+        if (quantidadeJogadas == historico.length) {
+            historico = Arrays.copyOf(historico, Math.max(16, historico.length * 2));
+        }
+        historico[quantidadeJogadas++] = (short) jogada;
     }
 
     public String serializar() {
+        return serializar(brancas, pretas, damas, vezBrancas);
+    }
+
+    static String serializar(long brancas, long pretas, long damas, boolean vezBrancas) {
         StringBuilder sb = new StringBuilder();
         sb.append(vezBrancas ? "1" : "0").append(";");
 
         for (int i = 0; i < TAMANHO; i++) {
             for (int j = 0; j < TAMANHO; j++) {
-                sb.append(casas[i][j].name()).append(",");
+                sb.append(tipoNoBit(brancas, pretas, damas, bit(i, j)).name()).append(",");
             }
         }
 
@@ -439,12 +666,13 @@ public class Tabuleiro {
         Tabuleiro tabuleiro = new Tabuleiro();
 
         tabuleiro.vezBrancas = partes[0].equals("1");
+        tabuleiro.recalcularHash();
 
         String[] casasArray = partes[1].split(",");
         int index = 0;
         for (int i = 0; i < TAMANHO; i++) {
             for (int j = 0; j < TAMANHO; j++) {
-                tabuleiro.casas[i][j] = TipoPeca.valueOf(casasArray[index]);
+                tabuleiro.definirCasa(i, j, TipoPeca.valueOf(casasArray[index]));
                 index++;
             }
         }
@@ -452,6 +680,108 @@ public class Tabuleiro {
         return tabuleiro;
     }
 
+    /**
+     * Codificação compacta da posição: o bit 0 é o turno (1 = brancas) e cada casa
+     * escura i (0-31, em ordem de linha) ocupa os 3 bits seguintes com o ordinal de
+     * TipoPeca. Não aloca nada; o vetor precisa de TAMANHO_COMPACTO bytes a partir de offset.
+     */
+    public void codificarCompacto(byte[] destino, int offset) {
+        codificarCompacto(brancas, pretas, damas, vezBrancas, destino, offset);
+    }
+
+    static void codificarCompacto(long brancas, long pretas, long damas, boolean vezBrancas, byte[] destino,
+            int offset) {
+        for (int i = 0; i < TAMANHO_COMPACTO; i++) {
+            destino[offset + i] = 0;
+        }
+        if (vezBrancas) {
+            destino[offset] = 1;
+        }
+        for (int indice = 0; indice < 32; indice++) {
+            int casa = GeradorMovimentos.casaEscura(indice);
+            int codigo = tipoNoBit(brancas, pretas, damas, 1L << casa).ordinal();
+            int posicao = 1 + indice * 3;
+            for (int b = 0; b < 3; b++, posicao++) {
+                if ((codigo & (1 << b)) != 0) {
+                    destino[offset + (posicao >>> 3)] |= (byte) (1 << (posicao & 7));
+                }
+            }
+        }
+    }
+
+    // Substitui a posição atual pela lida de uma codificação compacta
+    public void carregarCompacto(byte[] origem, int offset) {
+        TipoPeca[] tipos = TipoPeca.values();
+        brancas = 0;
+        pretas = 0;
+        damas = 0;
+        vezBrancas = (origem[offset] & 1) != 0;
+        for (int indice = 0; indice < 32; indice++) {
+            int posicao = 1 + indice * 3;
+            int codigo = 0;
+            for (int b = 0; b < 3; b++, posicao++) {
+                if ((origem[offset + (posicao >>> 3)] & (1 << (posicao & 7))) != 0) {
+                    codigo |= 1 << b;
+                }
+            }
+            if (codigo >= tipos.length) {
+                throw new IllegalArgumentException("Código de casa inválido: " + codigo);
+            }
+            int casa = GeradorMovimentos.casaEscura(indice);
+            definirCasa(casa / TAMANHO, casa % TAMANHO, tipos[codigo]);
+        }
+        ultimoMovimentoX = -1;
+        ultimoMovimentoY = -1;
+        recalcularHash();
+    }
+
+    /**
+     * Aplica uma jogada recebida numa mensagem DELTA, sem revalidar as regras:
+     * move a peça, remove as capturadas, coroa se indicado e define o turno.
+     *
+     * @param capturadas Máscara das casas capturadas (bit x * 8 + y)
+     */
+    public void aplicarDelta(int origem, int destino, long capturadas, boolean coroa, boolean vezBrancas) {
+        long bitOrigem = 1L << origem;
+        long bitDestino = 1L << destino;
+        boolean dama = coroa || (damas & bitOrigem) != 0;
+
+        if ((brancas & bitOrigem) != 0) {
+            brancas = (brancas & ~bitOrigem) | bitDestino;
+        } else if ((pretas & bitOrigem) != 0) {
+            pretas = (pretas & ~bitOrigem) | bitDestino;
+        }
+        brancas &= ~capturadas;
+        pretas &= ~capturadas;
+        damas &= ~(bitOrigem | capturadas);
+        if (dama) {
+            damas |= bitDestino;
+        }
+        this.vezBrancas = vezBrancas;
+        recalcularHash();
+    }
+
+    // Codificação compacta em Base64 (18 caracteres), própria para as linhas de texto do protocolo
+    public String serializarCompacto() {
+        return serializarCompacto(brancas, pretas, damas, vezBrancas);
+    }
+
+    static String serializarCompacto(long brancas, long pretas, long damas, boolean vezBrancas) {
+        byte[] dados = new byte[TAMANHO_COMPACTO];
+        codificarCompacto(brancas, pretas, damas, vezBrancas, dados, 0);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(dados);
+    }
+
+    public static Tabuleiro desserializarCompacto(String estado) {
+        byte[] dados = Base64.getUrlDecoder().decode(estado.trim());
+        if (dados.length != TAMANHO_COMPACTO) {
+            throw new IllegalArgumentException("Estado compacto com tamanho inválido: " + dados.length);
+        }
+        Tabuleiro tabuleiro = new Tabuleiro();
+        tabuleiro.carregarCompacto(dados, 0);
+        return tabuleiro;
+    }
+
     public int getUltimoMovimentoX() {
         return ultimoMovimentoX;
     }
@@ -0,0 +1,103 @@
+/**
+ * Cópia do tabuleiro mantida pelo cliente durante toda a partida.
+ *
+ * Em vez de criar um Tabuleiro novo a cada mensagem, o cliente aplica sobre esta cópia
+ * as jogadas recebidas em DELTA. O estado completo (SNAP, TABC ou TABULEIRO) só substitui
+ * a cópia ao entrar na partida ou quando a sequência das jogadas mostra que alguma se
+ * perdeu; nesse caso a própria classe pede um SYNC ao servidor.
+ */
+
+package jogo;
+
+import java.util.Base64;
+import java.util.function.Consumer;
+
+public class TabuleiroLocal {
+    private Tabuleiro tabuleiro = new Tabuleiro();
+    private final byte[] compacto = new byte[Tabuleiro.TAMANHO_COMPACTO];
+    private long sequencia = -1;
+    private boolean aguardandoSnapshot;
+
+    public Tabuleiro getTabuleiro() {
+        return tabuleiro;
+    }
+
+    public long getSequencia() {
+        return sequencia;
+    }
+
+    /**
+     * Indica que faltou alguma jogada e a cópia local está desatualizada até chegar o SNAP
+     * pedido ao servidor.
+     */
+    public boolean isAguardandoSnapshot() {
+        return aguardandoSnapshot;
+    }
+
+    /**
+     * Atualiza a cópia local a partir de uma mensagem do servidor.
+     *
+     * @param mensagem Linha recebida do servidor
+     * @param enviar Canal para pedir SYNC quando faltar alguma jogada
+     * @return true se o tabuleiro mudou e deve ser exibido novamente
+     */
+    public boolean processar(String mensagem, Consumer<String> enviar) {
+        if (mensagem.startsWith("DELTA ")) {
+            String[] partes = mensagem.split(" ");
+            long recebida = Long.parseLong(partes[1]);
+            if (recebida <= sequencia) {
+                return false; // jogada já aplicada
+            }
+            if (recebida != sequencia + 1) {
+                pedirSnapshot(enviar);
+                return false;
+            }
+            long capturadas = 0;
+            if (!partes[4].equals("-")) {
+                for (String casa : partes[4].split(",")) {
+                    capturadas |= 1L << casa(casa);
+                }
+            }
+            tabuleiro.aplicarDelta(casa(partes[2]), casa(partes[3]), capturadas, partes[5].equals("1"),
+                    partes[6].equals("B"));
+            sequencia = recebida;
+            return true;
+        } else if (mensagem.startsWith("SNAP ")) {
+            String[] partes = mensagem.split(" ");
+            carregarCompacto(partes[2]);
+            sequencia = Long.parseLong(partes[1]);
+            aguardandoSnapshot = false;
+            return true;
+        } else if (mensagem.startsWith("TABC ")) {
+            carregarCompacto(mensagem.substring(5));
+            return true;
+        } else if (mensagem.startsWith("TABULEIRO")) {
+            tabuleiro = Tabuleiro.desserializar(mensagem.substring(9).trim());
+            return true;
+        }
+        return false;
+    }
+
+    private void pedirSnapshot(Consumer<String> enviar) {
+        if (!aguardandoSnapshot) {
+            aguardandoSnapshot = true;
+            enviar.accept("SYNC");
+        }
+    }
+
+    private void carregarCompacto(String estado) {
+        int tamanho = Base64.getUrlDecoder().decode(estado.trim().getBytes(), compacto);
+        if (tamanho != Tabuleiro.TAMANHO_COMPACTO) {
+            throw new IllegalArgumentException("Estado compacto com tamanho inválido: " + tamanho);
+        }
+        tabuleiro.carregarCompacto(compacto, 0);
+    }
+
+    private static int casa(String coordenada) {
+        int casa = CodecComandos.casa(coordenada);
+        if (casa < 0) {
+            throw new IllegalArgumentException("Coordenada inválida: " + coordenada);
+        }
+        return casa;
+    }
+}
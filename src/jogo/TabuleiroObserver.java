@@ -1,5 +1,22 @@
 package jogo;
 
+/**
+ * Observador das jogadas de um Tabuleiro.
+ *
+ * Os métodos são chamados depois da jogada e fora do lock da partida, por uma thread
+ * virtual do próprio observador (ver BarramentoEventos), na ordem das jogadas e nunca
+ * por duas threads ao mesmo tempo. Um observador que demora só atrasa os seus eventos,
+ * mas não deve bloquear: com a fila dele cheia, os eventos seguintes são descartados
+ * (e contados nas Metricas). Observadores novos devem
+ * sobrescrever aoEvento e usar os campos tipados; atualizar continua recebendo o texto de
+ * cada evento para os observadores antigos.
+ */
 public interface TabuleiroObserver {
-    void atualizar(Tabuleiro tabuleiro, String mensagem);
-}
\ No newline at end of file
+    default void atualizar(Tabuleiro tabuleiro, String mensagem) {
+    }
+
+    // O evento é reaproveitado depois da chamada: copie os campos que precisar guardar
+    default void aoEvento(EventoTabuleiro evento) {
+        atualizar(evento.getTabuleiro(), evento.getMensagem());
+    }
+}
@@ -0,0 +1,139 @@
+package jogo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transmissão de uma partida para os espectadores.
+ *
+ * A cada jogada o retrato publicado pela partida (PosicaoTabuleiro) é codificado uma única
+ * vez em quadros imutáveis (um por formato: SNAP, TABC e TABULEIRO), compartilhados por
+ * todos os espectadores.
+ * Cada quadro é completo, então um espectador lento pode pular os intermediários: a
+ * conexão guarda só o último quadro ainda não enviado (ver Conexao.enviarQuadro).
+ *
+ * A thread do jogador só troca a referência do último retrato; a codificação e a entrega a
+ * cada espectador são feitas por uma thread virtual, fora do lock do tabuleiro, de modo que
+ * milhares de espectadores não atrasam a partida. Se várias jogadas chegam antes de a
+ * thread passar, só a última é codificada.
+ */
+final class Transmissao {
+    private static final int SNAP = 0;
+    private static final int COMPACTO = 1;
+    private static final int TEXTO = 2;
+
+    private final long partida;
+    private final List<Conexao> espectadores = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean distribuindo = new AtomicBoolean();
+    private volatile Quadros ultimo;
+    private Quadros distribuido;
+
+    // Quadros de um mesmo estado, um por formato, já com o '\n' no fim; codificados no primeiro uso
+    private static final class Quadros {
+        final PosicaoTabuleiro posicao;
+        final String mensagem;
+        private byte[][] porFormato;
+
+        Quadros(PosicaoTabuleiro posicao, String mensagem) {
+            this.posicao = posicao;
+            this.mensagem = mensagem;
+        }
+
+        byte[] para(Conexao espectador) {
+            byte[][] quadros = codificados();
+            int capacidades = espectador.getCapacidades();
+            if ((capacidades & Conexao.CAP_DELTA) != 0) {
+                return quadros[SNAP];
+            }
+            return quadros[(capacidades & Conexao.CAP_COMPACTO) != 0 ? COMPACTO : TEXTO];
+        }
+
+        private synchronized byte[][] codificados() {
+            if (porFormato == null) {
+                porFormato = codificar(posicao, mensagem);
+            }
+            return porFormato;
+        }
+    }
+
+    Transmissao(long partida) {
+        this.partida = partida;
+    }
+
+    List<Conexao> getEspectadores() {
+        return espectadores;
+    }
+
+    /**
+     * Inclui o espectador e envia a ele o estado atual. Deve ser chamado com o lock do
+     * tabuleiro, que ordena a inclusão com o encerramento da partida.
+     */
+    void adicionar(Conexao espectador, PosicaoTabuleiro posicao) {
+        espectador.sendMessage("ESPECTANDO " + partida);
+        espectadores.add(espectador);
+        Quadros atual = ultimo;
+        if (atual == null || atual.posicao != posicao) {
+            atual = new Quadros(posicao, null);
+            ultimo = atual;
+        }
+        espectador.enviarQuadro(atual.para(espectador));
+    }
+
+    void remover(Conexao espectador) {
+        espectadores.remove(espectador);
+    }
+
+    /**
+     * Publica o retrato de uma jogada. Deve ser chamado com o lock do tabuleiro; não faz
+     * nada se não houver espectadores.
+     */
+    void publicar(PosicaoTabuleiro posicao) {
+        if (espectadores.isEmpty()) {
+            return;
+        }
+        ultimo = new Quadros(posicao, null);
+        agendarDistribuicao();
+    }
+
+    /**
+     * Publica o último quadro da partida: o estado final seguido da mensagem de encerramento
+     * (VITORIA ou ERRO), no mesmo quadro para que nenhum espectador perca o resultado.
+     */
+    void encerrar(PosicaoTabuleiro posicao, String mensagem) {
+        if (espectadores.isEmpty()) {
+            return;
+        }
+        ultimo = new Quadros(posicao, mensagem);
+        agendarDistribuicao();
+    }
+
+    private void agendarDistribuicao() {
+        if (distribuindo.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("transmissao-" + partida).start(this::distribuir);
+        }
+    }
+
+    // Entrega o último quadro a todos; repete se um mais novo foi publicado no meio do caminho
+    private void distribuir() {
+        do {
+            Quadros quadros = ultimo;
+            for (Conexao espectador : espectadores) {
+                espectador.enviarQuadro(quadros.para(espectador));
+            }
+            distribuido = quadros;
+            distribuindo.set(false);
+        } while (ultimo != distribuido && distribuindo.compareAndSet(false, true));
+    }
+
+    private static byte[][] codificar(PosicaoTabuleiro posicao, String mensagem) {
+        String compacto = posicao.serializarCompacto();
+        String fim = mensagem == null ? "\n" : "\n" + mensagem + "\n";
+        byte[][] porFormato = new byte[3][];
+        porFormato[SNAP] = ("SNAP " + posicao.getSequencia() + " " + compacto + fim).getBytes(StandardCharsets.UTF_8);
+        porFormato[COMPACTO] = ("TABC " + compacto + fim).getBytes(StandardCharsets.UTF_8);
+        porFormato[TEXTO] = ("TABULEIRO " + posicao.serializar() + fim).getBytes(StandardCharsets.UTF_8);
+        return porFormato;
+    }
+}
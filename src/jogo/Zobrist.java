@@ -0,0 +1,40 @@
+package jogo;
+
+import java.util.SplittableRandom;
+
+import jogo.Tabuleiro.TipoPeca;
+
+/**
+ * Chaves de Zobrist para identificar posições do tabuleiro.
+ *
+ * O hash de uma posição é o XOR das chaves (tipo de peça, casa) de todas as peças,
+ * mais VEZ_PRETAS quando é a vez das pretas. Como XOR é reversível, o Tabuleiro
+ * atualiza o hash incrementalmente a cada movimento, captura e coroação.
+ * A semente é fixa para que o mesmo hash identifique a mesma posição em qualquer
+ * execução (útil para o arquivo de partidas e para tabelas gravadas em disco).
+ */
+public final class Zobrist {
+    private static final long SEMENTE = 0x2545F4914F6CDD1DL;
+
+    // Índice pelo ordinal de TipoPeca; a linha de VAZIO fica zerada
+    private static final long[][] CHAVES = new long[TipoPeca.values().length][Tabuleiro.TAMANHO * Tabuleiro.TAMANHO];
+    public static final long VEZ_PRETAS;
+
+    static {
+        SplittableRandom aleatorio = new SplittableRandom(SEMENTE);
+        for (int tipo = 1; tipo < CHAVES.length; tipo++) {
+            for (int casa = 0; casa < CHAVES[tipo].length; casa++) {
+                CHAVES[tipo][casa] = aleatorio.nextLong();
+            }
+        }
+        VEZ_PRETAS = aleatorio.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    // Chave da peça na casa (x * 8 + y); zero para casa vazia
+    public static long chave(TipoPeca peca, int casa) {
+        return CHAVES[peca.ordinal()][casa];
+    }
+}
@@ -0,0 +1,96 @@
+// =================== AnelConsistenteTest.java ===================
+/**
+ * Divisão das partidas pelo AnelConsistente: o mesmo dono para a mesma lista de nós,
+ * partidas equilibradas entre eles e, quando um nó entra ou sai, só cerca de 1/N delas
+ * mudando de dono.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class AnelConsistenteTest {
+    private static final int PARTIDAS = 100_000;
+    private static final List<String> NOS = List.of("localhost:5556", "localhost:5557", "localhost:5558",
+            "localhost:5559");
+
+    @Test
+    void mesmaListaMesmoDono() {
+        AnelConsistente anel = new AnelConsistente(NOS);
+        // A ordem da lista não importa: o roteador e os nós podem vê-la em ordens diferentes
+        AnelConsistente invertido = new AnelConsistente(NOS.reversed());
+        AnelConsistente lido = AnelConsistente.ler(anel.toString());
+        assertEquals(NOS, lido.getNos());
+        for (long id = 1; id <= PARTIDAS; id++) {
+            assertEquals(anel.dono(id), invertido.dono(id));
+            assertEquals(anel.dono(id), lido.dono(id));
+        }
+    }
+
+    @Test
+    void partidasEquilibradasEntreOsNos() {
+        AnelConsistente anel = new AnelConsistente(NOS);
+        Map<String, Integer> porNo = new HashMap<>();
+        for (long id = 1; id <= PARTIDAS; id++) {
+            porNo.merge(anel.dono(id), 1, Integer::sum);
+        }
+        assertEquals(NOS.size(), porNo.size());
+        int media = PARTIDAS / NOS.size();
+        for (Map.Entry<String, Integer> no : porNo.entrySet()) {
+            assertTrue(Math.abs(no.getValue() - media) < media / 4, no.toString());
+        }
+    }
+
+    @Test
+    void noNovoSoLevaASuaParte() {
+        AnelConsistente antes = new AnelConsistente(NOS);
+        String novo = "localhost:5560";
+        AnelConsistente depois = new AnelConsistente(List.of(NOS.get(0), NOS.get(1), NOS.get(2), NOS.get(3), novo));
+        int movidas = 0;
+        for (long id = 1; id <= PARTIDAS; id++) {
+            String dono = depois.dono(id);
+            if (!dono.equals(antes.dono(id))) {
+                // Nenhuma partida troca entre dois nós antigos
+                assertEquals(novo, dono);
+                movidas++;
+            }
+        }
+        double fracao = movidas / (double) PARTIDAS;
+        assertTrue(fracao > 0.15 && fracao < 0.25, "fração movida " + fracao);
+
+    }
+
+    @Test
+    void noQueSaiSoEntregaASuaParte() {
+        AnelConsistente antes = new AnelConsistente(NOS);
+        String saiu = NOS.get(1);
+        AnelConsistente depois = new AnelConsistente(List.of(NOS.get(0), NOS.get(2), NOS.get(3)));
+        for (long id = 1; id <= PARTIDAS; id++) {
+            if (!antes.dono(id).equals(saiu)) {
+                assertEquals(antes.dono(id), depois.dono(id));
+            } else {
+                assertFalse(depois.dono(id).equals(saiu));
+            }
+        }
+    }
+
+    @Test
+    void anelVazioNaoTemDono() {
+        assertNull(AnelConsistente.VAZIO.dono(1));
+        assertTrue(AnelConsistente.ler("  ").isVazio());
+        AnelConsistente um = AnelConsistente.ler("localhost:5556");
+        assertFalse(um.isVazio());
+        assertTrue(um.contem("localhost:5556"));
+        assertFalse(um.contem("localhost:5557"));
+        assertEquals("localhost:5556", um.dono(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,133 @@
+// =================== BarramentoEventosTest.java ===================
+/**
+ * Entrega pelo BarramentoEventos: eventos publicados por várias threads chegam a cada
+ * observador na ordem em que cada thread os publicou, sem repetição, e os que não cabem
+ * na fila de um observador parado são descartados e contados.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class BarramentoEventosTest {
+    // A fila de cada observador (BarramentoEventos.CAPACIDADE_OBSERVADOR)
+    private static final int CAPACIDADE_OBSERVADOR = 1024;
+    private static final long ESPERA_MS = 10_000;
+
+    @Test
+    void cadaObservadorRecebeTudoNaOrdem() throws InterruptedException {
+        BarramentoEventos barramento = new BarramentoEventos(4096);
+        // Cabe tudo na fila de cada observador: nenhum descarte, mesmo se ele atrasar
+        int threads = 4;
+        int porThread = CAPACIDADE_OBSERVADOR / threads;
+        Tabuleiro tabuleiro = new Tabuleiro();
+        Registro[] observadores = { new Registro(threads * porThread), new Registro(threads * porThread) };
+        for (Registro observador : observadores) {
+            tabuleiro.addObserver(observador);
+        }
+
+        List<Thread> produtores = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int produtor = t;
+            produtores.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < porThread; i++) {
+                    assertTrue(barramento.publicar(EventoTabuleiro.Tipo.MOVIMENTO, tabuleiro, produtor, i, -1,
+                            true));
+                }
+            }));
+        }
+        for (Thread produtor : produtores) {
+            produtor.join();
+        }
+
+        for (Registro observador : observadores) {
+            assertTrue(observador.completo.await(ESPERA_MS, TimeUnit.MILLISECONDS));
+            // Na ordem de cada produtor, sem repetir nem pular nenhum
+            int[] proximo = new int[threads];
+            for (int[] evento : observador.recebidos()) {
+                assertEquals(proximo[evento[0]]++, evento[1], "produtor " + evento[0]);
+            }
+            for (int t = 0; t < threads; t++) {
+                assertEquals(porThread, proximo[t]);
+            }
+        }
+        assertEquals(0, barramento.getDescartados());
+    }
+
+    @Test
+    void filaCheiaDescartaEConta() throws InterruptedException {
+        BarramentoEventos barramento = new BarramentoEventos(4096);
+        Tabuleiro tabuleiro = new Tabuleiro();
+        CountDownLatch liberar = new CountDownLatch(1);
+        int publicados = CAPACIDADE_OBSERVADOR + 100;
+        // Fica parado no primeiro evento: a posição dele só é liberada quando a chamada termina
+        Registro parado = new Registro(CAPACIDADE_OBSERVADOR) {
+            @Override
+            public void aoEvento(EventoTabuleiro evento) {
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.aoEvento(evento);
+            }
+        };
+        Registro rapido = new Registro(publicados);
+        tabuleiro.addObserver(parado);
+        tabuleiro.addObserver(rapido);
+
+        for (int i = 0; i < publicados; i++) {
+            assertTrue(barramento.publicar(EventoTabuleiro.Tipo.MOVIMENTO, tabuleiro, 0, i, -1, true));
+        }
+        // O observador rápido recebe tudo; o parado perde o que passou da sua fila
+        assertTrue(rapido.completo.await(ESPERA_MS, TimeUnit.MILLISECONDS));
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_MS);
+        while (barramento.getDescartados() < publicados - CAPACIDADE_OBSERVADOR && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+        assertEquals(publicados - CAPACIDADE_OBSERVADOR, barramento.getDescartados());
+
+        liberar.countDown();
+        assertTrue(parado.completo.await(ESPERA_MS, TimeUnit.MILLISECONDS));
+        List<int[]> recebidos = parado.recebidos();
+        assertEquals(CAPACIDADE_OBSERVADOR, recebidos.size());
+        for (int i = 0; i < recebidos.size(); i++) {
+            assertEquals(i, recebidos.get(i)[1]);
+        }
+    }
+
+    // Guarda (origem, destino) de cada evento e avisa quando chegaram os esperados
+    private static class Registro implements TabuleiroObserver {
+        private final List<int[]> recebidos = new ArrayList<>();
+        private final int esperados;
+        final CountDownLatch completo = new CountDownLatch(1);
+
+        Registro(int esperados) {
+            this.esperados = esperados;
+        }
+
+        @Override
+        public void aoEvento(EventoTabuleiro evento) {
+            synchronized (recebidos) {
+                recebidos.add(new int[] { evento.getOrigem(), evento.getDestino() });
+                if (recebidos.size() == esperados) {
+                    completo.countDown();
+                }
+            }
+        }
+
+        List<int[]> recebidos() {
+            synchronized (recebidos) {
+                return new ArrayList<>(recebidos);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+// =================== CodecComandosTest.java ===================
+/**
+ * Interpretação das linhas do protocolo pelo CodecComandos: comandos válidos em várias
+ * grafias, os erros de cada formato e o reaproveitamento do mesmo Comando.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class CodecComandosTest {
+    private final Comando comando = new Comando();
+
+    @Test
+    void movimentoEmVariasGrafias() {
+        for (String linha : new String[] { "MOVIMENTO 3B 4A", "movimento 3b 4a", "  Movimento   3B  4a  ",
+                "MOVIMENTO 3B 4A\r" }) {
+            assertTrue(CodecComandos.decodificar(linha, comando), linha);
+            assertEquals(Comando.Tipo.MOVIMENTO, comando.getTipo());
+            assertEquals(2 * 8 + 1, comando.getOrigem(), linha);
+            assertEquals(3 * 8, comando.getDestino(), linha);
+        }
+    }
+
+    @Test
+    void movimentoInvalido() {
+        assertErro("MOVIMENTO 3B", Comando.Erro.FORMATO_MOVIMENTO);
+        assertErro("MOVIMENTO 3B 4A 5B", Comando.Erro.FORMATO_MOVIMENTO);
+        assertErro("MOVIMENTO", Comando.Erro.FORMATO_MOVIMENTO);
+        assertErro("MOVIMENTO 9B 4A", Comando.Erro.COORDENADA_INVALIDA);
+        assertErro("MOVIMENTO 3Z 4A", Comando.Erro.COORDENADA_INVALIDA);
+        assertErro("MOVIMENTO 3B 0A", Comando.Erro.COORDENADA_INVALIDA);
+        assertErro("MOVIMENTO 3BB 4A", Comando.Erro.COORDENADA_INVALIDA);
+        assertErro("", Comando.Erro.LINHA_VAZIA);
+        assertErro("   \r", Comando.Erro.LINHA_VAZIA);
+    }
+
+    @Test
+    void comandosSemArgumento() {
+        assertTipo("SYNC", Comando.Tipo.SYNC);
+        assertTipo("stats", Comando.Tipo.STATS);
+        assertTipo("MAQUINA", Comando.Tipo.MAQUINA);
+        assertTipo("HIST", Comando.Tipo.HIST);
+        assertTipo("SINCRONIZAR", Comando.Tipo.DESCONHECIDO);
+        assertTipo("SYNCX", Comando.Tipo.DESCONHECIDO);
+    }
+
+    @Test
+    void argumentosNumericos() {
+        assertTrue(CodecComandos.decodificar("MAQUINA 1500", comando));
+        assertEquals(1500, comando.getNumero());
+        assertErro("MAQUINA rapido", Comando.Erro.FORMATO_MAQUINA);
+
+        assertTrue(CodecComandos.decodificar("ESPECTAR 1099511627775", comando));
+        assertEquals(1099511627775L, comando.getNumero());
+        assertErro("ESPECTAR", Comando.Erro.FORMATO_ESPECTAR);
+        assertErro("ESPECTAR -3", Comando.Erro.FORMATO_ESPECTAR);
+        assertErro("ESPECTAR 1234567890123456789", Comando.Erro.FORMATO_ESPECTAR);
+
+        assertTrue(CodecComandos.decodificar("HIST 10 50", comando));
+        assertEquals(10, comando.getNumero());
+        assertEquals(50, comando.getQuantidade());
+        assertTrue(CodecComandos.decodificar("HIST 7", comando));
+        assertEquals(7, comando.getNumero());
+        assertEquals(0, comando.getQuantidade());
+        assertErro("HIST 0", Comando.Erro.FORMATO_HIST);
+        assertErro("HIST 1 x", Comando.Erro.FORMATO_HIST);
+    }
+
+    @Test
+    void codecAcumulaCapacidades() {
+        assertTrue(CodecComandos.decodificar("CODEC COMPACTO DELTA", comando));
+        assertEquals(Conexao.CAP_COMPACTO | Conexao.CAP_DELTA, comando.getCapacidades());
+        assertTrue(CodecComandos.decodificar("codec delta", comando));
+        assertEquals(Conexao.CAP_DELTA, comando.getCapacidades());
+        // Formatos desconhecidos são ignorados: a resposta diz o que foi aceito
+        assertTrue(CodecComandos.decodificar("CODEC ZIP", comando));
+        assertEquals(0, comando.getCapacidades());
+    }
+
+    @Test
+    void retomarLeOTokenDoSessao() {
+        Sessoes sessoes = Sessoes.temporarias();
+        long sessao = sessoes.novaSessao();
+        String token = sessoes.token(42, false, sessao);
+
+        assertTrue(CodecComandos.decodificar("RETOMAR " + token + " 17", comando));
+        assertEquals(42, comando.getNumero());
+        assertFalse(comando.isBrancas());
+        assertEquals(sessao, comando.getSessao());
+        assertEquals(17, comando.getSequencia());
+        assertTrue(sessoes.validar(42, false, comando.getSessao(), comando.getAssinatura()));
+
+        assertTrue(CodecComandos.decodificar("RETOMAR " + token, comando));
+        assertEquals(0, comando.getSequencia());
+
+        assertErro("RETOMAR", Comando.Erro.FORMATO_RETOMAR);
+        assertErro("RETOMAR " + token.replace("-P-", "-X-"), Comando.Erro.FORMATO_RETOMAR);
+        assertErro("RETOMAR " + token.substring(0, token.length() - 1), Comando.Erro.FORMATO_RETOMAR);
+        assertErro("RETOMAR " + token.substring(0, token.length() - 1) + "g", Comando.Erro.FORMATO_RETOMAR);
+    }
+
+    @Test
+    void decodificaUmTrechoDoBuffer() {
+        byte[] dados = "xxMOVIMENTO 6H 5G\nSYNC\n".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(CodecComandos.decodificar(dados, 2, 17, comando));
+        assertEquals(5 * 8 + 7, comando.getOrigem());
+        assertEquals(4 * 8 + 6, comando.getDestino());
+        assertTrue(CodecComandos.decodificar(dados, 18, 22, comando));
+        assertEquals(Comando.Tipo.SYNC, comando.getTipo());
+    }
+
+    @Test
+    void comandoReaproveitadoComecaLimpo() {
+        assertFalse(CodecComandos.decodificar("MOVIMENTO 9A 1A", comando));
+        assertTrue(CodecComandos.decodificar("SYNC", comando));
+        assertEquals(Comando.Erro.NENHUM, comando.getErro());
+        assertEquals(-1, comando.getOrigem());
+    }
+
+    @Test
+    void coordenadasEJogadasDoHistorico() {
+        assertEquals(0, CodecComandos.casa("1A"));
+        assertEquals(63, CodecComandos.casa("8h"));
+        assertEquals(-1, CodecComandos.casa("8I"));
+        assertEquals(-1, CodecComandos.casa("10A"));
+        assertEquals(-1, CodecComandos.casa(null));
+
+        int jogada = CodecComandos.jogada("Brancas: 3B 4A");
+        assertEquals(2 * 8 + 1, jogada & 63);
+        assertEquals(3 * 8, jogada >>> 6);
+        assertEquals(jogada, CodecComandos.jogada("3B 4A"));
+        assertEquals(-1, CodecComandos.jogada("Brancas:3B 4A"));
+        assertEquals(-1, CodecComandos.jogada("3B 9A"));
+    }
+
+    private void assertErro(String linha, Comando.Erro esperado) {
+        assertFalse(CodecComandos.decodificar(linha, comando), linha);
+        assertEquals(esperado, comando.getErro(), linha);
+    }
+
+    private void assertTipo(String linha, Comando.Tipo esperado) {
+        assertTrue(CodecComandos.decodificar(linha, comando), linha);
+        assertEquals(esperado, comando.getTipo(), linha);
+    }
+}
@@ -0,0 +1,68 @@
+// =================== ConexaoTeste.java ===================
+/**
+ * Conexão falsa para os testes: guarda as linhas recebidas e se foi desconectada.
+ */
+
+package jogo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class ConexaoTeste implements Conexao {
+    private final List<String> mensagens = new ArrayList<>();
+    private volatile Partida partida;
+    private volatile int capacidades;
+    private volatile boolean desconectada;
+
+    @Override
+    public synchronized void sendMessage(String message) {
+        mensagens.add(message);
+    }
+
+    @Override
+    public void desconectar() {
+        desconectada = true;
+    }
+
+    synchronized List<String> getMensagens() {
+        return new ArrayList<>(mensagens);
+    }
+
+    // Última linha recebida que começa com o prefixo; null se nenhuma
+    synchronized String ultima(String prefixo) {
+        for (int i = mensagens.size() - 1; i >= 0; i--) {
+            if (mensagens.get(i).startsWith(prefixo)) {
+                return mensagens.get(i);
+            }
+        }
+        return null;
+    }
+
+    synchronized void limpar() {
+        mensagens.clear();
+    }
+
+    boolean isDesconectada() {
+        return desconectada;
+    }
+
+    @Override
+    public Partida getPartida() {
+        return partida;
+    }
+
+    @Override
+    public void setPartida(Partida partida) {
+        this.partida = partida;
+    }
+
+    @Override
+    public int getCapacidades() {
+        return capacidades;
+    }
+
+    @Override
+    public void setCapacidades(int capacidades) {
+        this.capacidades = capacidades;
+    }
+}
@@ -0,0 +1,184 @@
+// =================== DiarioPartidasTest.java ===================
+/**
+ * Recuperação pelo DiarioPartidas depois de uma queda do processo (o diário nunca é
+ * fechado, como num kill -9): partidas ativas com as jogadas na ordem, registro gravado
+ * pela metade descartado, segmentos antigos apagados e ids que não se repetem.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiarioPartidasTest {
+    // A thread de gravação não interfere: os testes chamam gravar() quando precisam
+    private static final long SEM_GRAVACAO_PERIODICA = 60_000;
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    void recuperaAsPartidasAtivasDepoisDeUmaQueda() throws IOException {
+        DiarioPartidas diario = new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA);
+        assertTrue(diario.abrir().isEmpty());
+        diario.registrarInicio(1, 0);
+        diario.registrarInicio(2, DiarioPartidas.OPCAO_CONTRA_MAQUINA);
+        diario.registrarLance(1, 17, 26);
+        diario.registrarLance(2, 21, 28);
+        diario.registrarLance(2, 40, 33);
+        diario.registrarLance(1, 42, 35);
+        diario.registrarFim(1);
+        diario.registrarLance(2, 28, 37);
+
+        List<DiarioPartidas.PartidaRecuperada> recuperadas = new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA)
+                .abrir();
+        assertEquals(1, recuperadas.size());
+        DiarioPartidas.PartidaRecuperada partida = recuperadas.get(0);
+        assertEquals(2, partida.id);
+        assertEquals(DiarioPartidas.OPCAO_CONTRA_MAQUINA, partida.opcoes);
+        assertEquals(3, partida.getQuantidade());
+        int[][] esperados = { { 21, 28 }, { 40, 33 }, { 28, 37 } };
+        for (int i = 0; i < esperados.length; i++) {
+            assertEquals(esperados[i][0], partida.origem(i));
+            assertEquals(esperados[i][1], partida.destino(i));
+        }
+    }
+
+    @Test
+    void registroGravadoPelaMetadeEDescartado() throws IOException {
+        DiarioPartidas diario = new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA);
+        diario.abrir();
+        diario.registrarInicio(5, 0);
+        diario.registrarLance(5, 17, 26);
+
+        // Um LANCE cortado no meio: o tipo chegou ao disco, a soma de verificação não
+        try (FileChannel canal = FileChannel.open(unicoSegmento(), StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.wrap(new byte[] { DiarioPartidas.LANCE, 42, 35 }),
+                    2L * DiarioPartidas.TAMANHO_REGISTRO);
+        }
+
+        DiarioPartidas reaberto = new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA);
+        List<DiarioPartidas.PartidaRecuperada> recuperadas = reaberto.abrir();
+        assertEquals(1, recuperadas.get(0).getQuantidade());
+
+        // O próximo registro ocupa o lugar do que foi descartado e é lido na próxima abertura
+        reaberto.registrarLance(5, 46, 37);
+        recuperadas = new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA).abrir();
+        assertEquals(2, recuperadas.get(0).getQuantidade());
+        assertEquals(46, recuperadas.get(0).origem(1));
+        assertEquals(37, recuperadas.get(0).destino(1));
+    }
+
+    @Test
+    void apagaSegmentosAntigosEGuardaOMaiorId() throws IOException {
+        // Segmentos de 8 registros, para trocar de segmento a cada poucas partidas
+        int tamanho = 8 * DiarioPartidas.TAMANHO_REGISTRO;
+        DiarioPartidas diario = new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA, tamanho);
+        diario.abrir();
+        for (long id = 1; id <= 40; id++) {
+            diario.registrarInicio(id, 0);
+            diario.registrarLance(id, 17, 26);
+            // A partida 7 continua ativa e segura o segmento em que começou
+            if (id != 7) {
+                diario.registrarFim(id);
+            }
+        }
+        diario.gravar();
+        assertTrue(quantidadeSegmentos() > 10);
+
+        diario.registrarFim(7);
+        for (long id = 41; id <= 50; id++) {
+            diario.registrarInicio(id, 0);
+            diario.registrarFim(id);
+        }
+        diario.gravar();
+        assertEquals(1, quantidadeSegmentos());
+
+        // Nenhuma partida ativa e os segmentos com os ids usados já foram apagados
+        DiarioPartidas reaberto = new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA, tamanho);
+        assertTrue(reaberto.abrir().isEmpty());
+        assertEquals(50, reaberto.getMaiorId());
+    }
+
+    @Test
+    void gerenciadorRetomaAsPartidasSemRepetirIds() throws IOException {
+        GerenciadorPartidas gerenciador = new GerenciadorPartidas();
+        gerenciador.usarDiario(new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA));
+        ConexaoTeste[] jogadores = new ConexaoTeste[6];
+        for (int i = 0; i < jogadores.length; i++) {
+            jogadores[i] = new ConexaoTeste();
+            gerenciador.entrar(jogadores[i]);
+        }
+        Partida primeira = jogadores[0].getPartida();
+        jogar(primeira, jogadores[0], jogadores[1], gerenciador, 6);
+        String posicao = primeira.getTabuleiro().serializar();
+        long sequencia = primeira.getSequencia();
+        // As partidas de ids maiores terminam: só a primeira fica no diário
+        gerenciador.sair(jogadores[2]);
+        gerenciador.sair(jogadores[4]);
+        long maiorId = jogadores[4].getPartida().getId();
+        assertTrue(maiorId > primeira.getId());
+
+        // Queda: o diário não é fechado e um gerenciador novo lê a mesma pasta
+        GerenciadorPartidas reiniciado = new GerenciadorPartidas();
+        reiniciado.usarDiario(new DiarioPartidas(pasta, SEM_GRAVACAO_PERIODICA));
+        assertEquals(1, reiniciado.getQuantidadePartidas());
+        Partida recuperada = reiniciado.getPartida(primeira.getId());
+        assertNotNull(recuperada);
+        assertEquals(posicao, recuperada.getTabuleiro().serializar());
+        assertEquals(sequencia, recuperada.getSequencia());
+        assertNull(reiniciado.getPartida(maiorId));
+
+        // Os dois primeiros a chegar ocupam as cadeiras da partida recuperada; os seguintes
+        // começam uma partida nova, com id acima de todos os já usados
+        ConexaoTeste[] novos = new ConexaoTeste[4];
+        for (int i = 0; i < novos.length; i++) {
+            novos[i] = new ConexaoTeste();
+            reiniciado.entrar(novos[i]);
+        }
+        assertEquals(recuperada, novos[1].getPartida());
+        assertTrue(novos[3].getPartida().getId() > maiorId);
+    }
+
+    // Joga "passos" saltos pelo ProcessadorComandos, como fariam os dois clientes
+    private static void jogar(Partida partida, ConexaoTeste brancas, ConexaoTeste pretas,
+            GerenciadorPartidas gerenciador, int passos) {
+        long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+        Comando comando = new Comando();
+        for (int i = 0; i < passos; i++) {
+            Tabuleiro tabuleiro = partida.getTabuleiro();
+            GeradorMovimentos.gerar(tabuleiro, lances);
+            comando.movimento(GeradorMovimentos.origem(lances[0]), GeradorMovimentos.primeiroPasso(lances[0]));
+            ProcessadorComandos.processar(tabuleiro.isVezBrancas() ? brancas : pretas, comando, gerenciador);
+        }
+        assertEquals(passos, partida.getSequencia());
+    }
+
+    private Path unicoSegmento() throws IOException {
+        try (Stream<Path> arquivos = Files.list(pasta)) {
+            List<Path> segmentos = arquivos.toList();
+            assertEquals(1, segmentos.size());
+            return segmentos.get(0);
+        }
+    }
+
+    private long quantidadeSegmentos() throws IOException {
+        try (Stream<Path> arquivos = Files.list(pasta)) {
+            return arquivos.filter(arquivo -> arquivo.getFileName().toString().startsWith("diario-")).count();
+        }
+    }
+}
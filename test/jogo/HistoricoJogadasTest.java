@@ -0,0 +1,143 @@
+// =================== HistoricoJogadasTest.java ===================
+/**
+ * Empacotamento das jogadas no HistoricoJogadas: cada salto guardado com origem, destino,
+ * cor, captura e coroação, cópias que não mudam com as jogadas seguintes e a partida
+ * refeita a partir do histórico, como fazem o diário e a transferência entre nós.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HistoricoJogadasTest {
+
+    @Test
+    void cadaSaltoGuardaOQueAconteceu() {
+        int flags = 0;
+        for (int semente = 1; semente <= 20; semente++) {
+            Tabuleiro tabuleiro = new Tabuleiro();
+            List<Integer> esperadas = jogar(tabuleiro, new Random(semente), 300);
+            HistoricoJogadas historico = tabuleiro.getHistorico();
+            assertEquals(esperadas.size(), historico.getQuantidade());
+            for (int i = 0; i < esperadas.size(); i++) {
+                assertEquals((int) esperadas.get(i), historico.getJogada(i), "semente " + semente + ", jogada " + i);
+                flags |= historico.getJogada(i);
+            }
+        }
+        // As partidas sorteadas passam por capturas e coroações
+        assertTrue(HistoricoJogadas.isCaptura(flags));
+        assertTrue(HistoricoJogadas.isCoroacao(flags));
+    }
+
+    @Test
+    void copiaNaoMudaComAsJogadasSeguintes() {
+        Tabuleiro tabuleiro = new Tabuleiro();
+        Random aleatorio = new Random(7);
+        jogar(tabuleiro, aleatorio, 5);
+        HistoricoJogadas antes = tabuleiro.getHistorico();
+        int[] jogadas = new int[antes.getQuantidade()];
+        for (int i = 0; i < jogadas.length; i++) {
+            jogadas[i] = antes.getJogada(i);
+        }
+
+        // Passa de 16 jogadas, o que troca o vetor do Tabuleiro
+        jogar(tabuleiro, aleatorio, 40);
+        assertTrue(tabuleiro.getHistorico().getQuantidade() > 16);
+        assertEquals(jogadas.length, antes.getQuantidade());
+        for (int i = 0; i < jogadas.length; i++) {
+            assertEquals(jogadas[i], antes.getJogada(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> antes.getJogada(jogadas.length));
+        assertThrows(IndexOutOfBoundsException.class, () -> antes.getJogada(-1));
+    }
+
+    @Test
+    void historicoRefazAPartida() {
+        for (int semente = 1; semente <= 20; semente++) {
+            Tabuleiro original = new Tabuleiro();
+            jogar(original, new Random(semente), 300);
+            HistoricoJogadas historico = original.getHistorico();
+
+            Tabuleiro refeito = new Tabuleiro();
+            for (int i = 0; i < historico.getQuantidade(); i++) {
+                int jogada = historico.getJogada(i);
+                int origem = HistoricoJogadas.origem(jogada);
+                int destino = HistoricoJogadas.destino(jogada);
+                assertTrue(refeito.validarMovimento(origem / 8, origem % 8, destino / 8, destino % 8));
+                refeito.moverPeca(origem / 8, origem % 8, destino / 8, destino % 8);
+            }
+            assertEquals(original.serializar(), refeito.serializar());
+            assertEquals(original.getHash(), refeito.getHash());
+        }
+    }
+
+    @Test
+    void formataNoTextoDoProtocolo() {
+        Tabuleiro tabuleiro = new Tabuleiro();
+        tabuleiro.moverPeca(2, 1, 3, 2);
+        tabuleiro.moverPeca(5, 0, 4, 1);
+        HistoricoJogadas historico = tabuleiro.getHistorico();
+        assertEquals("Brancas: 3B 4C", historico.formatar(0));
+        assertEquals("Pretas: 6A 5B", historico.formatar(1));
+        assertFalse(HistoricoJogadas.isPretas(historico.getJogada(0)));
+        assertTrue(HistoricoJogadas.isPretas(historico.getJogada(1)));
+    }
+
+    /*
+     * Joga até "passos" saltos sorteados (cada salto de uma captura em cadeia em separado)
+     * e devolve as jogadas esperadas, montadas comparando o tabuleiro antes e depois.
+     */
+    private static List<Integer> jogar(Tabuleiro tabuleiro, Random aleatorio, int passos) {
+        List<Integer> esperadas = new ArrayList<>();
+        long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+        for (int i = 0; i < passos && tabuleiro.verificarVencedor() == 0; i++) {
+            int n = GeradorMovimentos.gerar(tabuleiro, lances);
+            if (n == 0) {
+                break;
+            }
+            long lance = lances[aleatorio.nextInt(n)];
+            int origem = GeradorMovimentos.origem(lance);
+            int destino = GeradorMovimentos.primeiroPasso(lance);
+
+            Tabuleiro.TipoPeca[][] antes = tabuleiro.getCasas();
+            Tabuleiro.TipoPeca peca = antes[origem / 8][origem % 8];
+            int pecasAntes = contar(antes);
+            tabuleiro.moverPeca(origem / 8, origem % 8, destino / 8, destino % 8);
+            Tabuleiro.TipoPeca[][] depois = tabuleiro.getCasas();
+
+            int jogada = origem | destino << 6;
+            if (!peca.isBranca()) {
+                jogada |= HistoricoJogadas.PRETAS;
+            }
+            if (contar(depois) < pecasAntes) {
+                jogada |= HistoricoJogadas.CAPTURA;
+            }
+            if (!peca.isDama() && depois[destino / 8][destino % 8].isDama()) {
+                jogada |= HistoricoJogadas.COROACAO;
+            }
+            esperadas.add(jogada);
+        }
+        return esperadas;
+    }
+
+    private static int contar(Tabuleiro.TipoPeca[][] casas) {
+        int pecas = 0;
+        for (Tabuleiro.TipoPeca[] linha : casas) {
+            for (Tabuleiro.TipoPeca casa : linha) {
+                if (casa != Tabuleiro.TipoPeca.VAZIO) {
+                    pecas++;
+                }
+            }
+        }
+        return pecas;
+    }
+}
@@ -0,0 +1,72 @@
+// =================== PerftTest.java ===================
+/**
+ * Confere o GeradorMovimentos pelas contagens de posições do Perft: a posição inicial
+ * contra as contagens publicadas para as damas inglesas e as posições de referência
+ * contra as contagens conhecidas guardadas no próprio Perft.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class PerftTest {
+    // Até aqui as contagens de cada posição de referência rodam em poucos segundos
+    private static final int PROFUNDIDADE_MAXIMA = 6;
+
+    @Test
+    void posicaoInicialCoincideComAsDamasInglesas() {
+        long[] publicadas = { 7, 49, 302, 1469, 7361, 36768, 179740 };
+        Tabuleiro tabuleiro = new Tabuleiro();
+        for (int profundidade = 1; profundidade <= publicadas.length; profundidade++) {
+            assertEquals(publicadas[profundidade - 1], Perft.contar(tabuleiro, profundidade),
+                    "profundidade " + profundidade);
+        }
+    }
+
+    @Test
+    void posicoesDeReferencia() {
+        for (int p = 0; p < Perft.POSICOES.length; p++) {
+            Tabuleiro tabuleiro = Perft.posicao(Perft.POSICOES[p][1]);
+            int limite = Math.min(PROFUNDIDADE_MAXIMA, Perft.CONTAGENS[p].length);
+            for (int profundidade = 1; profundidade <= limite; profundidade++) {
+                assertEquals(Perft.CONTAGENS[p][profundidade - 1], Perft.contar(tabuleiro, profundidade),
+                        Perft.POSICOES[p][0] + ", profundidade " + profundidade);
+            }
+        }
+    }
+
+    @Test
+    void contagemRestauraOTabuleiro() {
+        Tabuleiro tabuleiro = Perft.posicao(Perft.POSICOES[1][1]);
+        String antes = tabuleiro.serializar();
+        long hash = tabuleiro.getHash();
+        Perft.contar(tabuleiro, 5);
+        assertEquals(antes, tabuleiro.serializar());
+        assertEquals(hash, tabuleiro.getHash());
+    }
+
+    @Test
+    void contagemParalelaIgualASequencial() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String[] posicao : Perft.POSICOES) {
+                Tabuleiro tabuleiro = Perft.posicao(posicao[1]);
+                assertEquals(Perft.contar(tabuleiro, 5), Perft.contarParalelo(tabuleiro, 5, pool), posicao[0]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void descricaoInvalidaERecusada() {
+        assertThrows(IllegalArgumentException.class, () -> Perft.posicao("B b3C"));
+        assertThrows(IllegalArgumentException.class, () -> Perft.posicao("B x3D"));
+        assertThrows(IllegalArgumentException.class, () -> Perft.posicao("B b9D"));
+    }
+}
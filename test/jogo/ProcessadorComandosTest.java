@@ -0,0 +1,70 @@
+// =================== ProcessadorComandosTest.java ===================
+/**
+ * MOVIMENTO pelo ProcessadorComandos: só o jogador da cadeira que tem a vez move, e o
+ * lance de quem não tem a vez é recusado sem mudar a partida.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ProcessadorComandosTest {
+    private final GerenciadorPartidas gerenciador = new GerenciadorPartidas();
+    private final Comando comando = new Comando();
+
+    @Test
+    void quemNaoTemAVezNaoMove() {
+        ConexaoTeste brancas = new ConexaoTeste();
+        ConexaoTeste pretas = new ConexaoTeste();
+        gerenciador.entrar(brancas);
+        gerenciador.entrar(pretas);
+        Partida partida = brancas.getPartida();
+        String inicial = partida.getTabuleiro().serializar();
+
+        // Vez das brancas: as pretas tentam um lance que seria válido para elas
+        assertTrue(mover(pretas, "MOVIMENTO 6A 5B"));
+        assertEquals("ERRO Não é a sua vez", pretas.ultima("ERRO"));
+        assertEquals(0, partida.getSequencia());
+        assertEquals(inicial, partida.getTabuleiro().serializar());
+
+        assertTrue(mover(brancas, "MOVIMENTO 3B 4C"));
+        assertEquals(1, partida.getSequencia());
+        assertNull(brancas.ultima("ERRO"));
+
+        // Agora é a vez das pretas: as brancas não movem de novo, nem com as peças delas
+        assertTrue(mover(brancas, "MOVIMENTO 3D 4E"));
+        assertEquals("ERRO Não é a sua vez", brancas.ultima("ERRO"));
+        assertTrue(mover(brancas, "MOVIMENTO 6A 5B"));
+        assertEquals(1, partida.getSequencia());
+
+        pretas.limpar();
+        assertTrue(mover(pretas, "MOVIMENTO 6A 5B"));
+        assertEquals(2, partida.getSequencia());
+        assertNull(pretas.ultima("ERRO"));
+    }
+
+    @Test
+    void espectadorNaoMove() {
+        ConexaoTeste brancas = new ConexaoTeste();
+        ConexaoTeste pretas = new ConexaoTeste();
+        gerenciador.entrar(brancas);
+        gerenciador.entrar(pretas);
+        Partida partida = brancas.getPartida();
+
+        // Conexão que aponta para a partida sem ocupar cadeira (como a antiga depois de um RETOMAR)
+        ConexaoTeste intruso = new ConexaoTeste();
+        intruso.setPartida(partida);
+        assertTrue(mover(intruso, "MOVIMENTO 3B 4C"));
+        assertEquals("ERRO Não é a sua vez", intruso.ultima("ERRO"));
+        assertEquals(0, partida.getSequencia());
+    }
+
+    private boolean mover(ConexaoTeste jogador, String linha) {
+        assertTrue(CodecComandos.decodificar(linha, comando), linha);
+        return ProcessadorComandos.processar(jogador, comando, gerenciador);
+    }
+}
@@ -0,0 +1,168 @@
+// =================== SessoesTest.java ===================
+/**
+ * Tokens de sessão e RETOMAR: assinaturas que só valem para a partida, a cor e a chave
+ * que as criaram, a cadeira devolvida a quem volta com o token e a partida encerrada
+ * quando o prazo de reconexão acaba sem ninguém voltar.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessoesTest {
+    // Prazo de reconexão longo: a cadeira não expira no meio do teste
+    private static final long PRAZO_LONGO_MS = 60_000;
+    private static final long PRAZO_CURTO_MS = 200;
+
+    private final Comando comando = new Comando();
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    void tokenSoValeParaAPartidaACorEAChave() {
+        Sessoes sessoes = Sessoes.temporarias();
+        long sessao = sessoes.novaSessao();
+        String token = sessoes.token(42, true, sessao);
+        assertTrue(decodificar(token));
+        assertTrue(sessoes.validar(42, true, sessao, comando.getAssinatura()));
+
+        assertFalse(sessoes.validar(42, false, sessao, comando.getAssinatura()));
+        assertFalse(sessoes.validar(43, true, sessao, comando.getAssinatura()));
+        assertFalse(sessoes.validar(42, true, sessao + 1, comando.getAssinatura()));
+        assertFalse(sessoes.validar(42, true, sessao, comando.getAssinatura() ^ 1));
+
+        // A mesma sessão assinada por outra chave não passa
+        Sessoes outras = Sessoes.temporarias();
+        assertTrue(decodificar(outras.token(42, true, sessao)));
+        assertFalse(sessoes.validar(42, true, sessao, comando.getAssinatura()));
+    }
+
+    @Test
+    void chaveGuardadaValeDepoisDeReiniciar() throws IOException {
+        Sessoes primeira = Sessoes.carregar(pasta);
+        long sessao = primeira.novaSessao();
+        assertTrue(decodificar(primeira.token(7, false, sessao)));
+
+        Sessoes reiniciada = Sessoes.carregar(pasta);
+        assertTrue(reiniciada.validar(7, false, sessao, comando.getAssinatura()));
+    }
+
+    @Test
+    void retomarDevolveACadeiraDeQuemCaiu() {
+        GerenciadorPartidas gerenciador = new GerenciadorPartidas();
+        gerenciador.usarSessoes(Sessoes.temporarias(), PRAZO_LONGO_MS);
+        ConexaoTeste brancas = new ConexaoTeste();
+        ConexaoTeste pretas = new ConexaoTeste();
+        gerenciador.entrar(brancas);
+        gerenciador.entrar(pretas);
+        Partida partida = brancas.getPartida();
+        String token = token(brancas);
+
+        gerenciador.sair(brancas);
+        assertFalse(partida.isCompleta());
+        assertNotNull(pretas.ultima("ERRO Adversário desconectado, aguardando"));
+        // Quem chega não fica com a cadeira reservada
+        ConexaoTeste outro = new ConexaoTeste();
+        gerenciador.entrar(outro);
+        assertNull(outro.getPartida());
+
+        pretas.limpar();
+        ConexaoTeste volta = new ConexaoTeste();
+        assertTrue(decodificar(token));
+        assertTrue(gerenciador.retomar(volta, comando));
+        assertSame(partida, volta.getPartida());
+        assertEquals("INICIO BRANCAS", volta.getMensagens().get(0));
+        assertNotNull(volta.ultima("SESSAO "));
+        assertNotNull(pretas.ultima("TURNO BRANCAS"));
+        assertSame(partida, gerenciador.getPartida(partida.getId()));
+    }
+
+    @Test
+    void tokenAlteradoNaoRetoma() {
+        GerenciadorPartidas gerenciador = new GerenciadorPartidas();
+        gerenciador.usarSessoes(Sessoes.temporarias(), PRAZO_LONGO_MS);
+        ConexaoTeste brancas = new ConexaoTeste();
+        ConexaoTeste pretas = new ConexaoTeste();
+        gerenciador.entrar(brancas);
+        gerenciador.entrar(pretas);
+        String token = token(pretas);
+        gerenciador.sair(pretas);
+
+        // Cor trocada, último dígito da assinatura trocado e token de outro servidor
+        String assinatura = token.substring(token.length() - 1);
+        for (String alterado : new String[] { token.replace("-P-", "-B-"),
+                token.substring(0, token.length() - 1) + ("0".equals(assinatura) ? "1" : "0"),
+                Sessoes.temporarias().token(pretas.getPartida().getId(), false, 1) }) {
+            ConexaoTeste volta = new ConexaoTeste();
+            assertTrue(decodificar(alterado), alterado);
+            assertFalse(gerenciador.retomar(volta, comando), alterado);
+            assertNull(volta.getPartida());
+        }
+        assertFalse(pretas.getPartida().isCompleta());
+    }
+
+    @Test
+    void partidaEncerradaQuandoOPrazoAcaba() throws InterruptedException {
+        GerenciadorPartidas gerenciador = new GerenciadorPartidas();
+        gerenciador.usarSessoes(Sessoes.temporarias(), PRAZO_CURTO_MS);
+        ConexaoTeste brancas = new ConexaoTeste();
+        ConexaoTeste pretas = new ConexaoTeste();
+        gerenciador.entrar(brancas);
+        gerenciador.entrar(pretas);
+        long id = brancas.getPartida().getId();
+        String token = token(brancas);
+
+        gerenciador.sair(brancas);
+        assertNotNull(gerenciador.getPartida(id));
+        long limite = System.nanoTime() + 50 * PRAZO_CURTO_MS * 1_000_000L;
+        while (gerenciador.getPartida(id) != null && System.nanoTime() - limite < 0) {
+            Thread.sleep(10);
+        }
+        assertNull(gerenciador.getPartida(id));
+        assertNotNull(pretas.ultima("ERRO Adversário desconectado"));
+
+        // Depois do prazo o token não devolve mais nada
+        ConexaoTeste volta = new ConexaoTeste();
+        assertTrue(decodificar(token));
+        assertFalse(gerenciador.retomar(volta, comando));
+        assertNull(volta.getPartida());
+    }
+
+    @Test
+    void semSessoesQuemCaiEncerraAPartida() {
+        GerenciadorPartidas gerenciador = new GerenciadorPartidas();
+        ConexaoTeste brancas = new ConexaoTeste();
+        ConexaoTeste pretas = new ConexaoTeste();
+        gerenciador.entrar(brancas);
+        gerenciador.entrar(pretas);
+        long id = brancas.getPartida().getId();
+        assertNull(brancas.ultima("SESSAO "));
+
+        gerenciador.sair(brancas);
+        assertNull(gerenciador.getPartida(id));
+        assertEquals("ERRO Adversário desconectado", pretas.ultima("ERRO"));
+    }
+
+    // Token do último SESSAO recebido pelo jogador
+    private static String token(ConexaoTeste jogador) {
+        String sessao = jogador.ultima("SESSAO ");
+        assertNotNull(sessao);
+        return sessao.substring("SESSAO ".length());
+    }
+
+    private boolean decodificar(String token) {
+        return CodecComandos.decodificar("RETOMAR " + token + " 0", comando);
+    }
+}
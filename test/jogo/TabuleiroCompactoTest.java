@@ -0,0 +1,95 @@
+// =================== TabuleiroCompactoTest.java ===================
+/**
+ * Ida e volta das codificações do Tabuleiro (compacta e texto) em posições de partidas
+ * sorteadas, com damas e capturas, e nas posições de referência do Perft.
+ */
+
+package jogo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TabuleiroCompactoTest {
+
+    @Test
+    void compactaPreservaAPosicao() {
+        for (Tabuleiro original : posicoes()) {
+            String compacto = original.serializarCompacto();
+            assertEquals(18, compacto.length());
+            Tabuleiro lido = Tabuleiro.desserializarCompacto(compacto);
+            assertEquals(original.serializar(), lido.serializar());
+            assertEquals(original.isVezBrancas(), lido.isVezBrancas());
+            assertEquals(original.getHash(), lido.getHash());
+            assertEquals(compacto, lido.serializarCompacto());
+        }
+    }
+
+    @Test
+    void textoPreservaAPosicao() {
+        for (Tabuleiro original : posicoes()) {
+            Tabuleiro lido = Tabuleiro.desserializar(original.serializar());
+            assertEquals(original.serializarCompacto(), lido.serializarCompacto());
+            assertEquals(original.getHash(), lido.getHash());
+        }
+    }
+
+    @Test
+    void codificaNoDeslocamentoSemTocarOResto() {
+        Tabuleiro tabuleiro = Perft.posicao(Perft.POSICOES[3][1]);
+        byte[] dados = new byte[Tabuleiro.TAMANHO_COMPACTO + 10];
+        dados[4] = 0x55;
+        dados[5 + Tabuleiro.TAMANHO_COMPACTO] = 0x55;
+        tabuleiro.codificarCompacto(dados, 5);
+        assertEquals(0x55, dados[4]);
+        assertEquals(0x55, dados[5 + Tabuleiro.TAMANHO_COMPACTO]);
+
+        Tabuleiro lido = new Tabuleiro();
+        lido.carregarCompacto(dados, 5);
+        assertEquals(tabuleiro.serializar(), lido.serializar());
+
+        byte[] sozinho = new byte[Tabuleiro.TAMANHO_COMPACTO];
+        tabuleiro.codificarCompacto(sozinho, 0);
+        byte[] trecho = new byte[Tabuleiro.TAMANHO_COMPACTO];
+        System.arraycopy(dados, 5, trecho, 0, trecho.length);
+        assertArrayEquals(sozinho, trecho);
+    }
+
+    @Test
+    void estadoCompactoInvalidoERecusado() {
+        assertThrows(IllegalArgumentException.class, () -> Tabuleiro.desserializarCompacto("AAAA"));
+        // Todas as casas com o código 7, que não é um TipoPeca
+        byte[] dados = new byte[Tabuleiro.TAMANHO_COMPACTO];
+        Arrays.fill(dados, (byte) 0xFF);
+        assertThrows(IllegalArgumentException.class, () -> new Tabuleiro().carregarCompacto(dados, 0));
+    }
+
+    // Posições de referência do Perft e as de algumas partidas sorteadas, jogada a jogada
+    private static List<Tabuleiro> posicoes() {
+        List<Tabuleiro> posicoes = new ArrayList<>();
+        for (String[] posicao : Perft.POSICOES) {
+            posicoes.add(Perft.posicao(posicao[1]));
+        }
+        long[] lances = new long[GeradorMovimentos.MAX_LANCES];
+        for (int semente = 1; semente <= 20; semente++) {
+            Random aleatorio = new Random(semente);
+            Tabuleiro tabuleiro = new Tabuleiro();
+            for (int ply = 0; ply < 200 && tabuleiro.verificarVencedor() == 0; ply++) {
+                int n = GeradorMovimentos.gerar(tabuleiro, lances);
+                if (n == 0) {
+                    break;
+                }
+                tabuleiro.aplicarLance(lances[aleatorio.nextInt(n)]);
+                posicoes.add(new Tabuleiro(tabuleiro));
+            }
+        }
+        return posicoes;
+    }
+}